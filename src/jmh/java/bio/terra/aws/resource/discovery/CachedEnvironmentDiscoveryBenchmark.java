@@ -0,0 +1,52 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CachedEnvironmentDiscovery} cache hit throughput under contention. Comparing the
+ * single-threaded and all-cores results shows how hit throughput scales with core count; since hits
+ * neither lock nor allocate, aggregate throughput should grow roughly linearly with threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CachedEnvironmentDiscoveryBenchmark {
+
+  private CachedEnvironmentDiscovery cachedEnvironmentDiscovery;
+
+  @Setup
+  public void setUp() throws IOException {
+    Environment environment = Environment.builder().build();
+    cachedEnvironmentDiscovery =
+        new CachedEnvironmentDiscovery(() -> environment, Duration.ofHours(1));
+    cachedEnvironmentDiscovery.discoverEnvironment();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Environment cacheHitSingleThread() throws IOException {
+    return cachedEnvironmentDiscovery.discoverEnvironment();
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Environment cacheHitAllCores() throws IOException {
+    return cachedEnvironmentDiscovery.discoverEnvironment();
+  }
+}
@@ -0,0 +1,75 @@
+package bio.terra.aws.resource.discovery;
+
+import bio.terra.aws.resource.discovery.avro.LandingZoneModel;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures decoding a stored {@code config.json} Landing Zone record into its model, comparing the
+ * streaming {@link AvroConfiguration} path against the string-based path it replaced (mapping the
+ * record to strings, base64-decoding each into a new string and handing those to Avro). Run with
+ * the GC profiler ({@code -PjmhProfilers=gc}) to compare allocation per operation ({@code
+ * gc.alloc.rate.norm}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigurationDecodeBenchmark {
+  private static final String CONFIGURATION_RESOURCE_PATH =
+      "test_discovery_data/validation/v0/landingzones/us-east-1/config.json";
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final AvroSchemaCache schemaCache = new AvroSchemaCache();
+  private final Schema readerSchema = LandingZoneModel.getClassSchema();
+  private byte[] content;
+
+  @Setup
+  public void setUp() throws IOException {
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream(CONFIGURATION_RESOURCE_PATH)) {
+      content = input.readAllBytes();
+    }
+  }
+
+  private static String decodeBase64(JsonNode field) {
+    return new String(Base64.getDecoder().decode(field.asText()), StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public LandingZoneModel stringDecode() throws IOException {
+    JsonNode record = mapper.readTree(new String(content, StandardCharsets.UTF_8));
+    AvroSchemaCache.FingerprintedSchema writerSchema =
+        schemaCache.getWriterSchema(decodeBase64(record.get("schema")));
+    DatumReader<LandingZoneModel> reader = schemaCache.getReader(writerSchema, readerSchema);
+    return reader.read(
+        null,
+        DecoderFactory.get()
+            .jsonDecoder(writerSchema.schema(), decodeBase64(record.get("payload"))));
+  }
+
+  @Benchmark
+  public LandingZoneModel streamingDecode() throws IOException {
+    return new AvroConfiguration(content, mapper.getFactory()).decode(schemaCache, readerSchema);
+  }
+}
@@ -0,0 +1,156 @@
+package bio.terra.aws.resource.discovery;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the heap allocation of re-reading configuration files that turn out to be unchanged, as
+ * {@link FilesystemEnvironmentDiscovery} does for files whose modification time cannot be trusted.
+ * Compares reading a {@code config.json} into a heap array with reading it into a pooled direct
+ * buffer (see {@link ConfigurationBuffers}), and reading a bundle of the validation test data into
+ * a heap array with reading it into a pooled direct buffer and with memory-mapping it (which only
+ * pays off for bundles much larger than this one).
+ *
+ * <p>Also measures reading and parsing a file that changed, as on the first scan of a directory:
+ * its content is retained by the parsed configuration, so it is copied onto the heap once, whether
+ * read into a heap array or a pooled buffer; a compressed file is decompressed straight from the
+ * pooled buffer rather than copied onto the heap first. Run with the GC profiler ({@code
+ * -PjmhProfilers=gc}) to compare allocation per operation ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigurationReadBenchmark {
+  private static final String TEST_DATA_RESOURCE_PATH = "test_discovery_data/validation";
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+  private Path directory;
+  private Path configurationPath;
+  private Path compressedConfigurationPath;
+  private Path bundlePath;
+  private ConfigurationBundle previousBundle;
+
+  @Setup
+  public void setUp() throws IOException, URISyntaxException {
+    Path testDataPath =
+        Path.of(getClass().getClassLoader().getResource(TEST_DATA_RESOURCE_PATH).toURI());
+    directory = Files.createTempDirectory("configuration-read-benchmark");
+    configurationPath = directory.resolve("config.json");
+    Files.copy(testDataPath.resolve("v0/landingzones/us-east-1/config.json"), configurationPath);
+    compressedConfigurationPath = directory.resolve("config.json.gz");
+    Files.write(
+        compressedConfigurationPath,
+        EnvironmentDiscoveryTestBase.gzip(Files.readAllBytes(configurationPath)));
+    bundlePath = directory.resolve(ConfigurationBundle.BUNDLE_NAME);
+    Files.write(bundlePath, EnvironmentDiscoveryTestBase.toBundle(testDataPath, false));
+    previousBundle = ConfigurationBundle.read(Files.readAllBytes(bundlePath), jsonFactory, null);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Benchmark
+  public long heapFileRead() throws IOException {
+    CRC32C crc = new CRC32C();
+    crc.update(Files.readAllBytes(configurationPath));
+    return crc.getValue();
+  }
+
+  @Benchmark
+  public long pooledFileRead() throws IOException {
+    ByteBuffer content = ConfigurationBuffers.acquire(configurationPath);
+    try {
+      CRC32C crc = new CRC32C();
+      crc.update(content);
+      return crc.getValue();
+    } finally {
+      ConfigurationBuffers.release(content);
+    }
+  }
+
+  @Benchmark
+  public StoredConfiguration heapChangedFileParse() throws IOException {
+    return new AvroConfiguration(Files.readAllBytes(configurationPath), jsonFactory);
+  }
+
+  @Benchmark
+  public StoredConfiguration pooledChangedFileParse() throws IOException {
+    return parsePooled(configurationPath, false);
+  }
+
+  @Benchmark
+  public StoredConfiguration copiedCompressedFileParse() throws IOException {
+    ByteBuffer content = ConfigurationBuffers.acquire(compressedConfigurationPath);
+    try {
+      return new AvroConfiguration(
+          ConfigurationCompression.decompress(ConfigurationBuffers.toArray(content), true),
+          jsonFactory);
+    } finally {
+      ConfigurationBuffers.release(content);
+    }
+  }
+
+  @Benchmark
+  public StoredConfiguration pooledCompressedFileParse() throws IOException {
+    return parsePooled(compressedConfigurationPath, true);
+  }
+
+  private StoredConfiguration parsePooled(Path path, boolean compressed) throws IOException {
+    ByteBuffer content = ConfigurationBuffers.acquire(path);
+    try {
+      return new AvroConfiguration(
+          ConfigurationCompression.decompress(content, compressed), jsonFactory);
+    } finally {
+      ConfigurationBuffers.release(content);
+    }
+  }
+
+  @Benchmark
+  public ConfigurationBundle heapBundleRead() throws IOException {
+    return ConfigurationBundle.read(Files.readAllBytes(bundlePath), jsonFactory, previousBundle);
+  }
+
+  @Benchmark
+  public ConfigurationBundle pooledBundleRead() throws IOException {
+    ByteBuffer content = ConfigurationBuffers.acquire(bundlePath);
+    try {
+      return ConfigurationBundle.read(content, jsonFactory, previousBundle);
+    } finally {
+      ConfigurationBuffers.release(content);
+    }
+  }
+
+  @Benchmark
+  public ConfigurationBundle mappedBundleRead() throws IOException {
+    return ConfigurationBundle.read(
+        ConfigurationBuffers.map(bundlePath), jsonFactory, previousBundle);
+  }
+}
@@ -0,0 +1,97 @@
+package bio.terra.aws.resource.discovery;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * Measures looking up the Landing Zones of an {@link Environment} by region, as done on every
+ * workspace request, against a {@link HashMap} lookup of the kind the Environment used before it
+ * held Landing Zones in a compact array scanned by region identity. Run with the GC profiler
+ * ({@code -PjmhProfilers=gc}): {@code landingZoneOrNull}, {@code hasLandingZone}, {@code
+ * forEachLandingZone} and {@code supportedRegions} should report no allocation per operation
+ * ({@code gc.alloc.rate.norm}).
+ *
+ * <p>Measured on JDK 17 with the validation test data (three Landing Zones):
+ *
+ * <pre>
+ * Benchmark                 ns/op   gc.alloc.rate.norm (B/op)
+ * landingZoneOrNull           2.4   ~0 (10^-5)
+ * hasLandingZone              2.6   ~0 (10^-5)
+ * forEachLandingZone          3.2   ~0 (10^-5)
+ * supportedRegions            0.7   ~0 (10^-5)
+ * getLandingZone              4.4   16 (the Optional)
+ * hashMapLookup               4.4   16 (the Optional)
+ * hashMapSupportedRegions   148     256
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnvironmentLookupBenchmark {
+
+  private Environment environment;
+  private Map<Region, LandingZone> landingZoneMap;
+  private Region region;
+
+  @Setup
+  public void setUp() {
+    environment = new EnvironmentDiscoveryTestBase().getExpectedEnvironment();
+    landingZoneMap = new HashMap<>();
+    environment.forEachLandingZone(landingZoneMap::put);
+    region = Region.US_WEST_1;
+  }
+
+  @Benchmark
+  public LandingZone landingZoneOrNull() {
+    return environment.landingZoneOrNull(region);
+  }
+
+  @Benchmark
+  public boolean hasLandingZone() {
+    return environment.hasLandingZone(region);
+  }
+
+  @Benchmark
+  public Optional<LandingZone> getLandingZone() {
+    return environment.getLandingZone(region);
+  }
+
+  @Benchmark
+  public void forEachLandingZone(Blackhole blackhole) {
+    environment.forEachLandingZone(
+        (landingZoneRegion, landingZone) -> blackhole.consume(landingZone));
+  }
+
+  @Benchmark
+  public Set<Region> supportedRegions() {
+    return environment.getSupportedRegions();
+  }
+
+  @Benchmark
+  public Optional<LandingZone> hashMapLookup() {
+    return Optional.ofNullable(landingZoneMap.get(region));
+  }
+
+  @Benchmark
+  public Set<Region> hashMapSupportedRegions() {
+    return Set.copyOf(landingZoneMap.keySet());
+  }
+}
@@ -1,8 +1,16 @@
 package bio.terra.aws.resource.discovery;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
-import java.nio.charset.StandardCharsets;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Base64;
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.JsonDecoder;
 
 /**
  * The {@link AvroConfiguration} class parses Support Resource configuration records.
@@ -25,31 +33,113 @@ import java.util.Base64;
  *       JSON
  * </ul>
  *
- * <p>The responsibility of record AvroConfiguration is to deserialize this JSON record and perform
- * base64 decoding of both the schema and payload.
- *
- * @param encodedSchema base64-encoded Avro schema used to write configuration data
- * @param encodedPayload base64-encoded Avro data written with the associated schema
+ * <p>The responsibility of class AvroConfiguration is to locate both fields in the stored record
+ * and perform base64 decoding of the schema and payload. This is done without materializing either
+ * field as a string: the record is scanned with a streaming JSON parser, the schema is looked up in
+ * the {@link AvroSchemaCache} by its encoded bytes, and the payload is base64-decoded as a stream
+ * that feeds the Avro JSON decoder directly from the stored bytes.
  */
-record AvroConfiguration(
-    @JsonProperty("schema") String encodedSchema, @JsonProperty("payload") String encodedPayload) {
+final class AvroConfiguration implements StoredConfiguration {
+  private static final String SCHEMA_FIELD = "schema";
+  private static final String PAYLOAD_FIELD = "payload";
 
-  private static String decode(String base64Encoded) {
-    byte[] bytes = Base64.getDecoder().decode(base64Encoded);
-    return new String(bytes, StandardCharsets.UTF_8);
+  /**
+   * A field value located in the stored record. Values containing JSON escapes (which base64 text
+   * does not need, but which a writer is free to use) cannot be read in place, and are held
+   * base64-decoded instead.
+   */
+  private record FieldValue(byte[] array, int offset, int length, boolean base64Encoded) {
+    InputStream decodedStream() {
+      InputStream stream = new ByteArrayInputStream(array, offset, length);
+      return base64Encoded ? Base64.getDecoder().wrap(stream) : stream;
+    }
   }
 
+  private final FieldValue schema;
+  private final FieldValue payload;
+
   /**
-   * @return base64 Avro schema JSON decoded to UTF-8 and usable with the Avro SDK
+   * Locate the schema and payload of a stored configuration record; the passed array is retained,
+   * and must not be modified.
+   *
+   * @param content stored record, in UTF-8
+   * @param jsonFactory factory used to create the streaming parser scanning the record
+   * @throws IOException if the record is not valid JSON, or does not contain both fields as strings
    */
-  public String schema() {
-    return decode(encodedSchema());
+  AvroConfiguration(byte[] content, JsonFactory jsonFactory) throws IOException {
+    FieldValue schemaValue = null;
+    FieldValue payloadValue = null;
+    try (JsonParser parser = jsonFactory.createParser(content)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Configuration record is not a JSON object.");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String fieldName = parser.currentName();
+        JsonToken valueToken = parser.nextToken();
+        if (SCHEMA_FIELD.equals(fieldName) || PAYLOAD_FIELD.equals(fieldName)) {
+          if (valueToken != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(
+                parser, String.format("Configuration field '%s' is not a string.", fieldName));
+          }
+          FieldValue value = locateStringValue(content, parser);
+          if (SCHEMA_FIELD.equals(fieldName)) {
+            schemaValue = value;
+          } else {
+            payloadValue = value;
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+      if (schemaValue == null || payloadValue == null) {
+        throw new JsonParseException(
+            parser,
+            String.format(
+                "Configuration record requires fields '%s' and '%s'.",
+                SCHEMA_FIELD, PAYLOAD_FIELD));
+      }
+    }
+    this.schema = schemaValue;
+    this.payload = payloadValue;
   }
 
   /**
-   * @return base64 Avro configuration data JSON decoded to UTF-8 and usable with the Avro SDK
+   * Locate the string value at the parser's current token. The parser does not decode string values
+   * until asked to, so for the common case of a value without escapes this only scans for the
+   * closing quote.
    */
-  public String payload() {
-    return decode(encodedPayload());
+  private static FieldValue locateStringValue(byte[] content, JsonParser parser)
+      throws IOException {
+    // The token location is that of the opening quote.
+    int start = (int) parser.currentTokenLocation().getByteOffset() + 1;
+    for (int end = start; end < content.length; end++) {
+      if (content[end] == '"') {
+        return new FieldValue(content, start, end - start, true);
+      }
+      if (content[end] == '\\') {
+        break;
+      }
+    }
+    byte[] decoded = parser.getBinaryValue();
+    return new FieldValue(decoded, 0, decoded.length, false);
+  }
+
+  @Override
+  public <T> T decode(AvroSchemaCache schemaCache, Schema readerSchema) throws IOException {
+
+    // First get the (cached) parsed schema that the data was written with and a JSON decoder for
+    // it, reading the payload as it is base64-decoded.
+    AvroSchemaCache.FingerprintedSchema writerSchema =
+        schemaCache.getWriterSchema(
+            schema.array(), schema.offset(), schema.length(), schema.base64Encoded());
+    JsonDecoder decoder = writerSchema.acquireJsonDecoder(payload.decodedStream());
+
+    // Now get the (cached) Avro DatumReader for this writer and reader schema pair, which has
+    // validated that the writer schema is compatible with the reader schema, and use it to marshal
+    // the data into the Java type.
+    DatumReader<T> reader = schemaCache.getReader(writerSchema, readerSchema);
+    T decoded = reader.read(null, decoder);
+    writerSchema.releaseJsonDecoder(decoder);
+    return decoded;
   }
 }
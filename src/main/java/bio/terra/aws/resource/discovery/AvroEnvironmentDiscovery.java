@@ -6,16 +6,28 @@ import bio.terra.aws.resource.discovery.avro.LandingZoneMetadataModel;
 import bio.terra.aws.resource.discovery.avro.LandingZoneModel;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
 import org.apache.avro.Schema;
-import org.apache.avro.io.DatumReader;
-import org.apache.avro.io.Decoder;
-import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.specific.SpecificDatumReader;
 import software.amazon.awssdk.arns.Arn;
 import software.amazon.awssdk.regions.Region;
 
@@ -23,7 +35,7 @@ import software.amazon.awssdk.regions.Region;
  * Abstract class used to discover AWS Support Resources in a single Terra AWS Environment and its
  * associated Landing Zones.
  *
- * <p>This class is responsible for parsing {@link AvroConfiguration} files/S3 objects into Java
+ * <p>This class is responsible for parsing {@link StoredConfiguration} files/S3 objects into Java
  * objects representing AWS Support Resources, usable by other components such as the Terra
  * Workspace Manager service.
  *
@@ -31,19 +43,85 @@ import software.amazon.awssdk.regions.Region;
  * classes using the Avro SDK, and marshalling these (private) model class instances into the
  * library's public object model; subclasses will be responsible for discovering the Avro records
  * stored hierarchically in different storage media types.
+ *
+ * <p>The Environment configuration and the Landing Zone configurations are read and parsed
+ * concurrently, on the {@link Executor} passed at construction, so that discovery latency does not
+ * grow with the number of Landing Zones. Tasks that the executor has not started by the time their
+ * result is needed are run by the discovering thread, so discovery cannot deadlock on a saturated
+ * executor. Failures are reported deterministically: a failure to discover the Environment
+ * configuration takes precedence, followed by the failure of the first Landing Zone in region
+ * order.
  */
 abstract class AvroEnvironmentDiscovery implements EnvironmentDiscovery {
 
   public static final Integer SCHEMA_MAJOR_VERSION = 0;
 
+  /**
+   * Parsed writer schemas and resolving readers, shared by all discoveries since configurations
+   * throughout (and across) Environments are typically written with the same few schemas.
+   */
+  private static final AvroSchemaCache SCHEMA_CACHE = new AvroSchemaCache();
+
+  static {
+    // Records in single-object encoding identify their writer schema only by fingerprint; seed the
+    // cache with the schemas this library was generated from, which most records will use.
+    SCHEMA_CACHE.addSchema(EnvironmentModel.getClassSchema());
+    SCHEMA_CACHE.addSchema(LandingZoneModel.getClassSchema());
+  }
+
   /**
    * Object mapper used for JSON parsing of {@link AvroConfiguration} objects from data records
    * stored in files or S3 objects.
    */
   private final ObjectMapper mapper;
 
+  /** Executor on which configurations are read and parsed concurrently. */
+  private final Executor executor;
+
+  /**
+   * State retained from the most recent discovery, allowing subsequent discoveries to be performed
+   * incrementally. Subclasses that return the same {@link StoredConfiguration} instance for a
+   * storage object that has not changed since it was last read (such as {@link
+   * S3EnvironmentDiscovery}, using ETags, and {@link FilesystemEnvironmentDiscovery}, using file
+   * modification time and size) cause that object to be neither decoded nor marshalled again: the
+   * {@link LandingZone} built from an unchanged configuration is shared with the new {@link
+   * Environment}, and if no configuration changed at all, the previously discovered {@link
+   * Environment} is returned as-is.
+   */
+  private volatile DiscoveryState lastDiscoveryState;
+
+  private record DiscoveryState(
+      StoredConfiguration environmentConfiguration,
+      Environment globalResources,
+      Map<Region, DiscoveredLandingZone> landingZones,
+      Environment environment) {}
+
+  private record DiscoveredLandingZone(
+      StoredConfiguration configuration, LandingZone landingZone) {}
+
+  private record GlobalResources(
+      StoredConfiguration environmentConfiguration, Environment globalResources) {}
+
+  /**
+   * Global Support Resources and Landing Zones built by the most recent selective discoveries (see
+   * {@link #discoverEnvironmentOnly()} and {@link #discoverLandingZone(Region)}), reused while
+   * their configurations are unchanged, as for {@link #lastDiscoveryState}.
+   */
+  private volatile GlobalResources selectedGlobalResources;
+
+  private final Map<Region, DiscoveredLandingZone> selectedLandingZones;
+
   protected AvroEnvironmentDiscovery() {
+    this(DiscoveryExecutors.defaultExecutor());
+  }
+
+  /**
+   * @param executor executor on which configurations are read and parsed concurrently
+   */
+  protected AvroEnvironmentDiscovery(Executor executor) {
     mapper = new ObjectMapper();
+    this.executor = executor;
+    this.selectedLandingZones = new ConcurrentHashMap<>();
   }
 
   /**
@@ -53,11 +131,11 @@ abstract class AvroEnvironmentDiscovery implements EnvironmentDiscovery {
    *
    * @param mapper Jackson ObjectMapper used to map stored JSON into {@link AvroConfiguration} class
    *     instances.
-   * @return An {@link AvroConfiguration} object describing the Global Support Resources in the
+   * @return A {@link StoredConfiguration} object describing the Global Support Resources in the
    *     Terra Environment.
    * @throws IOException IOException
    */
-  protected abstract AvroConfiguration getEnvironmentConfiguration(ObjectMapper mapper)
+  protected abstract StoredConfiguration getEnvironmentConfiguration(ObjectMapper mapper)
       throws IOException;
 
   /**
@@ -67,92 +145,513 @@ abstract class AvroEnvironmentDiscovery implements EnvironmentDiscovery {
    *
    * @param mapper Jackson ObjectMapper used to map stored JSON into {@link AvroConfiguration} class
    *     instances.
-   * @return A populated {@link Optional<AvroConfiguration>} object describing Regional Support
-   *     Resources if a Terra Landing Zone exists in the Environment for the passed AWS Region, an
-   *     empty {@link Optional<AvroConfiguration>} otherwise.
+   * @return A map from each AWS Region in which a Terra Landing Zone exists in the Environment to a
+   *     {@link StoredConfiguration} object describing its Regional Support Resources.
    * @throws IOException IOException
    */
-  protected abstract Map<Region, AvroConfiguration> getLandingZoneConfigurations(
+  protected abstract Map<Region, StoredConfiguration> getLandingZoneConfigurations(
       ObjectMapper mapper) throws IOException;
 
+  /**
+   * Subclasses may override this method to read the Environment configuration more cheaply than
+   * {@link #getEnvironmentConfiguration} when it is discovered alone (see {@link
+   * #discoverEnvironmentOnly()}); by default, that method is called.
+   *
+   * @param mapper Jackson ObjectMapper used to map stored JSON into {@link AvroConfiguration} class
+   *     instances.
+   * @return A {@link StoredConfiguration} object describing the Global Support Resources in the
+   *     Terra Environment.
+   * @throws IOException IOException
+   */
+  protected StoredConfiguration getEnvironmentConfigurationOnly(ObjectMapper mapper)
+      throws IOException {
+    return getEnvironmentConfiguration(mapper);
+  }
+
+  /**
+   * Subclasses may override this method to read the configuration of a single Landing Zone, rather
+   * than of every Landing Zone (see {@link #discoverLandingZone(Region)}); by default, {@link
+   * #getLandingZoneConfigurations} is called.
+   *
+   * @param region the AWS region of the Landing Zone
+   * @param mapper Jackson ObjectMapper used to map stored JSON into {@link AvroConfiguration} class
+   *     instances.
+   * @return A {@link StoredConfiguration} object describing the Regional Support Resources in the
+   *     region, or null if no Terra Landing Zone exists in the region.
+   * @throws IOException IOException
+   */
+  protected StoredConfiguration getLandingZoneConfiguration(Region region, ObjectMapper mapper)
+      throws IOException {
+    return getLandingZoneConfigurations(mapper).get(region);
+  }
+
+  /** Reads the {@link StoredConfiguration} of each Landing Zone from storage. */
+  @FunctionalInterface
+  protected interface LandingZoneConfigurationsReader {
+    Map<Region, StoredConfiguration> read() throws IOException;
+  }
+
+  /** Get the object mapper used for JSON parsing of data records. */
+  protected ObjectMapper getObjectMapper() {
+    return mapper;
+  }
+
+  /** Get the executor on which configurations are read and parsed concurrently. */
+  protected Executor getExecutor() {
+    return executor;
+  }
+
   @Override
   public Environment discoverEnvironment() throws IOException {
+    return discoverEnvironment(
+        () -> getEnvironmentConfiguration(mapper), () -> getLandingZoneConfigurations(mapper));
+  }
 
-    // Call into subclassed getEnvironmentConfiguration() method to get a parsed Avro configuration
-    // record describing the Terra AWS Environment's Global Support Resources.
+  /**
+   * Discover the Environment's Global Support Resources alone, reading only the Environment
+   * configuration; they are built again only if the configuration changed since they were last
+   * discovered, by this or a full discovery.
+   */
+  @Override
+  public Environment discoverEnvironmentOnly() throws IOException {
+    GlobalResources globalResources =
+        discoverGlobalResources(lastDiscoveryState, getEnvironmentConfigurationOnly(mapper));
+    selectedGlobalResources = globalResources;
+    return globalResources.globalResources();
+  }
 
-    AvroConfiguration environmentConfiguration = getEnvironmentConfiguration(mapper);
+  /**
+   * Discover the Landing Zone in a single region, reading only its configuration; it is built again
+   * only if the configuration changed since it was last discovered, by this or a full discovery.
+   */
+  @Override
+  public Optional<LandingZone> discoverLandingZone(Region region) throws IOException {
+    StoredConfiguration configuration = getLandingZoneConfiguration(region, mapper);
+    if (configuration == null) {
+      selectedLandingZones.remove(region);
+      return Optional.empty();
+    }
+    DiscoveredLandingZone landingZone =
+        discoverLandingZone(lastDiscoveryState, region, configuration);
+    selectedLandingZones.put(region, landingZone);
+    return Optional.of(landingZone.landingZone());
+  }
+
+  /**
+   * Helper for subclasses that can locate configurations by other means than the {@link
+   * #getEnvironmentConfiguration} and {@link #getLandingZoneConfigurations} methods to perform a
+   * discovery; the Environment is assembled, and previously discovered Landing Zones reused,
+   * exactly as by {@link #discoverEnvironment()}.
+   *
+   * @param environmentReader reads the Environment configuration, which must exist
+   * @param landingZonesReader reads the Landing Zone configurations
+   * @return the discovered Environment
+   * @throws IOException IOException
+   */
+  protected Environment discoverEnvironment(
+      ConfigurationReader environmentReader, LandingZoneConfigurationsReader landingZonesReader)
+      throws IOException {
+    DiscoveryState previousState = lastDiscoveryState;
+
+    // Call into subclassed getEnvironmentConfiguration() method (by default) to get a parsed Avro
+    // configuration record describing the Terra AWS Environment's Global Support Resources, and
+    // parse it into an Environment describing only the Global Support Resources, unless it is
+    // unchanged since the last discovery. This runs concurrently with the discovery of the Landing
+    // Zones below.
+
+    FutureTask<GlobalResources> globalResourcesTask =
+        startTask(() -> discoverGlobalResources(previousState, environmentReader.read()));
+
+    Map<Region, DiscoveredLandingZone> landingZones;
+    try {
+      landingZones = discoverLandingZones(previousState, landingZonesReader);
+    } catch (IOException | RuntimeException exception) {
+      // A failure to discover the Environment configuration takes precedence.
+      awaitTask(globalResourcesTask);
+      throw exception;
+    }
+    return assembleEnvironment(previousState, awaitTask(globalResourcesTask), landingZones);
+  }
+
+  /**
+   * Helper for subclasses reading configurations asynchronously to perform a discovery, parsing
+   * each configuration on this discovery's executor as soon as it has been read. The Environment is
+   * assembled, and previously discovered Landing Zones reused, exactly as by {@link
+   * #discoverEnvironment()}; failures are reported with the same precedence.
+   *
+   * @param environmentConfiguration completes with the Environment configuration, or with a {@link
+   *     NoSuchElementException} if there is none
+   * @param landingZoneConfigurations completes with a map from each AWS Region in which a Terra
+   *     Landing Zone exists to a future completing with its configuration, or with null if the
+   *     region should be omitted
+   * @return a future completing with the discovered Environment
+   */
+  protected CompletableFuture<Environment> discoverEnvironmentAsync(
+      CompletableFuture<StoredConfiguration> environmentConfiguration,
+      CompletableFuture<Map<Region, CompletableFuture<StoredConfiguration>>>
+          landingZoneConfigurations) {
+    DiscoveryState previousState = lastDiscoveryState;
+
+    CompletableFuture<GlobalResources> globalResourcesFuture =
+        environmentConfiguration.thenApplyAsync(
+            configuration ->
+                callUnchecked(() -> discoverGlobalResources(previousState, configuration)),
+            executor);
+
+    CompletableFuture<Map<Region, DiscoveredLandingZone>> landingZonesFuture =
+        landingZoneConfigurations.thenCompose(
+            configurations -> {
+              List<Region> orderedRegions = new ArrayList<>(configurations.keySet());
+              orderedRegions.sort(Comparator.comparing(Region::id));
+
+              List<CompletableFuture<DiscoveredLandingZone>> futures = new ArrayList<>();
+              for (Region region : orderedRegions) {
+                futures.add(
+                    configurations
+                        .get(region)
+                        .thenApplyAsync(
+                            configuration ->
+                                configuration == null
+                                    ? null
+                                    : callUnchecked(
+                                        () ->
+                                            discoverLandingZone(
+                                                previousState, region, configuration)),
+                            executor));
+              }
+
+              // Wait for every region to complete, so that the failure reported is that of the
+              // first region in region order, rather than the first to fail.
+              return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                  .handle(
+                      (ignored, failure) -> {
+                        Map<Region, DiscoveredLandingZone> landingZones = new HashMap<>();
+                        for (int i = 0; i < orderedRegions.size(); i++) {
+                          DiscoveredLandingZone landingZone = joinCompleted(futures.get(i));
+                          if (landingZone != null) {
+                            landingZones.put(orderedRegions.get(i), landingZone);
+                          }
+                        }
+                        return landingZones;
+                      });
+            });
+
+    // As above, a failure to discover the Environment configuration takes precedence.
+    return CompletableFuture.allOf(globalResourcesFuture, landingZonesFuture)
+        .handle(
+            (ignored, failure) ->
+                callUnchecked(
+                    () ->
+                        assembleEnvironment(
+                            previousState,
+                            joinCompleted(globalResourcesFuture),
+                            joinCompleted(landingZonesFuture))));
+  }
+
+  /**
+   * Private helper to parse the Environment configuration into the Global Support Resources, unless
+   * it is unchanged since the last full or selective discovery.
+   */
+  private GlobalResources discoverGlobalResources(
+      DiscoveryState previousState, StoredConfiguration configuration) throws IOException {
+    if (previousState != null && previousState.environmentConfiguration() == configuration) {
+      return new GlobalResources(configuration, previousState.globalResources());
+    }
+    GlobalResources selected = selectedGlobalResources;
+    return selected != null && selected.environmentConfiguration() == configuration
+        ? selected
+        : new GlobalResources(configuration, createGlobalResourcesEnvironment(configuration));
+  }
+
+  /**
+   * Private helper to discover the Landing Zones, building those whose configurations changed since
+   * the last discovery (concurrently), and reusing the rest.
+   */
+  private Map<Region, DiscoveredLandingZone> discoverLandingZones(
+      DiscoveryState previousState, LandingZoneConfigurationsReader landingZonesReader)
+      throws IOException {
+
+    // Call into subclassed getLandingZoneConfigurations() method (by default) to get parsed Avro
+    // configuration records describing the Terra AWS Landing Zone Regional Support Resources for
+    // all supported AWS Regions.
+
+    Map<Region, StoredConfiguration> landingZoneConfigurations = landingZonesReader.read();
+
+    return forEachRegion(
+        landingZoneConfigurations.keySet(),
+        region ->
+            discoverLandingZone(previousState, region, landingZoneConfigurations.get(region)));
+  }
+
+  /**
+   * Private helper to build the Landing Zone for a configuration, unless it is unchanged since the
+   * last full or selective discovery.
+   */
+  private DiscoveredLandingZone discoverLandingZone(
+      DiscoveryState previousState, Region region, StoredConfiguration configuration)
+      throws IOException {
+    DiscoveredLandingZone previousLandingZone =
+        previousState == null ? null : previousState.landingZones().get(region);
+    if (previousLandingZone != null && previousLandingZone.configuration() == configuration) {
+      return previousLandingZone;
+    }
+    DiscoveredLandingZone selectedLandingZone = selectedLandingZones.get(region);
+    return selectedLandingZone != null && selectedLandingZone.configuration() == configuration
+        ? selectedLandingZone
+        : new DiscoveredLandingZone(configuration, createLandingZone(configuration));
+  }
+
+  /**
+   * Private helper to build the discovered Environment, retaining the discovery state for the next
+   * discovery; if nothing changed since the last discovery, its Environment is returned as-is.
+   */
+  private Environment assembleEnvironment(
+      DiscoveryState previousState,
+      GlobalResources globalResources,
+      Map<Region, DiscoveredLandingZone> landingZones) {
+    boolean environmentChanged =
+        previousState == null
+            || previousState.environmentConfiguration()
+                != globalResources.environmentConfiguration();
+    boolean landingZonesChanged =
+        previousState == null
+            || !previousState.landingZones().keySet().equals(landingZones.keySet())
+            || landingZones.entrySet().stream()
+                .anyMatch(
+                    entry -> previousState.landingZones().get(entry.getKey()) != entry.getValue());
+
+    if (!environmentChanged && !landingZonesChanged) {
+      return previousState.environment();
+    }
+
+    // Now that all the LandingZones have been discovered, build the Environment instance, retain
+    // the discovery state for the next discovery and return the Environment to the caller.
+
+    Environment.Builder environmentBuilder = globalResources.globalResources().toBuilder();
+    for (Map.Entry<Region, DiscoveredLandingZone> entry : landingZones.entrySet()) {
+      environmentBuilder.addLandingZone(entry.getKey(), entry.getValue().landingZone());
+    }
+    Environment environment = environmentBuilder.build();
+
+    lastDiscoveryState =
+        new DiscoveryState(
+            globalResources.environmentConfiguration(),
+            globalResources.globalResources(),
+            landingZones,
+            environment);
+    return environment;
+  }
+
+  /** Performs a discovery task for a single AWS Region. */
+  @FunctionalInterface
+  protected interface RegionTask<T> {
+    T apply(Region region) throws IOException;
+  }
+
+  /**
+   * Helper for subclasses to perform a task for each of a collection of regions concurrently, on
+   * this discovery's executor.
+   *
+   * @param regions regions to perform the task for
+   * @param task task to perform; it may return null for regions that should be omitted from the
+   *     result
+   * @return map from each region to the non-null result of its task
+   * @throws IOException the failure of the first failed task, in region order
+   */
+  protected <T> Map<Region, T> forEachRegion(Collection<Region> regions, RegionTask<T> task)
+      throws IOException {
+    List<Region> orderedRegions = new ArrayList<>(regions);
+    orderedRegions.sort(Comparator.comparing(Region::id));
+    return forEachListedRegion(consumer -> orderedRegions.forEach(consumer), task);
+  }
+
+  /** Lists regions, passing each to a consumer as soon as it has been found. */
+  @FunctionalInterface
+  protected interface RegionLister {
+    void list(Consumer<Region> consumer) throws IOException;
+  }
+
+  /**
+   * Helper for subclasses to perform a task for each region found by a listing concurrently, on
+   * this discovery's executor, starting each region's task as soon as the region has been listed
+   * rather than once the listing has completed.
+   *
+   * @param lister lists the regions to perform the task for, on the calling thread; regions listed
+   *     more than once are performed once
+   * @param task task to perform; it may return null for regions that should be omitted from the
+   *     result
+   * @return map from each region to the non-null result of its task
+   * @throws IOException the failure of the listing, or else of the first failed task, in region
+   *     order
+   */
+  protected <T> Map<Region, T> forEachListedRegion(RegionLister lister, RegionTask<T> task)
+      throws IOException {
+    Map<Region, FutureTask<T>> tasks = new HashMap<>();
+    try {
+      lister.list(region -> tasks.computeIfAbsent(region, key -> startTask(() -> task.apply(key))));
+
+      List<Region> orderedRegions = new ArrayList<>(tasks.keySet());
+      orderedRegions.sort(Comparator.comparing(Region::id));
+      Map<Region, T> results = new HashMap<>();
+      for (Region region : orderedRegions) {
+        T result = awaitTask(tasks.get(region));
+        if (result != null) {
+          results.put(region, result);
+        }
+      }
+      return results;
+    } finally {
+      // Following a failure, there is no need to perform tasks that have not started yet.
+      tasks.values().forEach(futureTask -> futureTask.cancel(false));
+    }
+  }
+
+  /** Private helper to submit a task to the executor. */
+  private <T> FutureTask<T> startTask(Callable<T> callable) {
+    FutureTask<T> task = new FutureTask<>(callable);
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException exception) {
+      // The task will be run by the thread awaiting it.
+    }
+    return task;
+  }
+
+  /**
+   * Private helper to wait for a task's result, running the task on the current thread if the
+   * executor has not yet started it, and rethrowing its failure as thrown.
+   */
+  private static <T> T awaitTask(FutureTask<T> task) throws IOException {
+    // Does nothing if the task has already been started.
+    task.run();
+    try {
+      return task.get();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while discovering the environment.");
+    } catch (CancellationException exception) {
+      throw new InterruptedIOException("Environment discovery task was cancelled.");
+    } catch (ExecutionException exception) {
+      throw propagateFailure(exception.getCause());
+    }
+  }
+
+  /**
+   * Helper for subclasses to wait for a future, rethrowing its failure as thrown.
+   *
+   * @throws IOException if the future failed with an {@link IOException}, or waiting was
+   *     interrupted
+   */
+  protected static <T> T join(CompletableFuture<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while discovering the environment.");
+    } catch (ExecutionException exception) {
+      throw propagateFailure(exception.getCause());
+    }
+  }
+
+  /** Private helper to get the result of a completed future, rethrowing its failure unwrapped. */
+  private static <T> T joinCompleted(CompletableFuture<T> future) {
+    return callUnchecked(() -> join(future));
+  }
+
+  /**
+   * Private helper to throw the failure of a task as thrown: IOExceptions are returned to be thrown
+   * by the caller, while unchecked exceptions are thrown directly.
+   */
+  private static IOException propagateFailure(Throwable cause) {
+    if (cause instanceof CompletionException && cause.getCause() != null) {
+      return propagateFailure(cause.getCause());
+    }
+    if (cause instanceof IOException ioException) {
+      return ioException;
+    }
+    if (cause instanceof RuntimeException runtimeException) {
+      throw runtimeException;
+    }
+    if (cause instanceof Error error) {
+      throw error;
+    }
+    return new IOException(cause);
+  }
+
+  /**
+   * Private helper to call a task from a future stage, wrapping an {@link IOException} in a {@link
+   * CompletionException}, which futures unwrap when reporting it.
+   */
+  private static <T> T callUnchecked(Callable<T> callable) {
+    try {
+      return callable.call();
+    } catch (RuntimeException exception) {
+      throw exception;
+    } catch (Exception exception) {
+      throw new CompletionException(exception);
+    }
+  }
+
+  /**
+   * Private helper to parse an Environment configuration into an {@link Environment} describing the
+   * Environment's Global Support Resources, but no Landing Zones.
+   */
+  private Environment createGlobalResourcesEnvironment(StoredConfiguration configuration)
+      throws IOException {
 
     // Parse the Avro configuration record into generated deserialization object model Java class.
 
     EnvironmentModel environmentModel =
-        parseModel(environmentConfiguration, EnvironmentModel.getClassSchema());
+        parseModel(configuration, EnvironmentModel.getClassSchema());
 
-    // Start building the public Environment class to return to the caller with discovered Global
+    return Environment.builder()
+        .applicationInstanceProfileName(environmentModel.getAppInstanceProfileName())
+        .metadata(createMetadataFromEnvironmentModel(environmentModel))
+        .workspaceManagerRoleArn(Arn.fromString(environmentModel.getRoleArnTerraWorkspaceManager()))
+        .userRoleArn(Arn.fromString(environmentModel.getRoleArnTerraUser()))
+        .notebookRoleArn(Arn.fromString(environmentModel.getRoleArnTerraNotebook()))
+        .build();
+  }
+
+  /** Private helper to parse a Landing Zone configuration into a {@link LandingZone}. */
+  private LandingZone createLandingZone(StoredConfiguration configuration) throws IOException {
+
+    // Parse the Avro configuration record into generated deserialization object model Java class.
+
+    LandingZoneModel landingZoneModel =
+        parseModel(configuration, LandingZoneModel.getClassSchema());
+
+    // Building a public LandingZone class to return to the caller with discovered Regional
     // Support Resources.
 
-    Environment.Builder environmentBuilder =
-        Environment.builder()
-            .applicationInstanceProfileName(environmentModel.getAppInstanceProfileName())
-            .metadata(createMetadataFromEnvironmentModel(environmentModel))
-            .workspaceManagerRoleArn(
-                Arn.fromString(environmentModel.getRoleArnTerraWorkspaceManager()))
-            .userRoleArn(Arn.fromString(environmentModel.getRoleArnTerraUser()))
-            .notebookRoleArn(Arn.fromString(environmentModel.getRoleArnTerraNotebook()));
-
-    // Call into subclassed getLandingZoneConfigurations() method to get parsed Avro configuration
-    // records describing the Terra AWS Landing Zone Regional Support Resources for all supported
-    // AWS Regions.
-    Map<Region, AvroConfiguration> landingZoneConfigurations = getLandingZoneConfigurations(mapper);
-
-    // Now iterate over every AWS region to check for configured Landing Zones.
-
-    for (Map.Entry<Region, AvroConfiguration> entry : landingZoneConfigurations.entrySet()) {
-
-      // Parse the Avro configuration record into generated deserialization object model Java class.
-
-      LandingZoneModel landingZoneModel =
-          parseModel(entry.getValue(), LandingZoneModel.getClassSchema());
-
-      // Building a public LandingZone class to return to the caller with discovered Regional
-      // Support Resources.
-
-      LandingZone.Builder landingZoneBuilder =
-          LandingZone.builder()
-              .applicationVpcId(landingZoneModel.getAppFrameworkVpcId())
-              .applicationVpcPrivateSubnetId(landingZoneModel.getAppFrameworkPrivateSubnetId())
-              .metadata(createMetadataFromELandingZoneModel(landingZoneModel))
-              .storageBucket(
-                  Arn.fromString(landingZoneModel.getBucketArn()), landingZoneModel.getBucketId())
-              .kmsKey(
-                  Arn.fromString(landingZoneModel.getKmsKeyArn()),
-                  UUID.fromString(landingZoneModel.getKmsKeyId()));
-
-      List<String> notebookLifecycleConfigArns =
-          landingZoneModel.getNotebookLifecycleConfigurationArns();
-      List<String> notebookLifecycleConfigNames =
-          landingZoneModel.getNotebookLifecycleConfigurationNames();
-
-      if (notebookLifecycleConfigArns.size() != notebookLifecycleConfigNames.size()) {
-        throw new InputMismatchException(
-            "Mismatch between lifecycle configuration ARN and name counts.");
-      }
+    LandingZone.Builder landingZoneBuilder =
+        LandingZone.builder()
+            .applicationVpcId(landingZoneModel.getAppFrameworkVpcId())
+            .applicationVpcPrivateSubnetId(landingZoneModel.getAppFrameworkPrivateSubnetId())
+            .metadata(createMetadataFromELandingZoneModel(landingZoneModel))
+            .storageBucket(
+                Arn.fromString(landingZoneModel.getBucketArn()), landingZoneModel.getBucketId())
+            .kmsKey(
+                Arn.fromString(landingZoneModel.getKmsKeyArn()),
+                UUID.fromString(landingZoneModel.getKmsKeyId()));
 
-      for (int i = 0; i < notebookLifecycleConfigArns.size(); i++) {
-        landingZoneBuilder.addNotebookLifecycleConfiguration(
-            Arn.fromString(landingZoneModel.getNotebookLifecycleConfigurationArns().get(i)),
-            landingZoneModel.getNotebookLifecycleConfigurationNames().get(i));
-      }
+    List<String> notebookLifecycleConfigArns =
+        landingZoneModel.getNotebookLifecycleConfigurationArns();
+    List<String> notebookLifecycleConfigNames =
+        landingZoneModel.getNotebookLifecycleConfigurationNames();
 
-      // Build the LandingZone and push it into the in-flight Environment builder mapped to the
-      // current AWS region.
-      environmentBuilder.addLandingZone(entry.getKey(), landingZoneBuilder.build());
+    if (notebookLifecycleConfigArns.size() != notebookLifecycleConfigNames.size()) {
+      throw new InputMismatchException(
+          "Mismatch between lifecycle configuration ARN and name counts.");
     }
 
-    // Now that all the LandingZones have been discovered and added to the Environment builder,
-    // build
-    // the Environment instance and return to the caller.
-    return environmentBuilder.build();
+    for (int i = 0; i < notebookLifecycleConfigArns.size(); i++) {
+      landingZoneBuilder.addNotebookLifecycleConfiguration(
+          Arn.fromString(landingZoneModel.getNotebookLifecycleConfigurationArns().get(i)),
+          landingZoneModel.getNotebookLifecycleConfigurationNames().get(i));
+    }
+
+    return landingZoneBuilder.build();
   }
 
   /**
@@ -165,25 +664,55 @@ abstract class AvroEnvironmentDiscovery implements EnvironmentDiscovery {
    *   <li>Record data
    * </ul>
    *
-   * @param configuration Parsed configuration; provides the configuration data and the writer
-   *     schema used to write it.
+   * @param configuration Stored configuration; provides the configuration data and the writer
+   *     schema used to write it (or its fingerprint).
    * @param readerSchema Provides the reader schema used for Java code generation.
    * @return The marshalled Java object of type T
    * @param <T> Type of generated Java object to create from passed Avro record data and schemas.
    * @throws IOException IOException
    */
-  private static <T> T parseModel(AvroConfiguration configuration, Schema readerSchema)
+  private static <T> T parseModel(StoredConfiguration configuration, Schema readerSchema)
       throws IOException {
+    return configuration.decode(SCHEMA_CACHE, readerSchema);
+  }
 
-    // First parse the schema that the data was written with and create a JSON decoder to parse it
-    // with.
-    Schema writerSchema = new Schema.Parser().parse(configuration.schema());
-    Decoder decoder = DecoderFactory.get().jsonDecoder(writerSchema, configuration.payload());
+  /** Reads a {@link StoredConfiguration} from storage. */
+  @FunctionalInterface
+  protected interface ConfigurationReader {
+    StoredConfiguration read() throws IOException;
+  }
 
-    // Now create an Avro DatumReader, which will validate that the writer schema is compatible with
-    // the reader schema, and use the schema to marshal the data into the Java type.
-    DatumReader<T> reader = new SpecificDatumReader<>(writerSchema, readerSchema);
-    return reader.read(null, decoder);
+  /**
+   * Helper for subclasses to choose between the binary ({@code config.avro}) and JSON ({@code
+   * config.json}) encodings of a configuration stored at the same location. The binary encoding is
+   * preferred, unless it was written with a schema that is not known to this library (for example,
+   * by a producer updated ahead of this consumer), in which case the JSON encoding, which carries
+   * its writer schema, is read instead if present.
+   *
+   * @param binaryReader reads the binary encoding, or null if it is not present
+   * @param jsonReader reads the JSON encoding, or null if it is not present
+   * @return the chosen configuration, or null if neither encoding is present
+   * @throws IOException IOException
+   */
+  protected static StoredConfiguration selectConfiguration(
+      ConfigurationReader binaryReader, ConfigurationReader jsonReader) throws IOException {
+    if (binaryReader != null) {
+      StoredConfiguration binary = binaryReader.read();
+      if (jsonReader == null || isWriterSchemaKnown(binary)) {
+        return binary;
+      }
+    }
+    return jsonReader == null ? null : jsonReader.read();
+  }
+
+  /**
+   * Check whether the writer schema of a configuration is available to decode it with: either
+   * because the configuration carries its writer schema, or because the writer schema it identifies
+   * is known to this library.
+   */
+  protected static boolean isWriterSchemaKnown(StoredConfiguration configuration) {
+    return !(configuration instanceof SingleObjectConfiguration singleObject)
+        || SCHEMA_CACHE.getWriterSchema(singleObject.fingerprint()) != null;
   }
 
   /** Private helper to create a {@link Metadata} from an Avro {@link EnvironmentModel} */
@@ -0,0 +1,202 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility;
+import org.apache.avro.SchemaCompatibility.SchemaCompatibilityType;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.JsonDecoder;
+import org.apache.avro.specific.SpecificDatumReader;
+
+/**
+ * A cache of parsed Avro writer schemas and of the readers used to resolve data written with them
+ * into generated model classes.
+ *
+ * <p>Every configuration record carries the schema it was written with, but in practice all the
+ * records in an Environment share one or two writer schemas. Parsing a schema, checking its
+ * compatibility with a reader schema and building the resolving grammar used by a {@link
+ * DatumReader} are all far more expensive than decoding the (small) records themselves, so this
+ * class performs each of them once per distinct schema, rather than once per record.
+ *
+ * <p>Writer schemas are identified by their Avro parsing fingerprint ({@link
+ * SchemaNormalization#parsingFingerprint64(Schema)}), so that schema documents differing only in
+ * formatting or documentation share a single parsed {@link Schema}. Schema documents are
+ * additionally indexed by their text, so that a previously seen document is neither parsed nor
+ * fingerprinted again; documents read from stored records are indexed by their stored (usually
+ * base64-encoded) bytes, so that looking them up does not require decoding them.
+ *
+ * <p>The cache is unbounded; it is expected to hold a handful of schemas for the lifetime of the
+ * process. All methods are thread-safe, as are the returned readers.
+ */
+final class AvroSchemaCache {
+
+  /**
+   * A parsed writer schema and its parsing fingerprint, along with a pool of idle JSON decoders for
+   * data written with it: building the grammar a {@link JsonDecoder} parses with costs far more
+   * than decoding a record, so decoders are reconfigured with new input rather than recreated.
+   */
+  static final class FingerprintedSchema {
+    private final Schema schema;
+    private final long fingerprint;
+    private final Queue<JsonDecoder> idleJsonDecoders = new ConcurrentLinkedQueue<>();
+
+    FingerprintedSchema(Schema schema, long fingerprint) {
+      this.schema = schema;
+      this.fingerprint = fingerprint;
+    }
+
+    Schema schema() {
+      return schema;
+    }
+
+    long fingerprint() {
+      return fingerprint;
+    }
+
+    /**
+     * Get a JSON decoder reading data written with this schema from the passed stream. The decoder
+     * should be passed to {@link #releaseJsonDecoder(JsonDecoder)} once the data has been read
+     * successfully, and must not be used after that.
+     */
+    JsonDecoder acquireJsonDecoder(InputStream input) throws IOException {
+      JsonDecoder decoder = idleJsonDecoders.poll();
+      return decoder == null
+          ? DecoderFactory.get().jsonDecoder(schema, input)
+          : decoder.configure(input);
+    }
+
+    /** Return a decoder obtained from {@link #acquireJsonDecoder(InputStream)} for reuse. */
+    void releaseJsonDecoder(JsonDecoder decoder) {
+      idleJsonDecoders.offer(decoder);
+    }
+  }
+
+  /**
+   * The result of resolving a writer schema against a reader schema.
+   *
+   * @param compatibility the reader/writer compatibility check result
+   * @param reader a reader resolving data written with the writer schema into the reader schema, or
+   *     null if the schemas are incompatible
+   */
+  private record Resolution(
+      SchemaCompatibility.SchemaPairCompatibility compatibility, DatumReader<?> reader) {}
+
+  private record ResolutionKey(long writerFingerprint, Schema readerSchema) {}
+
+  private final Map<String, FingerprintedSchema> schemasByText = new ConcurrentHashMap<>();
+  private final Map<ByteBuffer, FingerprintedSchema> schemasByStoredBytes =
+      new ConcurrentHashMap<>();
+  private final Map<Long, FingerprintedSchema> schemasByFingerprint = new ConcurrentHashMap<>();
+  private final Map<ResolutionKey, Resolution> resolutions = new ConcurrentHashMap<>();
+
+  /**
+   * Get the parsed form of a writer schema document.
+   *
+   * @param schemaText JSON Avro schema document
+   * @return the parsed schema, shared with any previously parsed document with the same parsing
+   *     fingerprint
+   * @throws org.apache.avro.SchemaParseException if the document is not a valid schema
+   */
+  FingerprintedSchema getWriterSchema(String schemaText) {
+    FingerprintedSchema cached = schemasByText.get(schemaText);
+    if (cached != null) {
+      return cached;
+    }
+    Schema parsed = new Schema.Parser().parse(schemaText);
+    FingerprintedSchema writerSchema =
+        schemasByFingerprint.computeIfAbsent(
+            SchemaNormalization.parsingFingerprint64(parsed),
+            fingerprint -> new FingerprintedSchema(parsed, fingerprint));
+    schemasByText.putIfAbsent(schemaText, writerSchema);
+    return writerSchema;
+  }
+
+  /**
+   * Get the parsed form of a writer schema document stored in a region of an array, without copying
+   * or decoding it if it has been seen before.
+   *
+   * @param array array holding the stored document, which is not retained
+   * @param offset offset of the stored document in the array
+   * @param length length of the stored document
+   * @param base64Encoded whether the stored document is base64-encoded, rather than UTF-8 text
+   * @return the parsed schema, shared with any previously parsed document with the same parsing
+   *     fingerprint
+   * @throws IllegalArgumentException if the document is not valid base64
+   * @throws org.apache.avro.SchemaParseException if the document is not a valid schema
+   */
+  FingerprintedSchema getWriterSchema(byte[] array, int offset, int length, boolean base64Encoded) {
+    // Byte buffers compare and hash by their remaining content, so a wrapping view can be used to
+    // look up a stored copy.
+    FingerprintedSchema cached = schemasByStoredBytes.get(ByteBuffer.wrap(array, offset, length));
+    if (cached != null) {
+      return cached;
+    }
+    // Base64 text cannot start with '{', so encoded and unencoded documents cannot be confused.
+    byte[] storedBytes = Arrays.copyOfRange(array, offset, offset + length);
+    byte[] schemaBytes = base64Encoded ? Base64.getDecoder().decode(storedBytes) : storedBytes;
+    FingerprintedSchema writerSchema =
+        getWriterSchema(new String(schemaBytes, StandardCharsets.UTF_8));
+    schemasByStoredBytes.putIfAbsent(ByteBuffer.wrap(storedBytes), writerSchema);
+    return writerSchema;
+  }
+
+  /**
+   * Get a writer schema by its parsing fingerprint.
+   *
+   * @return the schema, or null if no schema with this fingerprint has been parsed or added
+   */
+  FingerprintedSchema getWriterSchema(long fingerprint) {
+    return schemasByFingerprint.get(fingerprint);
+  }
+
+  /**
+   * Make a schema known to the cache, so that records identifying it by fingerprint (see {@link
+   * SingleObjectConfiguration}) can be decoded.
+   */
+  void addSchema(Schema schema) {
+    long fingerprint = SchemaNormalization.parsingFingerprint64(schema);
+    schemasByFingerprint.putIfAbsent(fingerprint, new FingerprintedSchema(schema, fingerprint));
+  }
+
+  /**
+   * Get a reader for data written with the passed writer schema, producing objects of the generated
+   * class for the passed reader schema.
+   *
+   * @throws AvroTypeException if the writer schema cannot be resolved against the reader schema
+   */
+  @SuppressWarnings("unchecked")
+  <T> DatumReader<T> getReader(FingerprintedSchema writerSchema, Schema readerSchema) {
+    Resolution resolution =
+        resolutions.computeIfAbsent(
+            new ResolutionKey(writerSchema.fingerprint(), readerSchema),
+            key -> resolve(writerSchema.schema(), readerSchema));
+    if (resolution.reader() == null) {
+      throw new AvroTypeException(
+          String.format(
+              "Configuration schema is incompatible with schema %s: %s",
+              readerSchema.getFullName(), resolution.compatibility().getDescription()));
+    }
+    return (DatumReader<T>) resolution.reader();
+  }
+
+  private static Resolution resolve(Schema writerSchema, Schema readerSchema) {
+    SchemaCompatibility.SchemaPairCompatibility compatibility =
+        SchemaCompatibility.checkReaderWriterCompatibility(readerSchema, writerSchema);
+    if (compatibility.getType() == SchemaCompatibilityType.INCOMPATIBLE) {
+      return new Resolution(compatibility, null);
+    }
+    return new Resolution(compatibility, new SpecificDatumReader<>(writerSchema, readerSchema));
+  }
+}
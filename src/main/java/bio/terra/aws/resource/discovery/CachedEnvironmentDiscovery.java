@@ -1,41 +1,657 @@
 package bio.terra.aws.resource.discovery;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.annotations.VisibleForTesting;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.avro.AvroRuntimeException;
+import software.amazon.awssdk.regions.Region;
 
+/**
+ * An {@link EnvironmentDiscovery} implementation that caches the {@link Environment} discovered by
+ * a backing {@link EnvironmentDiscovery} for a fixed expiration period.
+ *
+ * <p>Cache hits are served from an immutable snapshot published through a single volatile field,
+ * without locking or allocation. Misses are coalesced: exactly one caller performs discovery while
+ * any other callers that miss concurrently wait for (and share) its result.
+ *
+ * <p>By default, callers observing an expired entry wait for discovery to complete. When a maximum
+ * staleness is configured (see {@link Builder#maxStaleness(Duration)}), an expired entry continues
+ * to be served while a single background task refreshes it; callers only block on discovery once
+ * the entry is older than its expiration time plus the maximum staleness.
+ *
+ * <p>When a snapshot path is configured (see {@link Builder#snapshotPath(Path)}), each newly
+ * discovered {@link Environment} is also written to that file in a compact binary form, on the
+ * refresh executor so that callers never wait for the write. On construction, a snapshot left by a
+ * previous instance is loaded and served immediately as an expired entry, while a background
+ * refresh validates it against the backing discovery; the first answer after startup therefore
+ * costs a single local file read rather than a full discovery.
+ *
+ * <p>When a failure expiration period is configured (see {@link
+ * Builder#failureExpirationPeriod(Duration)}), discovery failures caused by missing or invalid
+ * configuration (a missing bucket, base path or configuration object, or a configuration that
+ * cannot be parsed) are cached for that period, and rethrown to callers without consulting the
+ * backing discovery. Other failures, such as network errors, are never cached.
+ *
+ * <p>Many instances created with the same expiration period at the same time (for example, by each
+ * replica of a service at deploy time) would otherwise expire, and hit storage, in lockstep. Two
+ * options spread their refreshes out over time. An early refresh factor (see {@link
+ * Builder#earlyRefreshFactor(double)}) enables probabilistic early expiration ("XFetch"): as an
+ * entry nears its expiration, each cache hit has a rising chance of starting a background refresh,
+ * weighted by how long the last discovery took, so that entries that are expensive to rediscover
+ * are refreshed earlier. An expiration jitter (see {@link Builder#expirationJitter(double)})
+ * randomizes the expiration period of each instance around the configured value.
+ *
+ * <p>Selective discoveries (see {@link #discoverLandingZone(Region)} and {@link
+ * #discoverEnvironmentOnly()}) are served from the cached {@link Environment} whenever a full
+ * discovery would be, including while it is served stale and refreshed in the background.
+ * Otherwise, they are cached separately, per region and for the Environment alone, for the same
+ * expiration period, so that callers that only ever need part of the Environment never cause a full
+ * discovery. Concurrent misses for the same part are coalesced; failures are not cached.
+ */
 public class CachedEnvironmentDiscovery implements EnvironmentDiscovery {
 
   private final EnvironmentDiscovery backingEnvironmentDiscovery;
-  private final Duration expirationPeriod;
-  private Environment cachedEnvironment;
-  private Instant expirationTime;
+  private final long expirationPeriodNanos;
+  private final long maxStalenessNanos;
+  private final long failureExpirationPeriodNanos;
+  private final double earlyRefreshFactor;
+  private final Executor refreshExecutor;
+  private final Path snapshotPath;
+  private final AtomicReference<CompletableFuture<Snapshot>> inFlightDiscovery;
+  private volatile Snapshot snapshot;
+  private volatile CachedFailure cachedFailure;
+  private volatile Environment persistedEnvironment;
+  private final AtomicReference<Environment> pendingPersistence;
+  private final ConcurrentHashMap<Object, CompletableFuture<SelectiveEntry<?>>> selectiveEntries;
 
   public CachedEnvironmentDiscovery(
       EnvironmentDiscovery backingEnvironmentDiscovery, Duration expirationPeriod) {
-    this.backingEnvironmentDiscovery = backingEnvironmentDiscovery;
-    this.expirationPeriod = expirationPeriod;
+    this(
+        builder()
+            .backingEnvironmentDiscovery(backingEnvironmentDiscovery)
+            .expirationPeriod(expirationPeriod));
+  }
+
+  private CachedEnvironmentDiscovery(Builder builder) {
+    if (builder.backingEnvironmentDiscovery == null) {
+      throw new IllegalArgumentException("Backing environment discovery may not be null.");
+    }
+    if (builder.expirationPeriod == null || builder.expirationPeriod.isNegative()) {
+      throw new IllegalArgumentException("Expiration period must be non-negative.");
+    }
+    if (builder.maxStaleness.isNegative()) {
+      throw new IllegalArgumentException("Maximum staleness must be non-negative.");
+    }
+    if (builder.failureExpirationPeriod.isNegative()) {
+      throw new IllegalArgumentException("Failure expiration period must be non-negative.");
+    }
+    if (!(builder.earlyRefreshFactor >= 0) || Double.isInfinite(builder.earlyRefreshFactor)) {
+      throw new IllegalArgumentException("Early refresh factor must be non-negative and finite.");
+    }
+    if (!(builder.expirationJitter >= 0 && builder.expirationJitter < 1)) {
+      throw new IllegalArgumentException("Expiration jitter must be in the range [0, 1).");
+    }
+    this.backingEnvironmentDiscovery = builder.backingEnvironmentDiscovery;
+    this.expirationPeriodNanos =
+        jitter(toNanosSaturated(builder.expirationPeriod), builder.expirationJitter);
+    this.earlyRefreshFactor = builder.earlyRefreshFactor;
+    this.maxStalenessNanos = toNanosSaturated(builder.maxStaleness);
+    this.failureExpirationPeriodNanos = toNanosSaturated(builder.failureExpirationPeriod);
+    this.refreshExecutor = builder.refreshExecutor;
+    this.snapshotPath = builder.snapshotPath;
+    this.inFlightDiscovery = new AtomicReference<>();
+    this.pendingPersistence = new AtomicReference<>();
+    this.selectiveEntries = new ConcurrentHashMap<>();
+
+    if (snapshotPath != null) {
+      Environment loaded = loadPersistedEnvironment(snapshotPath);
+      if (loaded != null) {
+        // Serve the loaded Environment as already expired, so that it is validated by a refresh,
+        // for as long as a freshly discovered one could have been served stale.
+        long now = System.nanoTime();
+        snapshot =
+            new Snapshot(
+                new CachedEnvironment(loaded, Instant.now()),
+                loaded.withoutLandingZones(),
+                now,
+                now + expirationPeriodNanos + maxStalenessNanos,
+                now,
+                0);
+        persistedEnvironment = loaded;
+        refreshInBackground();
+      }
+    }
+  }
+
+  /**
+   * Convert a {@link Duration} to nanoseconds, capped so that it can be safely added to a {@link
+   * System#nanoTime()} reading and compared by subtraction.
+   */
+  private static long toNanosSaturated(Duration duration) {
+    long maxNanos = Long.MAX_VALUE / 4;
+    return duration.compareTo(Duration.ofNanos(maxNanos)) > 0 ? maxNanos : duration.toNanos();
+  }
+
+  /**
+   * Scale a period by a random factor uniformly distributed in [1 - jitter, 1 + jitter], so that
+   * the mean period is unchanged.
+   */
+  private static long jitter(long periodNanos, double jitter) {
+    if (jitter == 0) {
+      return periodNanos;
+    }
+    double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+    return Math.min((long) (periodNanos * factor), Long.MAX_VALUE / 4);
+  }
+
+  /** Builder for class {@link CachedEnvironmentDiscovery} */
+  public static class Builder {
+    private EnvironmentDiscovery backingEnvironmentDiscovery;
+    private Duration expirationPeriod;
+    private Duration maxStaleness;
+    private Duration failureExpirationPeriod;
+    private double earlyRefreshFactor;
+    private double expirationJitter;
+    private Executor refreshExecutor;
+    private Path snapshotPath;
+
+    private Builder() {
+      maxStaleness = Duration.ZERO;
+      failureExpirationPeriod = Duration.ZERO;
+      refreshExecutor = Builder::runOnDaemonThread;
+    }
+
+    private static void runOnDaemonThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "environment-discovery-refresh");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    /** Set the {@link EnvironmentDiscovery} whose results are cached */
+    public Builder backingEnvironmentDiscovery(EnvironmentDiscovery backingEnvironmentDiscovery) {
+      this.backingEnvironmentDiscovery = backingEnvironmentDiscovery;
+      return this;
+    }
+
+    /** Set the period after which a discovered {@link Environment} is considered expired */
+    public Builder expirationPeriod(Duration expirationPeriod) {
+      this.expirationPeriod = expirationPeriod;
+      return this;
+    }
+
+    /**
+     * Set how long past its expiration time an {@link Environment} may continue to be served while
+     * it is refreshed in the background. The default of {@link Duration#ZERO} disables background
+     * refresh, so that callers observing an expired entry always block on discovery.
+     */
+    public Builder maxStaleness(Duration maxStaleness) {
+      this.maxStaleness = maxStaleness;
+      return this;
+    }
+
+    /**
+     * Set the period for which a discovery failure caused by missing or invalid configuration is
+     * cached and rethrown without retrying discovery. This is typically much shorter than the
+     * expiration period, so that a fixed configuration is picked up quickly. The default of {@link
+     * Duration#ZERO} disables failure caching.
+     */
+    public Builder failureExpirationPeriod(Duration failureExpirationPeriod) {
+      this.failureExpirationPeriod = failureExpirationPeriod;
+      return this;
+    }
+
+    /**
+     * Set the weight given to the cost of the last discovery when deciding whether a cache hit
+     * should start an early background refresh. On each hit, a refresh is started if the time
+     * remaining until expiration is less than the last discovery's duration multiplied by this
+     * factor and by an exponentially distributed random value (with mean 1). A factor of 1 is a
+     * good starting point; larger values refresh earlier. The default of 0 disables early refresh.
+     */
+    public Builder earlyRefreshFactor(double earlyRefreshFactor) {
+      this.earlyRefreshFactor = earlyRefreshFactor;
+      return this;
+    }
+
+    /**
+     * Set the fraction by which the expiration period of this instance is randomly varied: with a
+     * jitter of 0.1, the expiration period is chosen once, uniformly, between 90% and 110% of the
+     * configured value. The default of 0 disables jitter.
+     */
+    public Builder expirationJitter(double expirationJitter) {
+      this.expirationJitter = expirationJitter;
+      return this;
+    }
+
+    /**
+     * Set the {@link Executor} used to run background refreshes. By default, each refresh runs on a
+     * new daemon thread.
+     */
+    public Builder refreshExecutor(Executor refreshExecutor) {
+      this.refreshExecutor = refreshExecutor;
+      return this;
+    }
+
+    /**
+     * Set a file to persist the last discovered {@link Environment} to, and to load it from when
+     * the {@link CachedEnvironmentDiscovery} is constructed. Persistence is best effort: a snapshot
+     * that is missing or cannot be read is ignored, and a failure to write one does not fail
+     * discovery. By default, no snapshot is kept.
+     */
+    public Builder snapshotPath(Path snapshotPath) {
+      this.snapshotPath = snapshotPath;
+      return this;
+    }
+
+    /** Build the {@link CachedEnvironmentDiscovery} instance */
+    public CachedEnvironmentDiscovery build() {
+      return new CachedEnvironmentDiscovery(this);
+    }
+  }
+
+  /** Get a {@link Builder} for {@link CachedEnvironmentDiscovery} */
+  public static Builder builder() {
+    return new Builder();
   }
 
   public record CachedEnvironment(Environment environment, Instant expirationTime) {}
 
-  private boolean isExpired() {
-    return Instant.now().isAfter(expirationTime);
+  /**
+   * Immutable cache entry. Deadlines are {@link System#nanoTime()} readings, so that expiration is
+   * unaffected by wall clock adjustments; the wall clock expiration time is computed once, when the
+   * entry is created, for reporting through {@link CachedEnvironment}.
+   *
+   * <p>Early refresh is only considered from {@code earlyRefreshNanos}, the earliest time at which
+   * it could be triggered given the discovery cost, so that hits before then skip the random draw.
+   * The Environment without its Landing Zones is built once, to serve {@link
+   * #discoverEnvironmentOnly()}.
+   */
+  private record Snapshot(
+      CachedEnvironment cachedEnvironment,
+      Environment environmentOnly,
+      long expirationNanos,
+      long staleDeadlineNanos,
+      long earlyRefreshNanos,
+      long discoveryCostNanos) {}
+
+  /**
+   * The largest value returned by {@link #sampleExponential()}: -ln(2^-53), as {@link
+   * ThreadLocalRandom#nextDouble()} has 53 bits of precision.
+   */
+  private static final double MAX_EXPONENTIAL_SAMPLE = 53 * Math.log(2);
+
+  /** Sample an exponentially distributed random value with mean 1. */
+  private static double sampleExponential() {
+    return -Math.log(1 - ThreadLocalRandom.current().nextDouble());
   }
 
+  /**
+   * A part of the Environment discovered by a selective discovery, cached until the {@link
+   * System#nanoTime()} expiration.
+   */
+  private record SelectiveEntry<T>(T value, long expirationNanos) {}
+
+  /** The key of the selective entry for {@link #discoverEnvironmentOnly()}. */
+  private static final Object ENVIRONMENT_ONLY_KEY = new Object();
+
+  /** Performs a selective discovery on the backing discovery. */
+  @FunctionalInterface
+  private interface SelectiveDiscovery<T> {
+    T discover() throws IOException;
+  }
+
+  /** A cached discovery failure, rethrown until the {@link System#nanoTime()} expiration. */
+  private record CachedFailure(Throwable failure, long expirationNanos) {}
+
+  /**
+   * Whether a discovery failure reflects missing or invalid configuration, and so will not resolve
+   * itself on retry until the configuration is changed.
+   */
   @VisibleForTesting
-  public synchronized CachedEnvironment getOrDiscoverEnvironment() throws IOException {
-    if (cachedEnvironment == null || isExpired()) {
-      cachedEnvironment = backingEnvironmentDiscovery.discoverEnvironment();
-      expirationTime = Instant.now().plus(expirationPeriod);
+  static boolean isConfigurationFailure(Throwable failure) {
+    // NoSuchElementException includes InputMismatchException; IllegalArgumentException covers
+    // malformed ARNs, UUIDs and base64 encodings; the remainder are configuration parse failures.
+    return failure instanceof NoSuchElementException
+        || failure instanceof IllegalArgumentException
+        || failure instanceof AvroRuntimeException
+        || failure instanceof JsonProcessingException;
+  }
+
+  private Snapshot createSnapshot(Environment environment, long discoveryCostNanos) {
+    long now = System.nanoTime();
+    long expirationNanos = now + expirationPeriodNanos;
+    Instant expirationTime = Instant.now().plusNanos(expirationPeriodNanos);
+    double earlyRefreshWindowNanos =
+        discoveryCostNanos * earlyRefreshFactor * MAX_EXPONENTIAL_SAMPLE;
+    return new Snapshot(
+        new CachedEnvironment(environment, expirationTime),
+        environment.withoutLandingZones(),
+        expirationNanos,
+        expirationNanos + maxStalenessNanos,
+        expirationNanos - (long) Math.min(earlyRefreshWindowNanos, expirationPeriodNanos),
+        discoveryCostNanos);
+  }
+
+  /**
+   * Decide whether a cache hit on an entry within its early refresh window should start a
+   * background refresh, with a probability that rises as the entry approaches expiration.
+   */
+  private boolean shouldRefreshEarly(Snapshot current, long now) {
+    double remainingNanos = current.expirationNanos() - now;
+    return remainingNanos
+        <= current.discoveryCostNanos() * earlyRefreshFactor * sampleExponential();
+  }
+
+  /**
+   * Run the backing discovery and publish its result, completing the passed future (which must be
+   * the current in-flight discovery) with the outcome.
+   */
+  private void runDiscovery(CompletableFuture<Snapshot> future) {
+    try {
+      long startNanos = System.nanoTime();
+      Environment environment = backingEnvironmentDiscovery.discoverEnvironment();
+      Snapshot discovered = createSnapshot(environment, System.nanoTime() - startNanos);
+      // Publish the snapshot before clearing the in-flight discovery, so that callers arriving
+      // after it is cleared observe the new snapshot.
+      snapshot = discovered;
+      cachedFailure = null;
+      future.complete(discovered);
+      persistInBackground(discovered.cachedEnvironment().environment());
+    } catch (Throwable throwable) {
+      if (failureExpirationPeriodNanos > 0 && isConfigurationFailure(throwable)) {
+        cachedFailure =
+            new CachedFailure(throwable, System.nanoTime() + failureExpirationPeriodNanos);
+      }
+      future.completeExceptionally(throwable);
+    } finally {
+      inFlightDiscovery.compareAndSet(future, null);
     }
+  }
 
-    return new CachedEnvironment(cachedEnvironment, expirationTime);
+  /**
+   * Read the snapshot at the passed path, returning null if there is none or it cannot be read (for
+   * example, because it was written by an incompatible version of this library).
+   */
+  private static Environment loadPersistedEnvironment(Path path) {
+    try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(path))) {
+      return EnvironmentSnapshotCodec.read(inputStream);
+    } catch (IOException exception) {
+      // Includes NoSuchFileException, when no snapshot has been written yet.
+      return null;
+    }
+  }
+
+  /**
+   * Schedule the passed {@link Environment} to be written to the snapshot path on the refresh
+   * executor, unless it is unchanged from the last one written. At most one write task is pending
+   * or running at a time; Environments discovered while one is pending replace the Environment it
+   * writes, so that only the latest is written.
+   */
+  private void persistInBackground(Environment environment) {
+    if (snapshotPath == null || environment.equals(persistedEnvironment)) {
+      return;
+    }
+    if (pendingPersistence.getAndSet(environment) != null) {
+      // The pending write task picks up this Environment.
+      return;
+    }
+    try {
+      refreshExecutor.execute(this::persistPending);
+    } catch (RuntimeException exception) {
+      // Persistence is best effort; the next discovery tries again.
+      pendingPersistence.compareAndSet(environment, null);
+    }
+  }
+
+  /** Write pending Environments until none is left; run by at most one task at a time. */
+  private void persistPending() {
+    Environment environment;
+    while ((environment = pendingPersistence.get()) != null) {
+      persistEnvironment(environment);
+      if (pendingPersistence.compareAndSet(environment, null)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Write the passed {@link Environment} to the snapshot path, unless it is unchanged from the last
+   * one written. The snapshot is written to a temporary file that then replaces the previous one,
+   * so that a concurrent reader never observes a partially written snapshot. Called only by the
+   * pending write task, so writes are never concurrent.
+   */
+  private void persistEnvironment(Environment environment) {
+    if (environment.equals(persistedEnvironment)) {
+      return;
+    }
+    Path directory = snapshotPath.toAbsolutePath().getParent();
+    Path temporaryPath = null;
+    try {
+      temporaryPath =
+          Files.createTempFile(directory, snapshotPath.getFileName().toString(), ".tmp");
+      try (OutputStream outputStream =
+          new BufferedOutputStream(Files.newOutputStream(temporaryPath))) {
+        EnvironmentSnapshotCodec.write(environment, outputStream);
+      }
+      try {
+        Files.move(
+            temporaryPath,
+            snapshotPath,
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException exception) {
+        Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+      }
+      persistedEnvironment = environment;
+    } catch (IOException | RuntimeException exception) {
+      // Persistence is best effort; the in-memory entry has already been published.
+      if (temporaryPath != null) {
+        try {
+          Files.deleteIfExists(temporaryPath);
+        } catch (IOException deleteException) {
+          exception.addSuppressed(deleteException);
+        }
+      }
+    }
+  }
+
+  /**
+   * Start a discovery on the refresh executor unless one is already in flight. On failure, the
+   * stale entry is left in place; callers will block on (and observe the failure of) a synchronous
+   * discovery once the entry exceeds its maximum staleness.
+   */
+  private void refreshInBackground() {
+    CompletableFuture<Snapshot> future = new CompletableFuture<>();
+    if (!inFlightDiscovery.compareAndSet(null, future)) {
+      return;
+    }
+    try {
+      refreshExecutor.execute(() -> runDiscovery(future));
+    } catch (RuntimeException exception) {
+      future.completeExceptionally(exception);
+      inFlightDiscovery.compareAndSet(future, null);
+    }
+  }
+
+  /**
+   * Perform a discovery on the calling thread, or wait for the result of one that is already in
+   * flight.
+   */
+  private Snapshot discoverOrAwait() throws IOException {
+    CompletableFuture<Snapshot> future = new CompletableFuture<>();
+    CompletableFuture<Snapshot> existing = inFlightDiscovery.compareAndExchange(null, future);
+    if (existing != null) {
+      return await(existing);
+    }
+
+    // Another caller may have completed a discovery between our snapshot read and becoming the
+    // discovering caller; if so, there is no need to discover again.
+    Snapshot current = snapshot;
+    if (current != null && System.nanoTime() - current.expirationNanos() < 0) {
+      future.complete(current);
+      inFlightDiscovery.compareAndSet(future, null);
+      return current;
+    }
+    CachedFailure failure = cachedFailure;
+    if (failure != null && System.nanoTime() - failure.expirationNanos() < 0) {
+      future.completeExceptionally(failure.failure());
+      inFlightDiscovery.compareAndSet(future, null);
+      throw rethrow(failure.failure());
+    }
+
+    runDiscovery(future);
+    return await(future);
+  }
+
+  private static <T> T await(CompletableFuture<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      InterruptedIOException interruptedException =
+          new InterruptedIOException("Interrupted while awaiting environment discovery.");
+      interruptedException.initCause(exception);
+      throw interruptedException;
+    } catch (ExecutionException exception) {
+      throw rethrow(exception.getCause());
+    }
+  }
+
+  /**
+   * Rethrow a discovery failure as-is if it is an unchecked exception or IOException, otherwise
+   * wrapped in an IOException. Declared to return an exception so that callers can {@code throw}
+   * the result and satisfy flow analysis; it never actually returns.
+   */
+  private static IOException rethrow(Throwable failure) throws IOException {
+    if (failure instanceof IOException ioException) {
+      throw ioException;
+    }
+    if (failure instanceof RuntimeException runtimeException) {
+      throw runtimeException;
+    }
+    if (failure instanceof Error error) {
+      throw error;
+    }
+    throw new IOException(failure);
+  }
+
+  /**
+   * Get the current snapshot if it can be served, either because it has not expired or because it
+   * is within its maximum staleness, starting a background refresh if it is due; otherwise null.
+   */
+  private Snapshot getServableSnapshot() {
+    Snapshot current = snapshot;
+    if (current != null) {
+      long now = System.nanoTime();
+      if (now - current.expirationNanos() < 0) {
+        if (now - current.earlyRefreshNanos() >= 0 && shouldRefreshEarly(current, now)) {
+          refreshInBackground();
+        }
+        return current;
+      }
+      if (now - current.staleDeadlineNanos() < 0) {
+        refreshInBackground();
+        return current;
+      }
+    }
+    return null;
+  }
+
+  @VisibleForTesting
+  public CachedEnvironment getOrDiscoverEnvironment() throws IOException {
+    Snapshot current = getServableSnapshot();
+    if (current != null) {
+      return current.cachedEnvironment();
+    }
+
+    CachedFailure failure = cachedFailure;
+    if (failure != null && System.nanoTime() - failure.expirationNanos() < 0) {
+      throw rethrow(failure.failure());
+    }
+
+    return discoverOrAwait().cachedEnvironment();
   }
 
   @Override
   public Environment discoverEnvironment() throws IOException {
     return getOrDiscoverEnvironment().environment();
   }
+
+  @Override
+  public Optional<LandingZone> discoverLandingZone(Region region) throws IOException {
+    Snapshot current = getServableSnapshot();
+    if (current != null) {
+      return current.cachedEnvironment().environment().getLandingZone(region);
+    }
+    return getOrDiscoverSelectively(
+        region, () -> backingEnvironmentDiscovery.discoverLandingZone(region));
+  }
+
+  @Override
+  public Environment discoverEnvironmentOnly() throws IOException {
+    Snapshot current = getServableSnapshot();
+    if (current != null) {
+      return current.environmentOnly();
+    }
+    return getOrDiscoverSelectively(
+        ENVIRONMENT_ONLY_KEY, backingEnvironmentDiscovery::discoverEnvironmentOnly);
+  }
+
+  /**
+   * Get the unexpired selective entry for a key, or perform the selective discovery on the calling
+   * thread, or wait for the result of one for the same key that is already in flight.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T getOrDiscoverSelectively(Object key, SelectiveDiscovery<T> discovery)
+      throws IOException {
+    while (true) {
+      CompletableFuture<SelectiveEntry<?>> existing = selectiveEntries.get(key);
+      if (existing != null && !existing.isDone()) {
+        return (T) await(existing).value();
+      }
+      if (existing != null && !existing.isCompletedExceptionally()) {
+        SelectiveEntry<?> entry = existing.join();
+        if (System.nanoTime() - entry.expirationNanos() < 0) {
+          return (T) entry.value();
+        }
+      }
+
+      CompletableFuture<SelectiveEntry<?>> future = new CompletableFuture<>();
+      boolean claimed =
+          existing == null
+              ? selectiveEntries.putIfAbsent(key, future) == null
+              : selectiveEntries.replace(key, existing, future);
+      if (!claimed) {
+        // Another caller started a discovery first; use its result.
+        continue;
+      }
+      try {
+        T value = discovery.discover();
+        future.complete(new SelectiveEntry<>(value, System.nanoTime() + expirationPeriodNanos));
+        return value;
+      } catch (Throwable throwable) {
+        selectiveEntries.remove(key, future);
+        future.completeExceptionally(throwable);
+        throw rethrow(throwable);
+      }
+    }
+  }
 }
@@ -0,0 +1,235 @@
+package bio.terra.aws.resource.discovery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * Discovers a Single Terra Environment shipped as classpath resources (for example, in a JAR or a
+ * container image), under a base resource path laid out as described in {@link
+ * FilesystemEnvironmentDiscovery}:
+ *
+ * <pre>{@code
+ * basePath/vM/environment/config.json
+ * basePath/vM/landingzones/us-east-1/config.json
+ * }</pre>
+ *
+ * <p>Since classpath resources cannot be listed, a Landing Zone configuration is looked for in each
+ * known AWS region. A {@code vM/bundle} resource (see {@link ConfigurationBundle}) is read in place
+ * of the individual configuration resources. For the fastest startup, the Environment may instead
+ * be decoded at build time into a {@code vM/snapshot} resource (see {@link #main(String[])}), which
+ * is read in preference to both, without parsing any Avro configuration.
+ *
+ * <p>Resources do not change, so the Environment is discovered once, on first use, and every
+ * discovery after that returns the same {@link Environment} instance without reading anything. This
+ * makes the class suitable as the last tier of a layered discovery, serving a known good
+ * Environment when storage is unavailable (see {@link
+ * EnvironmentDiscovery#withFallback(EnvironmentDiscovery)}).
+ */
+public class ClasspathEnvironmentDiscovery extends AvroEnvironmentDiscovery {
+  /** The name of the pre-decoded Environment resource within the {@code vM} resource path. */
+  static final String SNAPSHOT_NAME = "snapshot";
+
+  private static final String CONFIGURATION_FILE_NAME = "config.json";
+  private static final String BINARY_CONFIGURATION_FILE_NAME = "config.avro";
+
+  private final String versionPath;
+  private final ClassLoader classLoader;
+
+  /** The Environment discovered on first use, along with the same Environment alone. */
+  private volatile Discovered discovered;
+
+  private record Discovered(Environment environment, Environment environmentOnly) {}
+
+  /**
+   * Construct a {@link ClasspathEnvironmentDiscovery} reading resources using the class loader that
+   * loaded this library
+   *
+   * @param basePath the base resource path (such as {@code environments/dev}) containing the
+   *     configuration corresponding to a single Terra AWS Environment, laid out as described in the
+   *     {@link ClasspathEnvironmentDiscovery} class documentation
+   */
+  public ClasspathEnvironmentDiscovery(String basePath) {
+    this(basePath, ClasspathEnvironmentDiscovery.class.getClassLoader());
+  }
+
+  /**
+   * Construct a {@link ClasspathEnvironmentDiscovery} reading resources using the passed class
+   * loader
+   *
+   * @param basePath the base resource path (such as {@code environments/dev}) containing the
+   *     configuration corresponding to a single Terra AWS Environment, laid out as described in the
+   *     {@link ClasspathEnvironmentDiscovery} class documentation
+   * @param classLoader class loader used to read the resources
+   */
+  public ClasspathEnvironmentDiscovery(String basePath, ClassLoader classLoader) {
+    if (basePath == null || classLoader == null) {
+      throw new IllegalArgumentException("Base path and class loader may not be null.");
+    }
+    String trimmedPath = basePath.replaceAll("^/+|/+$", "");
+    this.versionPath =
+        (trimmedPath.isEmpty() ? "" : trimmedPath + "/")
+            + String.format("v%d/", SCHEMA_MAJOR_VERSION);
+    this.classLoader = classLoader;
+  }
+
+  /**
+   * Pre-decode the Environment stored in a file system directory into a snapshot resource, for
+   * example as a build step.
+   *
+   * <p>Usage: {@code ClasspathEnvironmentDiscovery <directory> <resource directory>}, where {@code
+   * directory} is laid out as described in {@link FilesystemEnvironmentDiscovery}; the snapshot is
+   * written to {@code vM/snapshot} under the resource directory, to be read using the resource
+   * directory's path on the classpath as base path.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      throw new IllegalArgumentException(
+          "Usage: ClasspathEnvironmentDiscovery <directory> <resource directory>");
+    }
+    Environment environment =
+        new FilesystemEnvironmentDiscovery(Path.of(args[0])).discoverEnvironment();
+    Path snapshotPath = Path.of(args[1], String.format("v%d", SCHEMA_MAJOR_VERSION), SNAPSHOT_NAME);
+    Files.createDirectories(snapshotPath.getParent());
+    try (OutputStream outputStream =
+        new BufferedOutputStream(Files.newOutputStream(snapshotPath))) {
+      writeSnapshot(environment, outputStream);
+    }
+  }
+
+  /**
+   * Write an Environment in the form of a {@code vM/snapshot} resource.
+   *
+   * @param environment the Environment
+   * @param outputStream stream to write the snapshot to, which is flushed but not closed
+   * @throws IOException IOException
+   */
+  public static void writeSnapshot(Environment environment, OutputStream outputStream)
+      throws IOException {
+    EnvironmentSnapshotCodec.write(environment, outputStream);
+  }
+
+  /**
+   * Discover the Environment from the snapshot resource if there is one, and otherwise from the
+   * bundle or individual configuration resources; only the first discovery reads resources.
+   */
+  @Override
+  public Environment discoverEnvironment() throws IOException {
+    return discover().environment();
+  }
+
+  @Override
+  public Environment discoverEnvironmentOnly() throws IOException {
+    return discover().environmentOnly();
+  }
+
+  @Override
+  public Optional<LandingZone> discoverLandingZone(Region region) throws IOException {
+    return discover().environment().getLandingZone(region);
+  }
+
+  private Discovered discover() throws IOException {
+    Discovered current = discovered;
+    return current != null ? current : discoverOnce();
+  }
+
+  private synchronized Discovered discoverOnce() throws IOException {
+    if (discovered == null) {
+      Environment environment = readEnvironment();
+      discovered = new Discovered(environment, environment.withoutLandingZones());
+    }
+    return discovered;
+  }
+
+  private Environment readEnvironment() throws IOException {
+    IOException snapshotFailure = null;
+    try (InputStream snapshot = classLoader.getResourceAsStream(versionPath + SNAPSHOT_NAME)) {
+      if (snapshot != null) {
+        return EnvironmentSnapshotCodec.read(snapshot);
+      }
+    } catch (IOException exception) {
+      // For example, a snapshot written by an incompatible version of this library.
+      snapshotFailure = exception;
+    }
+
+    try {
+      byte[] bundleContent = readResource(versionPath + ConfigurationBundle.BUNDLE_NAME, false);
+      if (bundleContent != null) {
+        ConfigurationBundle bundle =
+            ConfigurationBundle.read(bundleContent, getObjectMapper().getFactory(), null);
+        return discoverEnvironment(
+            bundle::getEnvironmentConfiguration, bundle::getLandingZoneConfigurations);
+      }
+      return super.discoverEnvironment();
+    } catch (IOException | RuntimeException exception) {
+      if (snapshotFailure != null) {
+        exception.addSuppressed(snapshotFailure);
+      }
+      throw exception;
+    }
+  }
+
+  /**
+   * Private helper to read a resource, decompressing it if needed.
+   *
+   * @return the content of the resource, or null if it does not exist
+   */
+  private byte[] readResource(String name, boolean gzipDeclared) throws IOException {
+    InputStream input = classLoader.getResourceAsStream(name);
+    return input == null ? null : ConfigurationCompression.readAllBytes(input, gzipDeclared);
+  }
+
+  /**
+   * Read the configuration stored in a resource directory, preferring its binary encoding (see
+   * {@link AvroEnvironmentDiscovery#selectConfiguration}).
+   *
+   * @return the configuration, or null if the directory contains neither configuration resource
+   */
+  private StoredConfiguration readDirectoryConfiguration(String directory, ObjectMapper mapper)
+      throws IOException {
+    byte[] binaryContent = readConfigurationResource(directory + BINARY_CONFIGURATION_FILE_NAME);
+    byte[] jsonContent = readConfigurationResource(directory + CONFIGURATION_FILE_NAME);
+    return selectConfiguration(
+        binaryContent != null ? () -> new SingleObjectConfiguration(binaryContent) : null,
+        jsonContent != null ? () -> new AvroConfiguration(jsonContent, mapper.getFactory()) : null);
+  }
+
+  /** Private helper to read a configuration resource, uncompressed or compressed, or null. */
+  private byte[] readConfigurationResource(String name) throws IOException {
+    byte[] content = readResource(name, false);
+    return content != null
+        ? content
+        : readResource(name + ConfigurationCompression.GZIP_SUFFIX, true);
+  }
+
+  @Override
+  protected StoredConfiguration getEnvironmentConfiguration(ObjectMapper mapper)
+      throws IOException {
+    String directory = versionPath + "environment/";
+    StoredConfiguration configuration = readDirectoryConfiguration(directory, mapper);
+    if (configuration == null) {
+      throw new NoSuchElementException(
+          String.format(
+              "Environment configuration resource '%s' does not exist",
+              directory + CONFIGURATION_FILE_NAME));
+    }
+    return configuration;
+  }
+
+  @Override
+  protected Map<Region, StoredConfiguration> getLandingZoneConfigurations(ObjectMapper mapper)
+      throws IOException {
+    return forEachRegion(
+        Region.regions(),
+        region ->
+            readDirectoryConfiguration(versionPath + "landingzones/" + region.id() + "/", mapper));
+  }
+}
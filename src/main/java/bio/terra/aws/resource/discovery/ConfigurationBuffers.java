@@ -0,0 +1,139 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Off-heap reads of configuration files, so that files that turn out to be unchanged are never
+ * copied onto the heap.
+ *
+ * <p>Configuration files are read into direct buffers taken from a small shared pool, so that
+ * reading a file allocates nothing on the heap; only the content of files that changed is then
+ * copied into a heap array, which the parsed configuration retains (compressed files are
+ * decompressed from the buffer, so only their decompressed content is copied). Bundle files are
+ * parsed in place (see {@link ConfigurationBundle#read(ByteBuffer,
+ * com.fasterxml.jackson.core.JsonFactory, ConfigurationBundle)}); those larger than {@link
+ * #MINIMUM_MAPPED_SIZE} are memory-mapped rather than read, as mapping a file costs more than
+ * reading a small one.
+ */
+final class ConfigurationBuffers {
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  /** Buffers larger than this, needed for unusually large files, are not kept for reuse. */
+  private static final int MAXIMUM_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+  /** Files larger than this are memory-mapped rather than read into a pooled buffer. */
+  static final int MINIMUM_MAPPED_SIZE = MAXIMUM_POOLED_BUFFER_SIZE;
+
+  private static final int MAXIMUM_IDLE_BUFFERS = DiscoveryExecutors.DEFAULT_POOL_SIZE;
+
+  private static final Queue<ByteBuffer> idleBuffers = new ConcurrentLinkedQueue<>();
+  private static final AtomicInteger idleBufferCount = new AtomicInteger();
+
+  private ConfigurationBuffers() {}
+
+  /**
+   * Read the whole content of a file into a direct buffer, which is returned ready to be read. The
+   * buffer should be passed to {@link #release(ByteBuffer)} once its content has been used, and
+   * must not be used after that.
+   *
+   * @throws IOException if the file cannot be read, or is larger than 2 GB
+   */
+  static ByteBuffer acquire(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE - 1) {
+        throw new IOException(String.format("Configuration file '%s' is too large.", path));
+      }
+      // Leave room to notice that the file grew since its size was read.
+      ByteBuffer buffer = acquireBuffer((int) size + 1);
+      while (channel.read(buffer) >= 0) {
+        if (!buffer.hasRemaining()) {
+          ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+          larger.put(buffer.flip());
+          release(buffer);
+          buffer = larger;
+        }
+      }
+      return buffer.flip();
+    }
+  }
+
+  /** Return a buffer obtained from {@link #acquire(Path)} for reuse. */
+  static void release(ByteBuffer buffer) {
+    if (buffer.capacity() > MAXIMUM_POOLED_BUFFER_SIZE) {
+      return;
+    }
+    if (idleBufferCount.incrementAndGet() > MAXIMUM_IDLE_BUFFERS) {
+      idleBufferCount.decrementAndGet();
+      return;
+    }
+    idleBuffers.offer(buffer.clear());
+  }
+
+  /** Private helper to take an idle buffer of at least the passed capacity, or allocate one. */
+  private static ByteBuffer acquireBuffer(int capacity) {
+    ByteBuffer buffer = idleBuffers.poll();
+    if (buffer != null) {
+      idleBufferCount.decrementAndGet();
+      if (buffer.capacity() >= capacity) {
+        return buffer;
+      }
+    }
+    return ByteBuffer.allocateDirect(Math.max(capacity, BUFFER_SIZE));
+  }
+
+  /** Copy the remaining content of a buffer into a new array, without consuming it. */
+  static byte[] toArray(ByteBuffer buffer) {
+    byte[] array = new byte[buffer.remaining()];
+    buffer.get(buffer.position(), array);
+    return array;
+  }
+
+  /**
+   * Memory-map the whole content of a file, read-only. The mapping remains valid after the file is
+   * closed, until the buffer is garbage collected; reading it after the file is truncated fails
+   * with an {@link InternalError}.
+   */
+  static ByteBuffer map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  /** Get a stream reading the remaining content of a buffer, without consuming it. */
+  static InputStream newInputStream(ByteBuffer buffer) {
+    ByteBuffer content = buffer.slice();
+    return new InputStream() {
+      @Override
+      public int read() {
+        return content.hasRemaining() ? content.get() & 0xff : -1;
+      }
+
+      @Override
+      public int read(byte[] array, int offset, int length) {
+        if (length == 0) {
+          return 0;
+        }
+        if (!content.hasRemaining()) {
+          return -1;
+        }
+        int count = Math.min(length, content.remaining());
+        content.get(array, offset, count);
+        return count;
+      }
+
+      @Override
+      public int available() {
+        return content.remaining();
+      }
+    };
+  }
+}
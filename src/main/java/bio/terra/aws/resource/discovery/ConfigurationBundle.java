@@ -0,0 +1,291 @@
+package bio.terra.aws.resource.discovery;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * An optional bundle ({@code vM/bundle}) holding every configuration file of an Environment in a
+ * single file or S3 object, so that an Environment can be discovered with a single read.
+ *
+ * <p>The bundle starts with a magic number, a format version and a compression flag, followed by
+ * the (optionally gzip-compressed) entry count and entries. Each entry is a configuration file
+ * named by its path relative to the {@code vM} directory (for example {@code
+ * environment/config.json} or {@code landingzones/us-east-1/config.avro}), written as a
+ * length-prefixed UTF-8 name followed by the length-prefixed file content. Entries in either
+ * encoding may be present, and are chosen between as they are for individual files (see {@link
+ * AvroEnvironmentDiscovery#selectConfiguration}).
+ *
+ * <p>Entries are not parsed when the bundle is read, but only when their configuration is first
+ * requested. A bundle read with the previously read bundle shares the entries whose content is
+ * unchanged, along with their configurations, so that discovery only decodes the configurations
+ * that changed between the two.
+ *
+ * <p>Instances are immutable, and thread-safe.
+ */
+final class ConfigurationBundle {
+  /** The name of the bundle file or object within the {@code vM} directory or prefix. */
+  static final String BUNDLE_NAME = "bundle";
+
+  private static final int MAGIC = 0x54424e44; // "TBND"
+  static final int FORMAT_VERSION = 1;
+
+  private static final int UNCOMPRESSED = 0;
+  private static final int GZIP_COMPRESSED = 1;
+
+  private static final String CONFIGURATION_FILE_NAME = "config.json";
+  private static final String BINARY_CONFIGURATION_FILE_NAME = "config.avro";
+  private static final String ENVIRONMENT_ENTRY_PREFIX = "environment/";
+  private static final String LANDING_ZONE_ENTRY_PREFIX = "landingzones/";
+  private static final Pattern LANDING_ZONE_ENTRY_PATTERN =
+      Pattern.compile("landingzones/([a-z0-9-]+)/(config\\.json|config\\.avro)");
+
+  /** A configuration file held in the bundle, parsed on first use. */
+  private static final class Entry {
+    private final String name;
+    private final byte[] content;
+    private StoredConfiguration configuration;
+
+    Entry(String name, byte[] content) {
+      this.name = name;
+      this.content = content;
+    }
+
+    boolean hasContent(ByteBuffer buffer, int offset, int length) {
+      return buffer.slice(offset, length).equals(ByteBuffer.wrap(content));
+    }
+
+    synchronized StoredConfiguration getConfiguration(JsonFactory jsonFactory) throws IOException {
+      if (configuration == null) {
+        configuration =
+            name.endsWith(BINARY_CONFIGURATION_FILE_NAME)
+                ? new SingleObjectConfiguration(content)
+                : new AvroConfiguration(content, jsonFactory);
+      }
+      return configuration;
+    }
+  }
+
+  private final Map<String, Entry> entries;
+  private final JsonFactory jsonFactory;
+
+  private ConfigurationBundle(Map<String, Entry> entries, JsonFactory jsonFactory) {
+    this.entries = entries;
+    this.jsonFactory = jsonFactory;
+  }
+
+  /**
+   * Read a bundle.
+   *
+   * @param content the bundle, which is not retained
+   * @param jsonFactory factory used to parse {@code config.json} entries
+   * @param previous the bundle previously read from the same location, whose unchanged entries are
+   *     shared with the bundle read, or null
+   * @return the bundle
+   * @throws IOException if the content is not a bundle, is truncated, or was written using a
+   *     different format version
+   */
+  static ConfigurationBundle read(
+      byte[] content, JsonFactory jsonFactory, ConfigurationBundle previous) throws IOException {
+    return read(ByteBuffer.wrap(content), jsonFactory, previous);
+  }
+
+  /**
+   * Read a bundle from a buffer, which may be direct or memory-mapped: the bundle is parsed in
+   * place, and only the content of entries that changed since the previous bundle is copied onto
+   * the heap.
+   *
+   * @param content the bundle, from the buffer's position to its limit; the buffer is not modified
+   *     or retained
+   * @param jsonFactory factory used to parse {@code config.json} entries
+   * @param previous the bundle previously read from the same location, whose unchanged entries are
+   *     shared with the bundle read, or null
+   * @return the bundle
+   * @throws IOException if the content is not a bundle, is truncated, or was written using a
+   *     different format version
+   */
+  static ConfigurationBundle read(
+      ByteBuffer content, JsonFactory jsonFactory, ConfigurationBundle previous)
+      throws IOException {
+    try {
+      ByteBuffer buffer = content.slice();
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a configuration bundle.");
+      }
+      int formatVersion = buffer.get() & 0xff;
+      if (formatVersion != FORMAT_VERSION) {
+        throw new IOException(
+            String.format(
+                "Unsupported configuration bundle format version %d (expected %d).",
+                formatVersion, FORMAT_VERSION));
+      }
+      int compression = buffer.get() & 0xff;
+      if (compression == GZIP_COMPRESSED) {
+        try (InputStream input = new GZIPInputStream(ConfigurationBuffers.newInputStream(buffer))) {
+          buffer = ByteBuffer.wrap(input.readAllBytes());
+        }
+      } else if (compression != UNCOMPRESSED) {
+        throw new IOException(
+            String.format("Unsupported configuration bundle compression %d.", compression));
+      }
+
+      int entryCount = buffer.getInt();
+      Map<String, Entry> entries = new LinkedHashMap<>();
+      for (int i = 0; i < entryCount; i++) {
+        int nameLength = buffer.getShort() & 0xffff;
+        byte[] nameBytes = new byte[nameLength];
+        buffer.get(skip(buffer, nameLength), nameBytes);
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        int length = buffer.getInt();
+        int offset = skip(buffer, length);
+
+        Entry previousEntry = previous == null ? null : previous.entries.get(name);
+        Entry entry;
+        if (previousEntry != null && previousEntry.hasContent(buffer, offset, length)) {
+          entry = previousEntry;
+        } else {
+          byte[] entryContent = new byte[length];
+          buffer.get(offset, entryContent);
+          entry = new Entry(name, entryContent);
+        }
+        if (entries.put(name, entry) != null) {
+          throw new IOException(
+              String.format("Configuration bundle contains entry '%s' more than once.", name));
+        }
+      }
+      return new ConfigurationBundle(entries, jsonFactory);
+    } catch (BufferUnderflowException exception) {
+      throw new IOException("Truncated configuration bundle.", exception);
+    }
+  }
+
+  /**
+   * Private helper to skip a length-prefixed value in a buffer, returning its offset.
+   *
+   * @throws IOException if the length is invalid
+   */
+  private static int skip(ByteBuffer buffer, int length) throws IOException {
+    if (length < 0 || length > buffer.remaining()) {
+      throw new IOException("Invalid entry length in configuration bundle.");
+    }
+    int offset = buffer.position();
+    buffer.position(offset + length);
+    return offset;
+  }
+
+  /**
+   * Write a bundle holding the passed configuration files.
+   *
+   * @param files the content of each configuration file, by its path relative to the {@code vM}
+   *     directory, using {@code /} as separator
+   * @param compress whether to gzip-compress the entries
+   * @param outputStream stream to write the bundle to, which is flushed but not closed
+   * @throws IOException IOException
+   */
+  static void write(Map<String, byte[]> files, boolean compress, OutputStream outputStream)
+      throws IOException {
+    DataOutputStream header = new DataOutputStream(outputStream);
+    header.writeInt(MAGIC);
+    header.writeByte(FORMAT_VERSION);
+    header.writeByte(compress ? GZIP_COMPRESSED : UNCOMPRESSED);
+    header.flush();
+
+    GZIPOutputStream compressed = compress ? new GZIPOutputStream(outputStream) : null;
+    DataOutputStream output = new DataOutputStream(compress ? compressed : outputStream);
+    output.writeInt(files.size());
+    for (Map.Entry<String, byte[]> file : files.entrySet()) {
+      byte[] name = file.getKey().getBytes(StandardCharsets.UTF_8);
+      output.writeShort(name.length);
+      output.write(name);
+      output.writeInt(file.getValue().length);
+      output.write(file.getValue());
+    }
+    if (compressed != null) {
+      compressed.finish();
+    }
+    output.flush();
+  }
+
+  /**
+   * Get the Environment configuration held in the bundle.
+   *
+   * @throws NoSuchElementException if the bundle holds no Environment configuration
+   * @throws IOException if the configuration cannot be parsed
+   */
+  StoredConfiguration getEnvironmentConfiguration() throws IOException {
+    StoredConfiguration configuration = getConfiguration(ENVIRONMENT_ENTRY_PREFIX);
+    if (configuration == null) {
+      throw new NoSuchElementException(
+          String.format(
+              "Configuration bundle contains no entry '%s'.",
+              ENVIRONMENT_ENTRY_PREFIX + CONFIGURATION_FILE_NAME));
+    }
+    return configuration;
+  }
+
+  /**
+   * Get the Landing Zone configuration held in the bundle for each region; entries for regions that
+   * are not known AWS regions are ignored.
+   *
+   * @throws IOException if a configuration cannot be parsed
+   */
+  Map<Region, StoredConfiguration> getLandingZoneConfigurations() throws IOException {
+    Map<Region, String> regionPrefixes = new HashMap<>();
+    for (String name : entries.keySet()) {
+      Matcher matcher = LANDING_ZONE_ENTRY_PATTERN.matcher(name);
+      if (matcher.matches()) {
+        Region region = Region.of(matcher.group(1));
+        if (Region.regions().contains(region)) {
+          regionPrefixes.put(region, name.substring(0, matcher.start(2)));
+        }
+      }
+    }
+
+    Map<Region, StoredConfiguration> configurations = new HashMap<>();
+    for (Map.Entry<Region, String> regionPrefix : regionPrefixes.entrySet()) {
+      configurations.put(regionPrefix.getKey(), getConfiguration(regionPrefix.getValue()));
+    }
+    return configurations;
+  }
+
+  /**
+   * Get the Landing Zone configuration held in the bundle for a single region, parsing no other
+   * entry.
+   *
+   * @return the configuration, or null if the bundle holds none for the region or the region is not
+   *     a known AWS region
+   * @throws IOException if the configuration cannot be parsed
+   */
+  StoredConfiguration getLandingZoneConfiguration(Region region) throws IOException {
+    if (!Region.regions().contains(region)) {
+      return null;
+    }
+    return getConfiguration(LANDING_ZONE_ENTRY_PREFIX + region.id() + "/");
+  }
+
+  /**
+   * Private helper to get the configuration held by the entries under a prefix, preferring its
+   * binary encoding, or null if there is none.
+   */
+  private StoredConfiguration getConfiguration(String prefix) throws IOException {
+    Entry binaryEntry = entries.get(prefix + BINARY_CONFIGURATION_FILE_NAME);
+    Entry jsonEntry = entries.get(prefix + CONFIGURATION_FILE_NAME);
+    return AvroEnvironmentDiscovery.selectConfiguration(
+        binaryEntry == null ? null : () -> binaryEntry.getConfiguration(jsonFactory),
+        jsonEntry == null ? null : () -> jsonEntry.getConfiguration(jsonFactory));
+  }
+}
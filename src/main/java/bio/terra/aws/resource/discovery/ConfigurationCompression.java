@@ -0,0 +1,111 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Transparent decompression of stored configuration files and objects.
+ *
+ * <p>Configurations may be stored gzip-compressed, which is declared by a {@code .gz} suffix on the
+ * file name or object key (for example {@code config.json.gz}), or by a {@code Content-Encoding:
+ * gzip} object header, or detected from the gzip magic number at the start of the content. Neither
+ * configuration encoding can start with the gzip magic number ({@code config.json} starts with a
+ * JSON object, and {@code config.avro} with the single-object marker), so detection is unambiguous.
+ * Compressed content is decompressed as a stream while it is read; content that is declared to be
+ * compressed but is not fails with a {@link java.util.zip.ZipException}.
+ */
+final class ConfigurationCompression {
+  /** Suffix of compressed configuration file names and object keys. */
+  static final String GZIP_SUFFIX = ".gz";
+
+  private static final String GZIP_CONTENT_ENCODING = "gzip";
+  private static final String LEGACY_GZIP_CONTENT_ENCODING = "x-gzip";
+  private static final int GZIP_MAGIC_0 = 0x1f;
+  private static final int GZIP_MAGIC_1 = 0x8b;
+
+  private ConfigurationCompression() {}
+
+  /** Strip the compression suffix, if any, from a file name or object key. */
+  static String stripSuffix(String name) {
+    return name.endsWith(GZIP_SUFFIX)
+        ? name.substring(0, name.length() - GZIP_SUFFIX.length())
+        : name;
+  }
+
+  /** Check whether an HTTP {@code Content-Encoding} (which may be null) declares gzip. */
+  static boolean isGzipContentEncoding(String contentEncoding) {
+    return GZIP_CONTENT_ENCODING.equalsIgnoreCase(contentEncoding)
+        || LEGACY_GZIP_CONTENT_ENCODING.equalsIgnoreCase(contentEncoding);
+  }
+
+  /**
+   * Get the decompressed content of a configuration.
+   *
+   * @param content stored content, which is returned as is if not compressed
+   * @param gzipDeclared whether the content was declared to be gzip-compressed
+   * @throws IOException if the content cannot be decompressed
+   */
+  static byte[] decompress(byte[] content, boolean gzipDeclared) throws IOException {
+    boolean compressed =
+        gzipDeclared
+            || (content.length >= 2
+                && (content[0] & 0xff) == GZIP_MAGIC_0
+                && (content[1] & 0xff) == GZIP_MAGIC_1);
+    if (!compressed) {
+      return content;
+    }
+    try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(content))) {
+      return input.readAllBytes();
+    }
+  }
+
+  /**
+   * Get the decompressed content of a configuration read into a buffer, without consuming it.
+   * Compressed content is decompressed from the buffer as a stream, so that only the decompressed
+   * content is copied onto the heap; other content is copied as is.
+   *
+   * @param content stored content
+   * @param gzipDeclared whether the content was declared to be gzip-compressed
+   * @throws IOException if the content cannot be decompressed
+   */
+  static byte[] decompress(ByteBuffer content, boolean gzipDeclared) throws IOException {
+    int position = content.position();
+    boolean compressed =
+        gzipDeclared
+            || (content.remaining() >= 2
+                && (content.get(position) & 0xff) == GZIP_MAGIC_0
+                && (content.get(position + 1) & 0xff) == GZIP_MAGIC_1);
+    if (!compressed) {
+      return ConfigurationBuffers.toArray(content);
+    }
+    try (InputStream input = new GZIPInputStream(ConfigurationBuffers.newInputStream(content))) {
+      return input.readAllBytes();
+    }
+  }
+
+  /**
+   * Read the decompressed content of a configuration from a stream, which is closed.
+   *
+   * @param input stream of stored content
+   * @param gzipDeclared whether the content was declared to be gzip-compressed
+   * @throws IOException if the content cannot be read or decompressed
+   */
+  static byte[] readAllBytes(InputStream input, boolean gzipDeclared) throws IOException {
+    try (InputStream buffered = new BufferedInputStream(input)) {
+      buffered.mark(2);
+      boolean compressed =
+          gzipDeclared || (buffered.read() == GZIP_MAGIC_0 && buffered.read() == GZIP_MAGIC_1);
+      buffered.reset();
+      if (!compressed) {
+        return buffered.readAllBytes();
+      }
+      try (InputStream decompressed = new GZIPInputStream(buffered)) {
+        return decompressed.readAllBytes();
+      }
+    }
+  }
+}
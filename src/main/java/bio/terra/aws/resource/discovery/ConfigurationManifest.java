@@ -0,0 +1,126 @@
+package bio.terra.aws.resource.discovery;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * An optional manifest object ({@code vM/manifest.json}) listing the configuration objects of an
+ * Environment stored in S3, written by the publisher after the objects it lists:
+ *
+ * <pre>{@code
+ * {
+ *   "environment": {"key": "v0/environment/config.json", "eTag": "...", "versionId": "...",
+ *                   "size": 1234},
+ *   "landingZones": {
+ *     "us-east-1": {"key": "v0/landingzones/us-east-1/config.avro", "eTag": "...", "size": 567}
+ *   }
+ * }
+ * }</pre>
+ *
+ * <p>When a manifest is present, discovery reads exactly the objects it lists, rather than listing
+ * the bucket. Each entry requires the object key and ETag; the version ID (for versioned buckets)
+ * and size are optional. Objects are read at the listed version, or on condition that they still
+ * have the listed ETag, so that a discovery observes a consistent set of configurations even while
+ * a new set is being published.
+ *
+ * @param environment the Environment configuration object
+ * @param landingZones the Landing Zone configuration object for each region, by region id; regions
+ *     that are not known AWS regions are ignored, as they are when listing
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+record ConfigurationManifest(
+    @JsonProperty("environment") Entry environment,
+    @JsonProperty("landingZones") Map<String, Entry> landingZones) {
+
+  /**
+   * A configuration object listed in the manifest.
+   *
+   * @param key object key
+   * @param eTag object ETag, with or without the surrounding quotes S3 returns
+   * @param versionId object version ID, or null
+   * @param size object size in bytes, or null
+   */
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  record Entry(
+      @JsonProperty("key") String key,
+      @JsonProperty("eTag") String eTag,
+      @JsonProperty("versionId") String versionId,
+      @JsonProperty("size") Long size) {
+
+    /**
+     * Check that an object read for this entry is the object listed.
+     *
+     * @param responseETag the ETag returned when reading the object, or null if none was returned
+     * @param length the length of the object read
+     * @throws IOException if the object read differs from the object listed
+     */
+    void verify(String responseETag, long length) throws IOException {
+      if (responseETag != null && !sameETag(eTag, responseETag)) {
+        throw new IOException(
+            String.format("Object '%s' has changed since the manifest was written.", key));
+      }
+      if (size != null && size != length) {
+        throw new IOException(
+            String.format(
+                "Object '%s' is %d bytes long, but the manifest lists %d bytes.",
+                key, length, size));
+      }
+    }
+  }
+
+  /**
+   * Parse a manifest object.
+   *
+   * @throws IOException if the manifest is not valid JSON
+   * @throws IllegalArgumentException if the manifest is missing required fields
+   */
+  static ConfigurationManifest parse(byte[] content, ObjectMapper mapper) throws IOException {
+    ConfigurationManifest manifest = mapper.readValue(content, ConfigurationManifest.class);
+    if (manifest.environment() == null) {
+      throw new IllegalArgumentException("Configuration manifest does not list an environment.");
+    }
+    validateEntry(manifest.environment());
+    if (manifest.landingZones() != null) {
+      manifest.landingZones().values().forEach(ConfigurationManifest::validateEntry);
+    }
+    return manifest;
+  }
+
+  private static void validateEntry(Entry entry) {
+    if (entry == null || entry.key() == null || entry.eTag() == null) {
+      throw new IllegalArgumentException(
+          "Configuration manifest entries require an object key and ETag.");
+    }
+  }
+
+  /** Get the listed Landing Zone configuration objects of known AWS regions. */
+  Map<Region, Entry> getLandingZoneEntries() {
+    Map<Region, Entry> entries = new HashMap<>();
+    if (landingZones != null) {
+      landingZones.forEach(
+          (regionId, entry) -> {
+            Region region = Region.of(regionId);
+            if (Region.regions().contains(region)) {
+              entries.put(region, entry);
+            }
+          });
+    }
+    return entries;
+  }
+
+  /** Compare ETags, ignoring the surrounding quotes that S3 returns but publishers may omit. */
+  static boolean sameETag(String first, String second) {
+    return first != null && second != null && stripQuotes(first).equals(stripQuotes(second));
+  }
+
+  private static String stripQuotes(String eTag) {
+    return eTag.length() >= 2 && eTag.startsWith("\"") && eTag.endsWith("\"")
+        ? eTag.substring(1, eTag.length() - 1)
+        : eTag;
+  }
+}
@@ -0,0 +1,71 @@
+package bio.terra.aws.resource.discovery;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the {@link Executor} that discoveries use by default to read and parse configurations
+ * concurrently.
+ *
+ * <p>On JDK 21 and later this is an executor starting a virtual thread per task, which suits the
+ * blocking storage reads performed by discovery tasks. The library targets JDK 17, so the executor
+ * is created reflectively; on earlier JDKs a bounded pool of daemon threads, which time out when
+ * idle, is used instead.
+ *
+ * <p>The default executor is shared by all discoveries in the process.
+ */
+final class DiscoveryExecutors {
+  static final int DEFAULT_POOL_SIZE = 16;
+  private static final long POOL_KEEP_ALIVE_SECONDS = 60;
+
+  private DiscoveryExecutors() {}
+
+  private static class DefaultExecutorHolder {
+    static final Executor DEFAULT_EXECUTOR = createDefaultExecutor();
+  }
+
+  /** Get the shared default executor, creating it on first use. */
+  static Executor defaultExecutor() {
+    return DefaultExecutorHolder.DEFAULT_EXECUTOR;
+  }
+
+  private static Executor createDefaultExecutor() {
+    Executor virtualThreadExecutor = createVirtualThreadExecutor();
+    return virtualThreadExecutor != null ? virtualThreadExecutor : createBoundedExecutor();
+  }
+
+  /** Create a virtual-thread-per-task executor, or return null if the JDK does not support one. */
+  static Executor createVirtualThreadExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException exception) {
+      return null;
+    }
+  }
+
+  static Executor createBoundedExecutor() {
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            DEFAULT_POOL_SIZE,
+            DEFAULT_POOL_SIZE,
+            POOL_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread =
+                  new Thread(
+                      runnable, "environment-discovery-worker-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+}
@@ -1,10 +1,13 @@
 package bio.terra.aws.resource.discovery;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import software.amazon.awssdk.arns.Arn;
 import software.amazon.awssdk.regions.Region;
 
@@ -16,6 +19,11 @@ import software.amazon.awssdk.regions.Region;
  * <p>Regional Support Resources can be obtained by calling method {@link
  * Environment#getLandingZone(Region)} with a given AWS region to obtain an instance of class {@link
  * LandingZone}.
+ *
+ * <p>Landing Zones are held in a compact immutable array, alongside their regions, so that looking
+ * up a Landing Zone, checking whether one exists, iterating over them or getting the set of
+ * supported regions neither hashes nor allocates (see {@link
+ * Environment#landingZoneOrNull(Region)}).
  */
 public class Environment {
   private final Optional<String> applicationInstanceProfileName;
@@ -23,7 +31,16 @@ public class Environment {
   private final Arn workspaceManagerRoleArn;
   private final Arn userRoleArn;
   private final Arn notebookRoleArn;
-  private final Map<Region, LandingZone> landingZoneMap;
+
+  /**
+   * The regions of the Landing Zones, in the order of their ordinals (see {@link RegionOrdinals}).
+   */
+  private final Region[] regions;
+
+  /** The Landing Zone in each region, indexed like {@link #regions}. */
+  private final LandingZone[] landingZones;
+
+  private final Set<Region> supportedRegions;
 
   private Environment(Builder builder) {
     applicationInstanceProfileName = Optional.ofNullable(builder.applicationInstanceProfileName);
@@ -31,7 +48,19 @@ public class Environment {
     workspaceManagerRoleArn = builder.workspaceManagerRoleArn;
     userRoleArn = builder.userRoleArn;
     notebookRoleArn = builder.notebookRoleArn;
-    landingZoneMap = builder.landingZoneMap;
+
+    for (Map.Entry<Region, LandingZone> entry : builder.landingZoneMap.entrySet()) {
+      if (entry.getKey() == null || entry.getValue() == null) {
+        throw new IllegalArgumentException("Landing Zone and its region may not be null.");
+      }
+    }
+    regions = builder.landingZoneMap.keySet().toArray(new Region[0]);
+    Arrays.sort(regions, Comparator.comparingInt(RegionOrdinals::assign));
+    landingZones = new LandingZone[regions.length];
+    for (int i = 0; i < regions.length; i++) {
+      landingZones[i] = builder.landingZoneMap.get(regions[i]);
+    }
+    supportedRegions = Set.copyOf(builder.landingZoneMap.keySet());
   }
 
   /** Builder for class @{link Environment} */
@@ -52,6 +81,7 @@ public class Environment {
       this.applicationInstanceProfileName = appInstanceProfileName;
       return this;
     }
+
     /** Set the metadata describing the Environment */
     public Builder metadata(Metadata metadata) {
       this.metadata = metadata;
@@ -93,6 +123,33 @@ public class Environment {
     return new Builder();
   }
 
+  /**
+   * Get a {@link Builder} initialized with the contents of this {@link Environment}, including its
+   * Landing Zones.
+   */
+  public Builder toBuilder() {
+    Builder builder = toGlobalResourcesBuilder();
+    forEachLandingZone(builder::addLandingZone);
+    return builder;
+  }
+
+  /**
+   * Get an {@link Environment} describing the Global Support Resources of this {@link Environment},
+   * but none of its Landing Zones.
+   */
+  Environment withoutLandingZones() {
+    return landingZones.length == 0 ? this : toGlobalResourcesBuilder().build();
+  }
+
+  private Builder toGlobalResourcesBuilder() {
+    return builder()
+        .applicationInstanceProfileName(applicationInstanceProfileName.orElse(null))
+        .metadata(metadata)
+        .workspaceManagerRoleArn(workspaceManagerRoleArn)
+        .userRoleArn(userRoleArn)
+        .notebookRoleArn(notebookRoleArn);
+  }
+
   /**
    * Get the name of the EC2 Instance Profile to use when creating EC2 instances to back
    * applications if one exists.
@@ -134,7 +191,50 @@ public class Environment {
    *     not exist in the Environment for this AWS region.
    */
   public Optional<LandingZone> getLandingZone(Region region) {
-    return Optional.ofNullable(landingZoneMap.get(region));
+    return Optional.ofNullable(landingZoneOrNull(region));
+  }
+
+  /**
+   * Gets the {@link LandingZone} representing the Regional Support Resources in the passed AWS
+   * region, like {@link Environment#getLandingZone(Region)} but without allocating an {@link
+   * Optional}.
+   *
+   * @param region the AWS region to get the Regional Support Resources for
+   * @return the Landing Zone in the Environment for the passed AWS region, or null if there is none
+   */
+  public LandingZone landingZoneOrNull(Region region) {
+    // Regions are interned by Region.of, which equals compares by identity; an Environment holds
+    // few Landing Zones, so scanning their regions is cheaper than hashing the region.
+    for (int i = 0; i < regions.length; i++) {
+      if (regions[i] == region) {
+        return landingZones[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks whether a Landing Zone exists in the Environment for the passed AWS region.
+   *
+   * @param region the AWS region to check
+   * @return true if {@link Environment#landingZoneOrNull(Region)} returns a Landing Zone for the
+   *     region, false otherwise
+   */
+  public boolean hasLandingZone(Region region) {
+    return landingZoneOrNull(region) != null;
+  }
+
+  /**
+   * Performs the passed action for each Landing Zone in the Environment, along with its AWS region.
+   * Landing Zones are visited in a consistent order, starting with the regions known to the AWS SDK
+   * in the order of {@link Region#regions()}.
+   *
+   * @param action the action to perform for each region and its Landing Zone
+   */
+  public void forEachLandingZone(BiConsumer<Region, LandingZone> action) {
+    for (int i = 0; i < regions.length; i++) {
+      action.accept(regions[i], landingZones[i]);
+    }
   }
 
   /**
@@ -142,10 +242,11 @@ public class Environment {
    * Environment}. For all regions contained in this set, a call to {@link
    * Environment#getLandingZone(Region)} should return a non-empty {@link Optional<LandingZone>}.
    *
-   * @return a set containing all AWS regions supported by the region
+   * @return an immutable set containing all AWS regions supported by the region, which is the same
+   *     instance on every call
    */
   public Set<Region> getSupportedRegions() {
-    return Set.copyOf(landingZoneMap.keySet());
+    return supportedRegions;
   }
 
   @Override
@@ -158,7 +259,8 @@ public class Environment {
         && Objects.equals(workspaceManagerRoleArn, that.workspaceManagerRoleArn)
         && Objects.equals(userRoleArn, that.userRoleArn)
         && Objects.equals(notebookRoleArn, that.notebookRoleArn)
-        && landingZoneMap.equals(that.landingZoneMap);
+        && Arrays.equals(regions, that.regions)
+        && Arrays.equals(landingZones, that.landingZones);
   }
 
   @Override
@@ -169,6 +271,7 @@ public class Environment {
         workspaceManagerRoleArn,
         userRoleArn,
         notebookRoleArn,
-        landingZoneMap);
+        Arrays.hashCode(regions),
+        Arrays.hashCode(landingZones));
   }
 }
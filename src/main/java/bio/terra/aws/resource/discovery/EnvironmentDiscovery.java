@@ -1,6 +1,8 @@
 package bio.terra.aws.resource.discovery;
 
 import java.io.IOException;
+import java.util.Optional;
+import software.amazon.awssdk.regions.Region;
 
 /**
  * Interface used to discover AWS Support Resources in a single Terra AWS Environment and its
@@ -15,4 +17,45 @@ public interface EnvironmentDiscovery {
    * @throws IOException IOException
    */
   Environment discoverEnvironment() throws IOException;
+
+  /**
+   * Get the {@link LandingZone} describing the Regional Support Resources of a Terra AWS
+   * Environment in a single AWS region, for callers that need no other part of the Environment.
+   * Implementations reading from storage read only that region's configuration; by default, the
+   * whole Environment is discovered.
+   *
+   * @param region the AWS region to get the Regional Support Resources for
+   * @return a populated {@link Optional<LandingZone>} if a Landing Zone exists in the Environment
+   *     for the passed AWS region, an empty Optional otherwise
+   * @throws IOException IOException
+   */
+  default Optional<LandingZone> discoverLandingZone(Region region) throws IOException {
+    return discoverEnvironment().getLandingZone(region);
+  }
+
+  /**
+   * Get an {@link Environment} describing only the Global Support Resources of a Terra AWS
+   * Environment (such as its IAM role ARNs), without any Landing Zones. Implementations reading
+   * from storage read only the Environment configuration; by default, the whole Environment is
+   * discovered.
+   *
+   * @return an {@link Environment} instance with no Landing Zones
+   * @throws IOException IOException
+   */
+  default Environment discoverEnvironmentOnly() throws IOException {
+    return discoverEnvironment().withoutLandingZones();
+  }
+
+  /**
+   * Get an {@link EnvironmentDiscovery} that discovers using this one, and falls back to the passed
+   * one whenever this one fails; if both fail, the failure of this one is thrown, with that of the
+   * fallback suppressed. A typical fallback is a {@link ClasspathEnvironmentDiscovery}, serving a
+   * known good Environment shipped with the service while storage is unavailable.
+   *
+   * @param fallback the {@link EnvironmentDiscovery} to fall back to
+   * @return the layered {@link EnvironmentDiscovery}
+   */
+  default EnvironmentDiscovery withFallback(EnvironmentDiscovery fallback) {
+    return new FallbackEnvironmentDiscovery(this, fallback);
+  }
 }
@@ -0,0 +1,397 @@
+package bio.terra.aws.resource.discovery;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import software.amazon.awssdk.arns.Arn;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * A registry of cached discoveries for many Terra AWS Environments, keyed by S3 bucket name or file
+ * system base path, for services that serve multiple Environments from a single JVM.
+ *
+ * <p>Each Environment is discovered through its own {@link CachedEnvironmentDiscovery}, created on
+ * first use and backed by an {@link S3EnvironmentDiscovery} sharing the registry's {@link S3Client}
+ * or by a {@link FilesystemEnvironmentDiscovery}. Backing discoveries are constructed lazily as
+ * part of the first (single-flight) discovery, so concurrent first loads of the same Environment
+ * result in a single bucket check and a single discovery.
+ *
+ * <p>The registry is bounded by a maximum total weight, where the weight of an entry is the
+ * approximate retained size in bytes of its most recently discovered {@link Environment} (or a
+ * custom measure, see {@link Builder#weigher(ToLongFunction)}). When the total weight exceeds the
+ * maximum, least recently used entries are evicted. Entries are kept in access order, so that the
+ * least recently used entry is always the first one and eviction takes constant time. Hit, miss and
+ * eviction counts are available through {@link #getStatistics()} to help size the registry.
+ */
+public class EnvironmentRegistry {
+
+  private static final String S3_KEY_PREFIX = "s3://";
+  private static final String FILESYSTEM_KEY_PREFIX = "file://";
+
+  private final S3Client s3Client;
+  private final Duration expirationPeriod;
+  private final Duration maxStaleness;
+  private final Duration failureExpirationPeriod;
+  private final long maximumWeight;
+  private final ToLongFunction<Environment> weigher;
+  private final long failedEntryWeight;
+
+  /** Entries in access order, least recently used first; guarded by this. */
+  private final LinkedHashMap<String, Entry> entries;
+
+  /** Usage counts and total weight of all entries; guarded by this. */
+  private long hitCount;
+
+  private long missCount;
+  private long evictionCount;
+  private long totalWeight;
+
+  private EnvironmentRegistry(Builder builder) {
+    if (builder.expirationPeriod == null) {
+      throw new IllegalArgumentException("Expiration period may not be null.");
+    }
+    if (builder.maximumWeight <= 0) {
+      throw new IllegalArgumentException("Maximum weight must be positive.");
+    }
+    this.s3Client = builder.s3Client;
+    this.expirationPeriod = builder.expirationPeriod;
+    this.maxStaleness = builder.maxStaleness;
+    this.failureExpirationPeriod = builder.failureExpirationPeriod;
+    this.maximumWeight = builder.maximumWeight;
+    this.weigher = builder.weigher;
+    this.failedEntryWeight = Math.max(1, weigher.applyAsLong(Environment.builder().build()));
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /** Builder for class {@link EnvironmentRegistry} */
+  public static class Builder {
+    private S3Client s3Client;
+    private Duration expirationPeriod;
+    private Duration maxStaleness;
+    private Duration failureExpirationPeriod;
+    private long maximumWeight;
+    private ToLongFunction<Environment> weigher;
+
+    private Builder() {
+      maxStaleness = Duration.ZERO;
+      failureExpirationPeriod = Duration.ZERO;
+      maximumWeight = Long.MAX_VALUE;
+      weigher = EnvironmentRegistry::estimateRetainedSize;
+    }
+
+    /**
+     * Set the {@link S3Client} shared by all S3-backed Environments; must be credentialed to read
+     * every bucket passed to {@link EnvironmentRegistry#discoverEnvironment(String)}.
+     */
+    public Builder s3Client(S3Client s3Client) {
+      this.s3Client = s3Client;
+      return this;
+    }
+
+    /**
+     * Set the expiration period of each cached Environment, see {@link CachedEnvironmentDiscovery}
+     */
+    public Builder expirationPeriod(Duration expirationPeriod) {
+      this.expirationPeriod = expirationPeriod;
+      return this;
+    }
+
+    /**
+     * Set the maximum staleness of each cached Environment, see {@link
+     * CachedEnvironmentDiscovery.Builder#maxStaleness(Duration)}
+     */
+    public Builder maxStaleness(Duration maxStaleness) {
+      this.maxStaleness = maxStaleness;
+      return this;
+    }
+
+    /**
+     * Set the period for which configuration failures of each Environment are cached, see {@link
+     * CachedEnvironmentDiscovery.Builder#failureExpirationPeriod(Duration)}. Entries for
+     * Environments that have failed in this way are retained so that their cached failure can be
+     * rethrown, with the nominal weight of an empty Environment, so that they are evicted like any
+     * other entry.
+     */
+    public Builder failureExpirationPeriod(Duration failureExpirationPeriod) {
+      this.failureExpirationPeriod = failureExpirationPeriod;
+      return this;
+    }
+
+    /** Set the maximum total weight of all entries, by default unbounded */
+    public Builder maximumWeight(long maximumWeight) {
+      this.maximumWeight = maximumWeight;
+      return this;
+    }
+
+    /**
+     * Set the function used to weigh discovered Environments, by default an estimate of their
+     * retained size in bytes. The function is also applied to an empty Environment, with no
+     * metadata, to weigh entries retained for a cached failure.
+     */
+    public Builder weigher(ToLongFunction<Environment> weigher) {
+      this.weigher = weigher;
+      return this;
+    }
+
+    /** Build the {@link EnvironmentRegistry} instance */
+    public EnvironmentRegistry build() {
+      return new EnvironmentRegistry(this);
+    }
+  }
+
+  /** Get a {@link Builder} for {@link EnvironmentRegistry} */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Registry usage counts.
+   *
+   * @param hitCount number of lookups that found an existing entry
+   * @param missCount number of lookups that created a new entry
+   * @param evictionCount number of entries evicted to stay under the maximum weight
+   * @param size current number of entries
+   * @param totalWeight current total weight of all entries
+   */
+  public record Statistics(
+      long hitCount, long missCount, long evictionCount, int size, long totalWeight) {}
+
+  private static final class Entry {
+    private final CachedEnvironmentDiscovery discovery;
+
+    /** Environment last weighed for this entry, and its weight; written under registry lock. */
+    private volatile Environment weighedEnvironment;
+
+    private long weight;
+
+    private Entry(CachedEnvironmentDiscovery discovery) {
+      this.discovery = discovery;
+    }
+  }
+
+  /**
+   * An {@link EnvironmentDiscovery} that constructs its backing discovery on first use, so that
+   * construction (which may itself perform I/O) is covered by the single-flight discovery of the
+   * {@link CachedEnvironmentDiscovery} wrapping it.
+   */
+  private static final class LazyEnvironmentDiscovery implements EnvironmentDiscovery {
+    private final Supplier<EnvironmentDiscovery> factory;
+    private volatile EnvironmentDiscovery delegate;
+
+    private LazyEnvironmentDiscovery(Supplier<EnvironmentDiscovery> factory) {
+      this.factory = factory;
+    }
+
+    @Override
+    public Environment discoverEnvironment() throws IOException {
+      EnvironmentDiscovery current = delegate;
+      if (current == null) {
+        synchronized (this) {
+          current = delegate;
+          if (current == null) {
+            current = factory.get();
+            delegate = current;
+          }
+        }
+      }
+      return current.discoverEnvironment();
+    }
+  }
+
+  /**
+   * Discover the Environment stored in an S3 bucket, using the registry's shared {@link S3Client}.
+   *
+   * @param bucketName the name of the AWS S3 bucket containing the Environment's configuration, see
+   *     {@link S3EnvironmentDiscovery}
+   * @return an {@link Environment} instance representing the Environment's Support Resources
+   * @throws IOException IOException
+   */
+  public Environment discoverEnvironment(String bucketName) throws IOException {
+    if (s3Client == null) {
+      throw new IllegalStateException("No S3 client was provided to the registry.");
+    }
+    return discoverEnvironment(
+        S3_KEY_PREFIX + bucketName,
+        // The first discovery immediately follows construction: start it right away, which also
+        // reveals whether the bucket exists without a separate request.
+        () ->
+            S3EnvironmentDiscovery.builder()
+                .bucketName(bucketName)
+                .s3Client(s3Client)
+                .prefetch(true)
+                .build());
+  }
+
+  /**
+   * Discover the Environment stored in a file system directory.
+   *
+   * @param basePath the base path of the directory containing the Environment's configuration, see
+   *     {@link FilesystemEnvironmentDiscovery}
+   * @return an {@link Environment} instance representing the Environment's Support Resources
+   * @throws IOException IOException
+   */
+  public Environment discoverEnvironment(Path basePath) throws IOException {
+    Path normalizedPath = basePath.toAbsolutePath().normalize();
+    return discoverEnvironment(
+        FILESYSTEM_KEY_PREFIX + normalizedPath,
+        () -> new FilesystemEnvironmentDiscovery(normalizedPath));
+  }
+
+  @VisibleForTesting
+  Environment discoverEnvironment(String key, Supplier<EnvironmentDiscovery> factory)
+      throws IOException {
+    Entry entry = getOrCreateEntry(key, factory);
+    Environment environment;
+    try {
+      environment = entry.discovery.discoverEnvironment();
+    } catch (IOException | RuntimeException exception) {
+      // Don't retain entries for Environments that have never been successfully discovered,
+      // unless they are needed to rethrow a cached failure.
+      if (entry.weighedEnvironment == null) {
+        if (failureExpirationPeriod.isZero()
+            || !CachedEnvironmentDiscovery.isConfigurationFailure(exception)) {
+          removeEntry(key, entry);
+        } else {
+          updateWeight(key, entry, null);
+        }
+      }
+      throw exception;
+    }
+    if (environment != entry.weighedEnvironment) {
+      updateWeight(key, entry, environment);
+    }
+    return environment;
+  }
+
+  /**
+   * Get the entry for a key, marking it as the most recently used, or create it. Creating an entry
+   * performs no I/O, as its backing discovery is constructed on first use.
+   */
+  private synchronized Entry getOrCreateEntry(String key, Supplier<EnvironmentDiscovery> factory) {
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      hitCount++;
+    } else {
+      missCount++;
+      entry = createEntry(factory);
+      entries.put(key, entry);
+    }
+    return entry;
+  }
+
+  private Entry createEntry(Supplier<EnvironmentDiscovery> factory) {
+    return new Entry(
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(new LazyEnvironmentDiscovery(factory))
+            .expirationPeriod(expirationPeriod)
+            .maxStaleness(maxStaleness)
+            .failureExpirationPeriod(failureExpirationPeriod)
+            .build());
+  }
+
+  private synchronized void removeEntry(String key, Entry entry) {
+    if (entries.remove(key, entry)) {
+      totalWeight -= entry.weight;
+    }
+  }
+
+  /**
+   * Weigh an entry's newly discovered Environment, or, if null, give the entry the nominal weight
+   * of a retained failure; then evict entries if the registry is overweight.
+   */
+  private synchronized void updateWeight(String key, Entry entry, Environment environment) {
+    // Skip entries that have been evicted (or weighed by a concurrent caller) in the meantime.
+    if (entries.get(key) != entry
+        || (environment != null && environment == entry.weighedEnvironment)) {
+      return;
+    }
+
+    long weight = environment != null ? weigher.applyAsLong(environment) : failedEntryWeight;
+    totalWeight += weight - entry.weight;
+    entry.weight = weight;
+    if (environment != null) {
+      entry.weighedEnvironment = environment;
+    }
+
+    evictIfOverweight();
+  }
+
+  /** Evict least recently used entries until the total weight is within the maximum. */
+  private synchronized void evictIfOverweight() {
+    Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+    while (totalWeight > maximumWeight && leastRecentlyUsed.hasNext()) {
+      Entry entry = leastRecentlyUsed.next();
+      leastRecentlyUsed.remove();
+      totalWeight -= entry.weight;
+      evictionCount++;
+    }
+  }
+
+  /** Get the registry's usage counts. */
+  public synchronized Statistics getStatistics() {
+    return new Statistics(hitCount, missCount, evictionCount, entries.size(), totalWeight);
+  }
+
+  /**
+   * Estimate the retained size in bytes of an {@link Environment}, assuming a 64-bit JVM with
+   * compressed object pointers. The estimate is intended for relative sizing of registry entries,
+   * and counts strings, collections and per-object overheads without attempting to account for
+   * sharing between Environments.
+   */
+  @VisibleForTesting
+  static long estimateRetainedSize(Environment environment) {
+    long size = 64 + estimateRetainedSize(environment.getMetadata());
+    size += environment.getApplicationInstanceProfileName().map(s -> 16 + stringSize(s)).orElse(0L);
+    size += arnSize(environment.getWorkspaceManagerRoleArn());
+    size += arnSize(environment.getUserRoleArn());
+    size += arnSize(environment.getNotebookRoleArn());
+
+    for (Region region : environment.getSupportedRegions()) {
+      LandingZone landingZone = environment.getLandingZone(region).orElseThrow();
+      size += 48; // Map entry
+      size += 48 + estimateRetainedSize(landingZone.getMetadata());
+      size += landingZone.getApplicationVpcId().map(s -> 16 + stringSize(s)).orElse(0L);
+      size +=
+          landingZone.getApplicationVpcPrivateSubnetId().map(s -> 16 + stringSize(s)).orElse(0L);
+      size += 24 + arnSize(landingZone.getStorageBucket().arn());
+      size += stringSize(landingZone.getStorageBucket().name());
+      size += 24 + arnSize(landingZone.getKmsKey().arn()) + 32;
+      for (NotebookLifecycleConfiguration configuration :
+          landingZone.getNotebookLifecycleConfigurations()) {
+        size += 24 + arnSize(configuration.arn()) + stringSize(configuration.name());
+      }
+    }
+    return size;
+  }
+
+  private static long estimateRetainedSize(Metadata metadata) {
+    if (metadata == null) {
+      return 0;
+    }
+    long size = 40;
+    size += stringSize(metadata.getTenantAlias());
+    size += stringSize(metadata.getOrganizationId());
+    size += stringSize(metadata.getEnvironmentAlias());
+    size += stringSize(metadata.getAccountId());
+    size += stringSize(metadata.getMajorVersion());
+    for (Map.Entry<String, String> tag : metadata.getTagMap().entrySet()) {
+      size += 48 + stringSize(tag.getKey()) + stringSize(tag.getValue());
+    }
+    return size;
+  }
+
+  private static long arnSize(Arn arn) {
+    return arn == null ? 0 : 64 + 2L * stringSize(arn.toString());
+  }
+
+  private static long stringSize(String string) {
+    return string == null ? 0 : 40 + string.length();
+  }
+}
@@ -0,0 +1,275 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import software.amazon.awssdk.arns.Arn;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * Compact binary encoding of a discovered {@link Environment}, used to persist and restore
+ * snapshots without going back through the Avro configuration objects.
+ *
+ * <p>The encoding starts with a magic number and a format version, followed by the Environment's
+ * fields and then each of its Landing Zones. Strings are interned into a table as they are first
+ * written, so that values repeated across the Environment and its Landing Zones (tenant, account,
+ * tags and so on) are only stored once; later occurrences are written as a table index. Counts and
+ * string references are written as unsigned variable-length integers.
+ *
+ * <p>The format carries no schema: any change to the encoded fields must increment {@link
+ * #FORMAT_VERSION}, and snapshots written with a different version are rejected on read.
+ */
+final class EnvironmentSnapshotCodec {
+  private static final int MAGIC = 0x54454e56; // "TENV"
+  static final int FORMAT_VERSION = 1;
+
+  // String references: 0 is null, 1..n refer to the n strings already in the table, and n + 1
+  // introduces a new string, which follows in modified UTF-8.
+  private static final int NULL_REFERENCE = 0;
+
+  private EnvironmentSnapshotCodec() {}
+
+  /** Write the passed {@link Environment} to the passed stream, which is flushed but not closed. */
+  static void write(Environment environment, OutputStream outputStream) throws IOException {
+    DataOutputStream output = new DataOutputStream(outputStream);
+    output.writeInt(MAGIC);
+    output.writeByte(FORMAT_VERSION);
+    new Writer(output).writeEnvironment(environment);
+    output.flush();
+  }
+
+  /**
+   * Read an {@link Environment} previously written by {@link #write(Environment, OutputStream)}.
+   *
+   * @throws IOException if the stream is truncated, is not a snapshot, or was written using a
+   *     different format version
+   */
+  static Environment read(InputStream inputStream) throws IOException {
+    DataInputStream input = new DataInputStream(inputStream);
+    if (input.readInt() != MAGIC) {
+      throw new IOException("Not an environment snapshot.");
+    }
+    int formatVersion = input.readUnsignedByte();
+    if (formatVersion != FORMAT_VERSION) {
+      throw new IOException(
+          String.format(
+              "Unsupported environment snapshot format version %d (expected %d).",
+              formatVersion, FORMAT_VERSION));
+    }
+    try {
+      return new Reader(input).readEnvironment();
+    } catch (IllegalArgumentException | NullPointerException exception) {
+      // Raised by model validation or ARN parsing when the snapshot content is corrupt.
+      throw new IOException("Invalid environment snapshot content.", exception);
+    }
+  }
+
+  private static class Writer {
+    private final DataOutputStream output;
+    private final Map<String, Integer> stringTable = new HashMap<>();
+
+    Writer(DataOutputStream output) {
+      this.output = output;
+    }
+
+    void writeEnvironment(Environment environment) throws IOException {
+      writeString(environment.getApplicationInstanceProfileName().orElse(null));
+      writeMetadata(environment.getMetadata());
+      writeArn(environment.getWorkspaceManagerRoleArn());
+      writeArn(environment.getUserRoleArn());
+      writeArn(environment.getNotebookRoleArn());
+
+      List<Region> regions = new ArrayList<>(environment.getSupportedRegions());
+      regions.sort((first, second) -> first.id().compareTo(second.id()));
+      writeVarInt(regions.size());
+      for (Region region : regions) {
+        writeString(region.id());
+        writeLandingZone(environment.getLandingZone(region).orElseThrow());
+      }
+    }
+
+    void writeLandingZone(LandingZone landingZone) throws IOException {
+      writeString(landingZone.getApplicationVpcId().orElse(null));
+      writeString(landingZone.getApplicationVpcPrivateSubnetId().orElse(null));
+      writeMetadata(landingZone.getMetadata());
+
+      StorageBucket storageBucket = landingZone.getStorageBucket();
+      writeArn(storageBucket.arn());
+      writeString(storageBucket.name());
+
+      KmsKey kmsKey = landingZone.getKmsKey();
+      output.writeBoolean(kmsKey != null);
+      if (kmsKey != null) {
+        writeArn(kmsKey.arn());
+        output.writeLong(kmsKey.id().getMostSignificantBits());
+        output.writeLong(kmsKey.id().getLeastSignificantBits());
+      }
+
+      List<NotebookLifecycleConfiguration> configurations =
+          landingZone.getNotebookLifecycleConfigurations();
+      writeVarInt(configurations.size());
+      for (NotebookLifecycleConfiguration configuration : configurations) {
+        writeArn(configuration.arn());
+        writeString(configuration.name());
+      }
+    }
+
+    void writeMetadata(Metadata metadata) throws IOException {
+      output.writeBoolean(metadata != null);
+      if (metadata == null) {
+        return;
+      }
+      writeString(metadata.getTenantAlias());
+      writeString(metadata.getOrganizationId());
+      writeString(metadata.getEnvironmentAlias());
+      writeString(metadata.getAccountId());
+      writeString(metadata.getRegion().id());
+      writeString(metadata.getMajorVersion());
+
+      Map<String, String> tagMap = metadata.getTagMap();
+      writeVarInt(tagMap.size());
+      for (Map.Entry<String, String> tag : tagMap.entrySet()) {
+        writeString(tag.getKey());
+        writeString(tag.getValue());
+      }
+    }
+
+    void writeArn(Arn arn) throws IOException {
+      writeString(arn == null ? null : arn.toString());
+    }
+
+    void writeString(String value) throws IOException {
+      if (value == null) {
+        writeVarInt(NULL_REFERENCE);
+        return;
+      }
+      Integer index = stringTable.get(value);
+      if (index != null) {
+        writeVarInt(index + 1);
+        return;
+      }
+      stringTable.put(value, stringTable.size());
+      writeVarInt(stringTable.size());
+      output.writeUTF(value);
+    }
+
+    void writeVarInt(int value) throws IOException {
+      while ((value & ~0x7f) != 0) {
+        output.writeByte((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      output.writeByte(value);
+    }
+  }
+
+  private static class Reader {
+    private final DataInputStream input;
+    private final List<String> stringTable = new ArrayList<>();
+
+    Reader(DataInputStream input) {
+      this.input = input;
+    }
+
+    Environment readEnvironment() throws IOException {
+      Environment.Builder builder =
+          Environment.builder()
+              .applicationInstanceProfileName(readString())
+              .metadata(readMetadata())
+              .workspaceManagerRoleArn(readArn())
+              .userRoleArn(readArn())
+              .notebookRoleArn(readArn());
+
+      int landingZoneCount = readVarInt();
+      for (int i = 0; i < landingZoneCount; i++) {
+        Region region = Region.of(readString());
+        builder.addLandingZone(region, readLandingZone());
+      }
+      return builder.build();
+    }
+
+    LandingZone readLandingZone() throws IOException {
+      LandingZone.Builder builder =
+          LandingZone.builder()
+              .applicationVpcId(readString())
+              .applicationVpcPrivateSubnetId(readString())
+              .metadata(readMetadata())
+              .storageBucket(readArn(), readString());
+
+      if (input.readBoolean()) {
+        Arn arn = readArn();
+        builder.kmsKey(arn, new UUID(input.readLong(), input.readLong()));
+      }
+
+      int configurationCount = readVarInt();
+      for (int i = 0; i < configurationCount; i++) {
+        builder.addNotebookLifecycleConfiguration(readArn(), readString());
+      }
+      return builder.build();
+    }
+
+    Metadata readMetadata() throws IOException {
+      if (!input.readBoolean()) {
+        return null;
+      }
+      Metadata.Builder builder =
+          Metadata.builder()
+              .tenantAlias(readString())
+              .organizationId(readString())
+              .environmentAlias(readString())
+              .accountId(readString())
+              .region(Region.of(readString()))
+              .majorVersion(readString());
+
+      int tagCount = readVarInt();
+      Map<String, String> tagMap = new LinkedHashMap<>(tagCount * 2);
+      for (int i = 0; i < tagCount; i++) {
+        tagMap.put(readString(), readString());
+      }
+      return builder.tagMap(tagMap).build();
+    }
+
+    Arn readArn() throws IOException {
+      String arn = readString();
+      return arn == null ? null : Arn.fromString(arn);
+    }
+
+    String readString() throws IOException {
+      int reference = readVarInt();
+      if (reference == NULL_REFERENCE) {
+        return null;
+      }
+      if (reference <= stringTable.size()) {
+        return stringTable.get(reference - 1);
+      }
+      if (reference != stringTable.size() + 1) {
+        throw new IOException("Invalid string reference in environment snapshot.");
+      }
+      String value = input.readUTF();
+      stringTable.add(value);
+      return value;
+    }
+
+    int readVarInt() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = input.readUnsignedByte();
+        value |= (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          if (value < 0) {
+            break;
+          }
+          return value;
+        }
+      }
+      throw new IOException("Invalid variable-length integer in environment snapshot.");
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.IOException;
+import java.util.Optional;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * An {@link EnvironmentDiscovery} that falls back to a second discovery whenever the first fails
+ * (see {@link EnvironmentDiscovery#withFallback(EnvironmentDiscovery)}).
+ */
+final class FallbackEnvironmentDiscovery implements EnvironmentDiscovery {
+  private final EnvironmentDiscovery primary;
+  private final EnvironmentDiscovery fallback;
+
+  FallbackEnvironmentDiscovery(EnvironmentDiscovery primary, EnvironmentDiscovery fallback) {
+    if (primary == null || fallback == null) {
+      throw new IllegalArgumentException("Fallback environment discovery may not be null.");
+    }
+    this.primary = primary;
+    this.fallback = fallback;
+  }
+
+  /** A discovery performed on either layer. */
+  @FunctionalInterface
+  private interface Discovery<T> {
+    T discover(EnvironmentDiscovery environmentDiscovery) throws IOException;
+  }
+
+  private <T> T discover(Discovery<T> discovery) throws IOException {
+    try {
+      return discovery.discover(primary);
+    } catch (IOException | RuntimeException exception) {
+      try {
+        return discovery.discover(fallback);
+      } catch (IOException | RuntimeException fallbackException) {
+        exception.addSuppressed(fallbackException);
+        throw exception;
+      }
+    }
+  }
+
+  @Override
+  public Environment discoverEnvironment() throws IOException {
+    return discover(EnvironmentDiscovery::discoverEnvironment);
+  }
+
+  @Override
+  public Optional<LandingZone> discoverLandingZone(Region region) throws IOException {
+    return discover(environmentDiscovery -> environmentDiscovery.discoverLandingZone(region));
+  }
+
+  @Override
+  public Environment discoverEnvironmentOnly() throws IOException {
+    return discover(EnvironmentDiscovery::discoverEnvironmentOnly);
+  }
+}
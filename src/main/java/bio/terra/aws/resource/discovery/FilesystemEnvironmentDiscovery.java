@@ -3,11 +3,20 @@ package bio.terra.aws.resource.discovery;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32C;
 import software.amazon.awssdk.regions.Region;
 
 /**
@@ -30,15 +39,67 @@ import software.amazon.awssdk.regions.Region;
  *
  * <p>This example supports Landing Zones in two AWS regions: {@code eu-central-1} and {@code
  * us-east-1}; any number of AWS regions could be provided under the {@code landingzone} directory.
+ *
+ * <p>Any {@code config.json} file may be accompanied or replaced by a {@code config.avro} file in
+ * the same directory, containing the same configuration in Avro single-object encoding (see {@link
+ * SingleObjectConfiguration}), which is read in preference to {@code config.json}. Either file may
+ * be stored gzip-compressed, with a {@code .gz} suffix (see {@link ConfigurationCompression}).
+ *
+ * <p>If the {@code vM} directory contains a {@code bundle} file (see {@link ConfigurationBundle}),
+ * the configurations it holds are discovered in place of the individual configuration files, with a
+ * single read.
+ *
+ * <p>Files whose modification time and size are unchanged since they were last read are not read
+ * again, so that discovering an unchanged directory costs a directory listing and a {@code stat}
+ * per configuration file, and returns the previously discovered {@link Environment} as-is. On file
+ * systems with a coarse modification time, a file rewritten with the same size within the same
+ * clock tick would go unnoticed; with content hashing enabled (see {@link
+ * Builder#contentHashing(boolean)}), files modified too recently for their modification time to be
+ * trusted are read again until it can be, and a file that was rewritten with unchanged content (for
+ * example, by a ConfigMap update) is not parsed again.
  */
 public class FilesystemEnvironmentDiscovery extends AvroEnvironmentDiscovery {
 
   private static final String ENVIRONMENT_SUBDIRECTORY_NAME = "environment";
   private static final String LANDING_ZONE_SUBDIRECTORY_NAME = "landingzones";
   private static final String CONFIGURATION_FILE_NAME = "config.json";
+  private static final String BINARY_CONFIGURATION_FILE_NAME = "config.avro";
 
   private final Path basePath;
 
+  /**
+   * Configurations most recently read from each file, along with the modification time and size of
+   * the file when they were read. Files whose modification time and size are unchanged are not read
+   * or parsed again.
+   */
+  private final Map<Path, CachedConfiguration> configurationCache;
+
+  private record CachedConfiguration(
+      FileTime lastModifiedTime,
+      long size,
+      boolean racy,
+      long contentHash,
+      StoredConfiguration configuration) {}
+
+  /**
+   * How recently a file must have been modified, relative to the time it was read, for its
+   * modification time not to be trusted to reveal a later rewrite: the modification time
+   * granularity of the coarsest common file systems (FAT's is two seconds).
+   */
+  private static final long RACY_WINDOW_MILLIS = 2000;
+
+  /** Whether to hash the content of files read, to detect changes the modification time misses. */
+  private final boolean contentHashing;
+
+  /**
+   * The bundle most recently read, along with the modification time and size of the file when it
+   * was read, or null if there was none.
+   */
+  private volatile CachedBundle cachedBundle;
+
+  private record CachedBundle(
+      FileTime lastModifiedTime, long size, boolean racy, ConfigurationBundle bundle) {}
+
   /**
    * Construct a {@link FilesystemEnvironmentDiscovery} class from a local file system directory
    *
@@ -48,22 +109,251 @@ public class FilesystemEnvironmentDiscovery extends AvroEnvironmentDiscovery {
    *     documentation.
    */
   public FilesystemEnvironmentDiscovery(Path basePath) {
-    if (!Files.exists(basePath)) {
-      throw new NoSuchElementException(String.format("Base path '%s' does not exist!", basePath));
+    this(basePath, DiscoveryExecutors.defaultExecutor());
+  }
+
+  /**
+   * Construct a {@link FilesystemEnvironmentDiscovery} class from a local file system directory,
+   * reading files concurrently on the passed executor rather than the default (virtual threads
+   * where available)
+   *
+   * @param basePath the base path of a file system directory that contains the configuration
+   *     corresponding to a single Terra AWS Environment, which contains Avro configuration files
+   *     matching the layout described in the {@link FilesystemEnvironmentDiscovery} class
+   *     documentation.
+   * @param executor executor on which files are read and parsed concurrently
+   */
+  public FilesystemEnvironmentDiscovery(Path basePath, Executor executor) {
+    this(builder().basePath(basePath).executor(executor));
+  }
+
+  private FilesystemEnvironmentDiscovery(Builder builder) {
+    super(builder.executor);
+    if (builder.basePath == null) {
+      throw new IllegalArgumentException("Base path may not be null.");
+    }
+    if (!Files.exists(builder.basePath)) {
+      throw new NoSuchElementException(
+          String.format("Base path '%s' does not exist!", builder.basePath));
+    }
+    this.basePath = builder.basePath;
+    this.contentHashing = builder.contentHashing;
+    this.configurationCache = new ConcurrentHashMap<>();
+  }
+
+  /** Builder for class {@link FilesystemEnvironmentDiscovery} */
+  public static class Builder {
+    private Path basePath;
+    private Executor executor;
+    private boolean contentHashing;
+
+    private Builder() {
+      executor = DiscoveryExecutors.defaultExecutor();
+    }
+
+    /**
+     * Set the base path of a file system directory that contains the configuration corresponding to
+     * a single Terra AWS Environment, matching the layout described in the {@link
+     * FilesystemEnvironmentDiscovery} class documentation
+     */
+    public Builder basePath(Path basePath) {
+      this.basePath = basePath;
+      return this;
+    }
+
+    /**
+     * Set the executor on which files are read and parsed concurrently; by default virtual threads
+     * where available
+     */
+    public Builder executor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Set whether to hash the content of configuration files, so that files rewritten within the
+     * modification time granularity of the file system are noticed, and files rewritten with
+     * unchanged content are not parsed again; disabled by default
+     */
+    public Builder contentHashing(boolean contentHashing) {
+      this.contentHashing = contentHashing;
+      return this;
+    }
+
+    /** Build the {@link FilesystemEnvironmentDiscovery} instance */
+    public FilesystemEnvironmentDiscovery build() {
+      return new FilesystemEnvironmentDiscovery(this);
+    }
+  }
+
+  /** Get a {@link Builder} for {@link FilesystemEnvironmentDiscovery} */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Whether a file's modification time is too close to the time it was read to be trusted to reveal
+   * a later rewrite, when content hashing is enabled.
+   */
+  private boolean isRacy(BasicFileAttributes attributes, long readTimeMillis) {
+    return contentHashing
+        && attributes.lastModifiedTime().toMillis() > readTimeMillis - RACY_WINDOW_MILLIS;
+  }
+
+  /** Hash the remaining content of a buffer, without consuming it. */
+  private static long hash(ByteBuffer content) {
+    CRC32C crc = new CRC32C();
+    crc.update(content.duplicate());
+    return crc.getValue();
+  }
+
+  private StoredConfiguration readIntoConfiguration(
+      Path path, BasicFileAttributes attributes, long readTimeMillis, ObjectMapper mapper)
+      throws IOException {
+    CachedConfiguration cached = configurationCache.get(path);
+    if (cached != null
+        && !cached.racy()
+        && cached.lastModifiedTime().equals(attributes.lastModifiedTime())
+        && cached.size() == attributes.size()) {
+      return cached.configuration();
     }
-    this.basePath = basePath;
+
+    // Read into a pooled direct buffer, so that content found to be unchanged is never copied.
+    ByteBuffer storedContent = ConfigurationBuffers.acquire(path);
+    StoredConfiguration configuration;
+    long contentHash;
+    int size = storedContent.remaining();
+    try {
+      contentHash = contentHashing ? hash(storedContent) : 0;
+      if (contentHashing
+          && cached != null
+          && cached.size() == size
+          && cached.contentHash() == contentHash) {
+        // Rewritten with the same content: keep the configuration already parsed.
+        configuration = cached.configuration();
+      } else {
+        String fileName = path.getFileName().toString();
+        // The configuration retains its content, which is copied onto the heap only once:
+        // compressed content is decompressed straight from the buffer.
+        byte[] content =
+            ConfigurationCompression.decompress(
+                storedContent, fileName.endsWith(ConfigurationCompression.GZIP_SUFFIX));
+        configuration =
+            ConfigurationCompression.stripSuffix(fileName).equals(BINARY_CONFIGURATION_FILE_NAME)
+                ? new SingleObjectConfiguration(content)
+                : new AvroConfiguration(content, mapper.getFactory());
+      }
+    } finally {
+      ConfigurationBuffers.release(storedContent);
+    }
+    configurationCache.put(
+        path,
+        new CachedConfiguration(
+            attributes.lastModifiedTime(),
+            size,
+            isRacy(attributes, readTimeMillis),
+            contentHash,
+            configuration));
+    return configuration;
   }
 
-  private AvroConfiguration readIntoConfiguration(Path path, ObjectMapper mapper)
+  /**
+   * Read the bundle file, reusing the previously read bundle if the file's modification time and
+   * size are unchanged.
+   *
+   * @return the bundle, or null if there is no bundle file
+   */
+  private ConfigurationBundle readBundle() throws IOException {
+    Path bundlePath = getVersionSubdirectoryPath().resolve(ConfigurationBundle.BUNDLE_NAME);
+    long readTimeMillis = System.currentTimeMillis();
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(bundlePath, BasicFileAttributes.class);
+    } catch (NoSuchFileException exception) {
+      cachedBundle = null;
+      return null;
+    }
+
+    CachedBundle cached = cachedBundle;
+    if (cached != null
+        && !cached.racy()
+        && cached.lastModifiedTime().equals(attributes.lastModifiedTime())
+        && cached.size() == attributes.size()) {
+      return cached.bundle();
+    }
+
+    // Entries with unchanged content are shared with the previous bundle, and not parsed again.
+    // The bundle is parsed in place, off-heap, copying only the entries that changed. Mapping a
+    // file costs more than reading it, so only large bundles are mapped.
+    boolean mapped = attributes.size() > ConfigurationBuffers.MINIMUM_MAPPED_SIZE;
+    ByteBuffer content =
+        mapped ? ConfigurationBuffers.map(bundlePath) : ConfigurationBuffers.acquire(bundlePath);
+    int size = content.remaining();
+    ConfigurationBundle bundle;
+    try {
+      bundle =
+          ConfigurationBundle.read(
+              content, getObjectMapper().getFactory(), cached == null ? null : cached.bundle());
+    } catch (InternalError error) {
+      throw new IOException(
+          String.format("Bundle file '%s' was truncated while it was read.", bundlePath), error);
+    } finally {
+      if (!mapped) {
+        ConfigurationBuffers.release(content);
+      }
+    }
+    cachedBundle =
+        new CachedBundle(
+            attributes.lastModifiedTime(), size, isRacy(attributes, readTimeMillis), bundle);
+    return bundle;
+  }
+
+  /**
+   * Read the configuration stored in a directory, preferring its binary encoding (see {@link
+   * AvroEnvironmentDiscovery#selectConfiguration}).
+   *
+   * @return the configuration, or null if the directory contains neither configuration file
+   */
+  private StoredConfiguration readDirectoryConfiguration(Path directory, ObjectMapper mapper)
       throws IOException {
-    return mapper.readValue(Files.readString(path), AvroConfiguration.class);
+    // List the directory once, rather than probing for each possible file name.
+    Map<String, Path> files = new HashMap<>();
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+      paths.forEach(path -> files.put(path.getFileName().toString(), path));
+    } catch (NoSuchFileException | NotDirectoryException exception) {
+      return null;
+    }
+    Path binaryPath = findConfigurationFile(files, BINARY_CONFIGURATION_FILE_NAME);
+    Path jsonPath = findConfigurationFile(files, CONFIGURATION_FILE_NAME);
+    return selectConfiguration(
+        binaryPath != null ? () -> readConfigurationFile(binaryPath, mapper) : null,
+        jsonPath != null ? () -> readConfigurationFile(jsonPath, mapper) : null);
   }
 
-  private Path getVersionSubdirectoryPath() {
+  /**
+   * Private helper to find a configuration file among the files of a directory, uncompressed or
+   * compressed.
+   *
+   * @return the path of the file, or null if it does not exist
+   */
+  private static Path findConfigurationFile(Map<String, Path> files, String fileName) {
+    Path path = files.get(fileName);
+    return path != null ? path : files.get(fileName + ConfigurationCompression.GZIP_SUFFIX);
+  }
+
+  /** Private helper to read a configuration file, unless it is unchanged since it was last read. */
+  private StoredConfiguration readConfigurationFile(Path path, ObjectMapper mapper)
+      throws IOException {
+    long readTimeMillis = System.currentTimeMillis();
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    return readIntoConfiguration(path, attributes, readTimeMillis, mapper);
+  }
+
+  Path getVersionSubdirectoryPath() {
     return basePath.resolve(String.format("v%d", SCHEMA_MAJOR_VERSION));
   }
 
-  private Path getEnvironmentSubdirectoryPath() {
+  Path getEnvironmentSubdirectoryPath() {
     return getVersionSubdirectoryPath().resolve(ENVIRONMENT_SUBDIRECTORY_NAME);
   }
 
@@ -71,28 +361,67 @@ public class FilesystemEnvironmentDiscovery extends AvroEnvironmentDiscovery {
     return getEnvironmentSubdirectoryPath().resolve(CONFIGURATION_FILE_NAME);
   }
 
-  private Path getLandingZoneSubdirectoryPath() {
+  Path getLandingZoneSubdirectoryPath() {
     return getVersionSubdirectoryPath().resolve(LANDING_ZONE_SUBDIRECTORY_NAME);
   }
 
+  /**
+   * Discover the Environment from the bundle file if there is one, and otherwise from the
+   * individual configuration files.
+   */
+  @Override
+  public Environment discoverEnvironment() throws IOException {
+    ConfigurationBundle bundle = readBundle();
+    if (bundle == null) {
+      return super.discoverEnvironment();
+    }
+    return discoverEnvironment(
+        bundle::getEnvironmentConfiguration, bundle::getLandingZoneConfigurations);
+  }
+
   @Override
-  protected AvroConfiguration getEnvironmentConfiguration(ObjectMapper mapper) throws IOException {
-    Path environmentConfigurationFilePath = getEnvironmentConfigurationFilePath();
+  protected StoredConfiguration getEnvironmentConfiguration(ObjectMapper mapper)
+      throws IOException {
+    StoredConfiguration configuration =
+        readDirectoryConfiguration(getEnvironmentSubdirectoryPath(), mapper);
 
-    if (Files.notExists(environmentConfigurationFilePath)) {
+    if (configuration == null) {
       throw new NoSuchElementException(
           String.format(
               "Environment configuration file '%s' does not exist",
-              environmentConfigurationFilePath));
+              getEnvironmentConfigurationFilePath()));
     }
 
-    return readIntoConfiguration(environmentConfigurationFilePath, mapper);
+    return configuration;
+  }
+
+  @Override
+  protected StoredConfiguration getEnvironmentConfigurationOnly(ObjectMapper mapper)
+      throws IOException {
+    ConfigurationBundle bundle = readBundle();
+    return bundle == null
+        ? getEnvironmentConfiguration(mapper)
+        : bundle.getEnvironmentConfiguration();
+  }
+
+  /** Read the configuration of a single Landing Zone from its directory, listing no other. */
+  @Override
+  protected StoredConfiguration getLandingZoneConfiguration(Region region, ObjectMapper mapper)
+      throws IOException {
+    ConfigurationBundle bundle = readBundle();
+    if (bundle != null) {
+      return bundle.getLandingZoneConfiguration(region);
+    }
+    Path regionDirectory = getLandingZoneSubdirectoryPath().resolve(region.id());
+    return Region.regions().contains(region) && Files.isDirectory(regionDirectory)
+        ? readDirectoryConfiguration(regionDirectory, mapper)
+        : null;
   }
 
   @Override
-  protected Map<Region, AvroConfiguration> getLandingZoneConfigurations(ObjectMapper mapper)
+  protected Map<Region, StoredConfiguration> getLandingZoneConfigurations(ObjectMapper mapper)
       throws IOException {
-    HashMap<Region, AvroConfiguration> retVal = new HashMap<>();
+    Map<Region, Path> regionDirectories = new HashMap<>();
 
     File landingZoneBaseDirectory = getLandingZoneSubdirectoryPath().toFile();
 
@@ -100,7 +429,7 @@ public class FilesystemEnvironmentDiscovery extends AvroEnvironmentDiscovery {
 
     // File.listFiles() returns NULL if the file does not exist OR is not a directory.
     if (regionFiles == null) {
-      return retVal;
+      return new HashMap<>();
     }
 
     for (File regionDirectory : regionFiles) {
@@ -113,14 +442,24 @@ public class FilesystemEnvironmentDiscovery extends AvroEnvironmentDiscovery {
         continue;
       }
 
-      Path landingZoneConfigurationFilePath =
-          regionDirectory.toPath().resolve(CONFIGURATION_FILE_NAME);
-
-      if (Files.exists(landingZoneConfigurationFilePath)) {
-        retVal.put(currentRegion, readIntoConfiguration(landingZoneConfigurationFilePath, mapper));
-      }
+      regionDirectories.put(currentRegion, regionDirectory.toPath());
     }
 
+    // Read the configurations of all regions concurrently; regions whose directory contains no
+    // configuration file are omitted.
+    Map<Region, StoredConfiguration> retVal =
+        forEachRegion(
+            regionDirectories.keySet(),
+            region -> readDirectoryConfiguration(regionDirectories.get(region), mapper));
+
+    // Forget configurations for Landing Zones that no longer exist.
+    configurationCache
+        .keySet()
+        .removeIf(
+            path ->
+                path.startsWith(getLandingZoneSubdirectoryPath())
+                    && !retVal.containsKey(Region.of(path.getParent().getFileName().toString())));
+
     return retVal;
   }
 }
@@ -0,0 +1,31 @@
+package bio.terra.aws.resource.discovery;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * Maps AWS regions to small, dense integer ordinals, so that an {@link Environment} holds its
+ * Landing Zones in a consistent order, whichever order they were added in.
+ *
+ * <p>The regions known to the AWS SDK are assigned ordinals up front, in the order of {@link
+ * Region#regions()}. Any other region is assigned the next free ordinal the first time an
+ * Environment is built with a Landing Zone in it; looking a Landing Zone up never assigns an
+ * ordinal, so lookups of arbitrary regions do not grow the table.
+ */
+final class RegionOrdinals {
+  private static final Map<Region, Integer> ordinals = new ConcurrentHashMap<>();
+  private static final AtomicInteger nextOrdinal = new AtomicInteger();
+
+  static {
+    Region.regions().forEach(RegionOrdinals::assign);
+  }
+
+  private RegionOrdinals() {}
+
+  /** Get the ordinal of a region, assigning it the next free ordinal if it has none yet. */
+  static int assign(Region region) {
+    return ordinals.computeIfAbsent(region, unused -> nextOrdinal.getAndIncrement());
+  }
+}
@@ -0,0 +1,339 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Hedging of storage requests, to cut the tail latency of discovery.
+ *
+ * <p>A discovery waits for the reads of every one of its configurations, so its latency is the
+ * maximum of several request latencies, and the storage service's tail latency becomes the
+ * discovery's typical latency. With hedging, a request that has not completed after a delay (the
+ * configured percentile of recent request latencies) is duplicated, and whichever attempt completes
+ * first is used; the other is abandoned. Requests that fail before the delay are not hedged. Once a
+ * hedge has been sent, the request fails only when both attempts have failed: if the original
+ * attempt fails before the executor has started the hedge, the hedge is started immediately.
+ *
+ * <p>The number of duplicate requests is capped by a budget, as a fraction of requests: each
+ * request earns that fraction of a hedge, and each hedge spends one, so that hedging cannot amplify
+ * load by more than the budget even when the service as a whole slows down.
+ *
+ * <p>Instances are thread-safe, and may be shared by several discoveries of the same storage, so
+ * that they share latency samples and budget.
+ */
+public final class RequestHedging {
+  private static final int SAMPLE_COUNT = 256;
+  private static final int MINIMUM_SAMPLE_COUNT = 16;
+  private static final int SAMPLES_PER_DELAY_UPDATE = 16;
+  private static final double MAXIMUM_BUDGET_BALANCE = 10;
+
+  private final double percentile;
+  private final double budget;
+  private final long minimumDelayNanos;
+
+  /** Ring buffer of recent request latencies, in nanoseconds; guarded by this. */
+  private final long[] latencySamples;
+
+  /** Number of latencies ever recorded; guarded by this. */
+  private long recordedCount;
+
+  /** Hedges that may currently be sent; guarded by this. */
+  private double budgetBalance;
+
+  private volatile long hedgeDelayNanos;
+
+  private final LongAdder requestCount;
+  private final LongAdder hedgeCount;
+  private final LongAdder hedgeWinCount;
+
+  private RequestHedging(Builder builder) {
+    if (!(builder.percentile > 0 && builder.percentile < 1)) {
+      throw new IllegalArgumentException("Hedging percentile must be in the range (0, 1).");
+    }
+    if (!(builder.budget >= 0) || Double.isInfinite(builder.budget)) {
+      throw new IllegalArgumentException("Hedging budget must be non-negative and finite.");
+    }
+    if (builder.initialDelay.isNegative() || builder.minimumDelay.isNegative()) {
+      throw new IllegalArgumentException("Hedging delays must be non-negative.");
+    }
+    this.percentile = builder.percentile;
+    this.budget = builder.budget;
+    this.minimumDelayNanos = builder.minimumDelay.toNanos();
+    this.latencySamples = new long[SAMPLE_COUNT];
+    this.hedgeDelayNanos = Math.max(builder.initialDelay.toNanos(), minimumDelayNanos);
+    this.requestCount = new LongAdder();
+    this.hedgeCount = new LongAdder();
+    this.hedgeWinCount = new LongAdder();
+  }
+
+  /** Builder for class {@link RequestHedging} */
+  public static class Builder {
+    private double percentile;
+    private double budget;
+    private Duration initialDelay;
+    private Duration minimumDelay;
+
+    private Builder() {
+      percentile = 0.95;
+      budget = 0.05;
+      initialDelay = Duration.ofMillis(100);
+      minimumDelay = Duration.ofMillis(5);
+    }
+
+    /**
+     * Set the percentile of recent request latencies after which a request is hedged, as a
+     * fraction; by default 0.95
+     */
+    public Builder percentile(double percentile) {
+      this.percentile = percentile;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of hedges, as a fraction of the number of requests; by default 0.05
+     */
+    public Builder budget(double budget) {
+      this.budget = budget;
+      return this;
+    }
+
+    /**
+     * Set the delay after which requests are hedged until enough latencies have been observed to
+     * estimate the percentile; by default 100 milliseconds
+     */
+    public Builder initialDelay(Duration initialDelay) {
+      this.initialDelay = initialDelay;
+      return this;
+    }
+
+    /** Set the minimum delay after which a request is hedged; by default 5 milliseconds */
+    public Builder minimumDelay(Duration minimumDelay) {
+      this.minimumDelay = minimumDelay;
+      return this;
+    }
+
+    /** Build the {@link RequestHedging} instance */
+    public RequestHedging build() {
+      return new RequestHedging(this);
+    }
+  }
+
+  /** Get a {@link Builder} for {@link RequestHedging} */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Hedging usage counts.
+   *
+   * @param requestCount number of requests made, not counting hedges
+   * @param hedgeCount number of hedges sent
+   * @param hedgeWinCount number of hedges that completed before the request they duplicated
+   */
+  public record Statistics(long requestCount, long hedgeCount, long hedgeWinCount) {}
+
+  /** Get the usage counts of this instance */
+  public Statistics getStatistics() {
+    return new Statistics(requestCount.sum(), hedgeCount.sum(), hedgeWinCount.sum());
+  }
+
+  /** Get the delay after which a request is currently hedged. */
+  Duration getHedgeDelay() {
+    return Duration.ofNanos(hedgeDelayNanos);
+  }
+
+  /** The state of a single request, shared by its attempts. */
+  private static final class HedgedRequest<T> {
+    private final Supplier<T> request;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+
+    /** Attempts that are scheduled or running and have not failed, starting with the original. */
+    private final AtomicInteger outstandingCount = new AtomicInteger(1);
+
+    /** The hedge, once scheduled. */
+    private volatile Attempt<T> hedge;
+
+    /**
+     * Set by the first attempt to succeed, before it completes the result, so that its statistics
+     * are recorded by the time the caller returns.
+     */
+    private final AtomicBoolean succeeded = new AtomicBoolean();
+
+    private HedgedRequest(Supplier<T> request) {
+      this.request = request;
+    }
+
+    /**
+     * Fail the request if no other attempt is outstanding; otherwise, start the hedge on this
+     * thread if the executor has not started it yet, rather than abandon the request to the queue.
+     */
+    private void attemptFailed(Throwable failure) {
+      if (outstandingCount.decrementAndGet() == 0) {
+        result.completeExceptionally(failure);
+        return;
+      }
+      Attempt<T> scheduledHedge = hedge;
+      if (scheduledHedge != null) {
+        scheduledHedge.run();
+      }
+    }
+  }
+
+  /** An attempt at a request, run at most once, either by the executor or by the calling thread. */
+  private final class Attempt<T> implements Runnable {
+    private final HedgedRequest<T> hedgedRequest;
+    private final boolean hedge;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    Attempt(HedgedRequest<T> hedgedRequest, boolean hedge) {
+      this.hedgedRequest = hedgedRequest;
+      this.hedge = hedge;
+    }
+
+    boolean isStarted() {
+      return started.get();
+    }
+
+    @Override
+    public void run() {
+      // Another attempt may already have completed the request.
+      if (hedgedRequest.result.isDone() || !started.compareAndSet(false, true)) {
+        return;
+      }
+      long startNanos = System.nanoTime();
+      T value;
+      try {
+        value = hedgedRequest.request.get();
+      } catch (Throwable failure) {
+        hedgedRequest.attemptFailed(failure);
+        return;
+      }
+      recordLatency(System.nanoTime() - startNanos);
+      if (hedgedRequest.succeeded.compareAndSet(false, true)) {
+        if (hedge) {
+          hedgeWinCount.increment();
+        }
+        hedgedRequest.result.complete(value);
+      }
+    }
+  }
+
+  /**
+   * Make a request, hedging it if it has not completed after the hedge delay.
+   *
+   * @param request the request, which must be idempotent
+   * @param executor executor on which the request and its hedge are made; if the executor does not
+   *     start the request before the hedge delay, it is made by the calling thread instead, without
+   *     hedging
+   * @return the result of the first attempt to complete successfully
+   * @throws InterruptedIOException if interrupted while waiting for the request
+   * @throws RuntimeException the failure of the request, as thrown, if every attempt failed
+   */
+  <T> T call(Supplier<T> request, Executor executor) throws InterruptedIOException {
+    requestCount.increment();
+    earnBudget();
+
+    HedgedRequest<T> hedgedRequest = new HedgedRequest<>(request);
+    CompletableFuture<T> result = hedgedRequest.result;
+    Attempt<T> primary = new Attempt<>(hedgedRequest, false);
+    if (!execute(primary, executor)) {
+      primary.run();
+      return getResult(result);
+    }
+
+    try {
+      return getResult(result, hedgeDelayNanos);
+    } catch (TimeoutException exception) {
+      if (!primary.isStarted()) {
+        // The executor is saturated: make the request on this thread instead.
+        primary.run();
+      } else if (!result.isDone() && spendBudget()) {
+        hedgeCount.increment();
+        Attempt<T> hedge = new Attempt<>(hedgedRequest, true);
+        // Publish the hedge before counting it, so that an attempt failing once it is counted
+        // finds it to start.
+        hedgedRequest.hedge = hedge;
+        hedgedRequest.outstandingCount.incrementAndGet();
+        if (!execute(hedge, executor)) {
+          hedge.run();
+        }
+      }
+    }
+    return getResult(result);
+  }
+
+  private static boolean execute(Runnable attempt, Executor executor) {
+    try {
+      executor.execute(attempt);
+      return true;
+    } catch (RejectedExecutionException exception) {
+      return false;
+    }
+  }
+
+  private static <T> T getResult(CompletableFuture<T> result) throws InterruptedIOException {
+    try {
+      return getResult(result, Long.MAX_VALUE);
+    } catch (TimeoutException exception) {
+      throw new IllegalStateException(exception);
+    }
+  }
+
+  private static <T> T getResult(CompletableFuture<T> result, long timeoutNanos)
+      throws InterruptedIOException, TimeoutException {
+    try {
+      return result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a request.");
+    } catch (ExecutionException exception) {
+      Throwable cause = exception.getCause();
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (cause instanceof Error error) {
+        throw error;
+      }
+      throw new CompletionException(cause);
+    }
+  }
+
+  private synchronized void earnBudget() {
+    budgetBalance = Math.min(budgetBalance + budget, MAXIMUM_BUDGET_BALANCE);
+  }
+
+  private synchronized boolean spendBudget() {
+    if (budgetBalance < 1) {
+      return false;
+    }
+    budgetBalance -= 1;
+    return true;
+  }
+
+  /**
+   * Private helper to record the latency of a successful attempt, periodically updating the hedge
+   * delay to the configured percentile of the recorded latencies.
+   */
+  private synchronized void recordLatency(long latencyNanos) {
+    latencySamples[(int) (recordedCount % SAMPLE_COUNT)] = latencyNanos;
+    recordedCount++;
+    if (recordedCount >= MINIMUM_SAMPLE_COUNT && recordedCount % SAMPLES_PER_DELAY_UPDATE == 0) {
+      long[] sorted = Arrays.copyOf(latencySamples, (int) Math.min(recordedCount, SAMPLE_COUNT));
+      Arrays.sort(sorted);
+      long percentileNanos = sorted[(int) Math.floor(percentile * (sorted.length - 1))];
+      hedgeDelayNanos = Math.max(percentileNanos, minimumDelayNanos);
+    }
+  }
+}
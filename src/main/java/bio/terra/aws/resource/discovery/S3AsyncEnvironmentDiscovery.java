@@ -0,0 +1,532 @@
+package bio.terra.aws.resource.discovery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Discovers a Single Terra Environment represented by an AWS S3 Bucket, with the layout described
+ * in {@link S3EnvironmentDiscovery}, using an {@link S3AsyncClient}.
+ *
+ * <p>{@link #discoverEnvironmentAsync()} performs discovery without blocking any thread: the
+ * Environment and Landing Zone prefixes are listed concurrently, each listing is followed by
+ * concurrent GETs of the configuration objects it found, and each configuration is parsed on the
+ * discovery's executor as soon as it has been read. As with {@link S3EnvironmentDiscovery}, objects
+ * whose ETags are unchanged since they were last read are neither fetched nor parsed again, and
+ * buckets holding a manifest or a bundle are discovered from them.
+ *
+ * <p>The bucket is not checked for existence at construction, which would require a request; if it
+ * does not exist, discovery fails with a {@link NoSuchElementException}.
+ *
+ * <p>This class also implements the blocking {@link EnvironmentDiscovery#discoverEnvironment()}, so
+ * that it can be used wherever an {@link EnvironmentDiscovery} is expected (for example, with
+ * {@link CachedEnvironmentDiscovery}).
+ */
+public class S3AsyncEnvironmentDiscovery extends AvroEnvironmentDiscovery {
+
+  private final S3AsyncClient s3AsyncClient;
+
+  /**
+   * Configurations most recently read from each object key; unchanged objects are not downloaded or
+   * parsed again.
+   */
+  private final S3ConfigurationCache configurationCache;
+
+  /** Builds the requests made to the bucket, and handles their responses. */
+  private final S3ConfigurationRequests requests;
+
+  /**
+   * Construct a {@link S3AsyncEnvironmentDiscovery} class from an S3 Bucket
+   *
+   * @param bucketName the name of the AWS S3 bucket that contains the configuration corresponding
+   *     to a single Terra AWS Environment, which contains Avro configuration objects matching the
+   *     layout described in the {@link S3EnvironmentDiscovery} class documentation.
+   * @param s3AsyncClient an {@link S3AsyncClient} instance credentialed to read {@param bucketName}
+   */
+  public S3AsyncEnvironmentDiscovery(String bucketName, S3AsyncClient s3AsyncClient) {
+    this(bucketName, s3AsyncClient, DiscoveryExecutors.defaultExecutor());
+  }
+
+  /**
+   * Construct a {@link S3AsyncEnvironmentDiscovery} class from an S3 Bucket, parsing configurations
+   * on the passed executor rather than the default (virtual threads where available)
+   *
+   * @param bucketName the name of the AWS S3 bucket that contains the configuration corresponding
+   *     to a single Terra AWS Environment, which contains Avro configuration objects matching the
+   *     layout described in the {@link S3EnvironmentDiscovery} class documentation.
+   * @param s3AsyncClient an {@link S3AsyncClient} instance credentialed to read {@param bucketName}
+   * @param executor executor on which configurations are parsed
+   */
+  public S3AsyncEnvironmentDiscovery(
+      String bucketName, S3AsyncClient s3AsyncClient, Executor executor) {
+    super(executor);
+    this.s3AsyncClient = s3AsyncClient;
+    configurationCache =
+        new S3ConfigurationCache(S3ConfigurationCache.DEFAULT_ABSENT_OBJECT_RECHECK_INTERVAL);
+    requests = new S3ConfigurationRequests(bucketName, configurationCache, getObjectMapper());
+  }
+
+  /**
+   * Discover the Environment without blocking the calling thread.
+   *
+   * @return a future completing with the discovered Environment, or failing with the exception that
+   *     {@link #discoverEnvironment()} would throw
+   */
+  public CompletableFuture<Environment> discoverEnvironmentAsync() {
+    if (configurationCache.isBundleAbsent()) {
+      // As for S3EnvironmentDiscovery, check again for a bundle concurrently, once per recheck
+      // interval, for the benefit of the following discovery.
+      if (configurationCache.tryStartBundleRecheck()) {
+        readBundle().exceptionally(failure -> null);
+      }
+      return discoverWithoutBundleAsync();
+    }
+
+    return readBundle()
+        .thenCompose(
+            bundle -> bundle == null ? discoverWithoutBundleAsync() : discoverBundleAsync(bundle));
+  }
+
+  /** Private helper to discover the Environment from the manifest, or by listing the bucket. */
+  private CompletableFuture<Environment> discoverWithoutBundleAsync() {
+    if (configurationCache.isManifestAbsent()) {
+      if (configurationCache.tryStartManifestRecheck()) {
+        readManifest().exceptionally(failure -> null);
+      }
+      return discoverEnvironmentAsync(
+          readEnvironmentConfiguration(), readLandingZoneConfigurations());
+    }
+
+    return readManifest()
+        .thenCompose(
+            manifest -> {
+              if (manifest == null) {
+                return discoverEnvironmentAsync(
+                    readEnvironmentConfiguration(), readLandingZoneConfigurations());
+              }
+              Map<Region, CompletableFuture<StoredConfiguration>> landingZoneConfigurations =
+                  new HashMap<>();
+              manifest
+                  .getLandingZoneEntries()
+                  .forEach(
+                      (region, entry) ->
+                          landingZoneConfigurations.put(
+                              region, readIntoConfiguration(entry.key(), entry.eTag(), entry)));
+              ConfigurationManifest.Entry environmentEntry = manifest.environment();
+              return discoverEnvironmentAsync(
+                  readIntoConfiguration(
+                      environmentEntry.key(), environmentEntry.eTag(), environmentEntry),
+                  CompletableFuture.completedFuture(landingZoneConfigurations));
+            });
+  }
+
+  /** Private helper to discover the Environment from the configurations held in a bundle. */
+  private CompletableFuture<Environment> discoverBundleAsync(ConfigurationBundle bundle) {
+    CompletableFuture<StoredConfiguration> environmentConfiguration = new CompletableFuture<>();
+    try {
+      environmentConfiguration.complete(bundle.getEnvironmentConfiguration());
+    } catch (IOException | RuntimeException exception) {
+      environmentConfiguration.completeExceptionally(exception);
+    }
+
+    CompletableFuture<Map<Region, CompletableFuture<StoredConfiguration>>>
+        landingZoneConfigurations = new CompletableFuture<>();
+    try {
+      Map<Region, CompletableFuture<StoredConfiguration>> configurations = new HashMap<>();
+      bundle
+          .getLandingZoneConfigurations()
+          .forEach(
+              (region, configuration) ->
+                  configurations.put(region, CompletableFuture.completedFuture(configuration)));
+      landingZoneConfigurations.complete(configurations);
+    } catch (IOException | RuntimeException exception) {
+      landingZoneConfigurations.completeExceptionally(exception);
+    }
+
+    return discoverEnvironmentAsync(environmentConfiguration, landingZoneConfigurations);
+  }
+
+  @Override
+  public Environment discoverEnvironment() throws IOException {
+    return join(discoverEnvironmentAsync());
+  }
+
+  @Override
+  protected StoredConfiguration getEnvironmentConfiguration(ObjectMapper mapper)
+      throws IOException {
+    return join(readEnvironmentConfiguration());
+  }
+
+  @Override
+  protected Map<Region, StoredConfiguration> getLandingZoneConfigurations(ObjectMapper mapper)
+      throws IOException {
+    Map<Region, CompletableFuture<StoredConfiguration>> futures =
+        join(readLandingZoneConfigurations());
+    return forEachRegion(futures.keySet(), region -> join(futures.get(region)));
+  }
+
+  /**
+   * Read the Environment configuration alone, as {@link S3EnvironmentDiscovery} does: from the
+   * bundle or manifest if the bucket has one, and otherwise from the object it was last read from,
+   * without listing.
+   */
+  @Override
+  protected StoredConfiguration getEnvironmentConfigurationOnly(ObjectMapper mapper)
+      throws IOException {
+    return join(
+        readSelectively(
+            ConfigurationBundle::getEnvironmentConfiguration,
+            manifest -> {
+              ConfigurationManifest.Entry entry = manifest.environment();
+              return readIntoConfiguration(entry.key(), entry.eTag(), entry);
+            },
+            () ->
+                readFolderConfiguration(S3ConfigurationLayout.getEnvironmentPrefix())
+                    .thenApply(this::requireEnvironmentConfiguration)));
+  }
+
+  /**
+   * Read the configuration of a single Landing Zone, as {@link S3EnvironmentDiscovery} does: from
+   * the bundle or manifest if the bucket has one, and otherwise from the object it was last read
+   * from, without listing.
+   */
+  @Override
+  protected StoredConfiguration getLandingZoneConfiguration(Region region, ObjectMapper mapper)
+      throws IOException {
+    if (!Region.regions().contains(region)) {
+      return null;
+    }
+    return join(
+        readSelectively(
+            bundle -> bundle.getLandingZoneConfiguration(region),
+            manifest -> {
+              ConfigurationManifest.Entry entry = manifest.getLandingZoneEntries().get(region);
+              return entry == null
+                  ? CompletableFuture.completedFuture(null)
+                  : readIntoConfiguration(entry.key(), entry.eTag(), entry);
+            },
+            () -> readFolderConfiguration(S3ConfigurationLayout.getLandingZonePrefix(region))));
+  }
+
+  /** Reads a configuration from a {@link ConfigurationBundle}. */
+  @FunctionalInterface
+  private interface BundleReader {
+    StoredConfiguration read(ConfigurationBundle bundle) throws IOException;
+  }
+
+  /**
+   * Private helper to read a single configuration from the bundle if the bucket has one, otherwise
+   * from the manifest if it has one, and otherwise from the bucket's folders.
+   */
+  private CompletableFuture<StoredConfiguration> readSelectively(
+      BundleReader bundleReader,
+      Function<ConfigurationManifest, CompletableFuture<StoredConfiguration>> manifestReader,
+      Supplier<CompletableFuture<StoredConfiguration>> folderReader) {
+    CompletableFuture<ConfigurationBundle> bundle =
+        configurationCache.isBundleAbsent()
+            ? CompletableFuture.completedFuture(null)
+            : readBundle();
+    return bundle.thenCompose(
+        currentBundle -> {
+          if (currentBundle != null) {
+            try {
+              return CompletableFuture.completedFuture(bundleReader.read(currentBundle));
+            } catch (IOException exception) {
+              return CompletableFuture.failedFuture(exception);
+            }
+          }
+          CompletableFuture<ConfigurationManifest> manifest =
+              configurationCache.isManifestAbsent()
+                  ? CompletableFuture.completedFuture(null)
+                  : readManifest();
+          return manifest.thenCompose(
+              currentManifest ->
+                  currentManifest != null
+                      ? manifestReader.apply(currentManifest)
+                      : folderReader.get());
+        });
+  }
+
+  private CompletableFuture<StoredConfiguration> readEnvironmentConfiguration() {
+    String prefix = S3ConfigurationLayout.getEnvironmentPrefix();
+    return listObjects(prefix)
+        .thenCompose(
+            environmentObjects -> {
+              configurationCache.prune(prefix, environmentObjects);
+              return readConfiguration(
+                  S3ConfigurationLayout.findConfigurationObjects(prefix, environmentObjects));
+            })
+        .thenApply(this::requireEnvironmentConfiguration);
+  }
+
+  private StoredConfiguration requireEnvironmentConfiguration(StoredConfiguration configuration) {
+    if (configuration == null) {
+      throw requests.noSuchKey(S3ConfigurationLayout.getEnvironmentConfigurationObjectKey());
+    }
+    return configuration;
+  }
+
+  private CompletableFuture<Map<Region, CompletableFuture<StoredConfiguration>>>
+      readLandingZoneConfigurations() {
+
+    // List the region "folders" under the Landing Zone prefix rather than every object beneath
+    // them, and start reading each region's configuration as soon as its folder has been listed;
+    // folders read before are not listed again, as for S3EnvironmentDiscovery. Pages are consumed
+    // one after the other, so the collections need no synchronization.
+
+    String basePrefix = S3ConfigurationLayout.getLandingZoneBasePrefix();
+    List<String> listedFolders = new ArrayList<>();
+    Map<Region, CompletableFuture<StoredConfiguration>> configurations = new HashMap<>();
+    return listObjects(
+            basePrefix,
+            page -> {
+              for (CommonPrefix commonPrefix : page.commonPrefixes()) {
+                listedFolders.add(commonPrefix.prefix());
+                S3ConfigurationLayout.regionFromPrefix(commonPrefix.prefix())
+                    .ifPresent(
+                        region ->
+                            configurations.computeIfAbsent(
+                                region,
+                                unused ->
+                                    readFolderConfiguration(
+                                        S3ConfigurationLayout.getLandingZonePrefix(region))));
+              }
+            })
+        .thenApply(
+            ignored -> {
+              configurationCache.pruneFolders(basePrefix, listedFolders);
+              return configurations;
+            });
+  }
+
+  /**
+   * Read the configuration in a folder with a single conditional GET of the object (in each
+   * encoding) it was last read from, falling back to listing the folder if none was read yet, an
+   * object added since could take precedence (see {@link
+   * S3ConfigurationRequests#cachedConfigurationObjects}), or the object no longer exists.
+   *
+   * @return a future completing with the configuration, or with null if the folder holds none
+   */
+  private CompletableFuture<StoredConfiguration> readFolderConfiguration(String prefix) {
+    S3ConfigurationLayout.ConfigurationObjects objects =
+        requests.cachedConfigurationObjects(prefix);
+    if (objects.binaryObject() == null && objects.jsonObject() == null) {
+      return listFolderConfiguration(prefix);
+    }
+    return readConfiguration(objects)
+        .exceptionallyCompose(
+            failure ->
+                unwrap(failure) instanceof NoSuchElementException
+                    // The object was deleted (and forgotten); list the folder for its replacement.
+                    ? listFolderConfiguration(prefix)
+                    : CompletableFuture.failedFuture(failure));
+  }
+
+  /**
+   * Read the configuration in a folder from the objects it holds.
+   *
+   * @return a future completing with the configuration, or with null if the folder holds none
+   */
+  private CompletableFuture<StoredConfiguration> listFolderConfiguration(String prefix) {
+    return listObjects(prefix)
+        .thenCompose(
+            listedObjects -> {
+              configurationCache.prune(prefix, listedObjects);
+              return readConfiguration(
+                  S3ConfigurationLayout.findConfigurationObjects(prefix, listedObjects));
+            });
+  }
+
+  /**
+   * Read the configuration held by the listed objects, preferring its binary encoding (see {@link
+   * AvroEnvironmentDiscovery#selectConfiguration}).
+   *
+   * @return a future completing with the configuration, or with null if neither object was listed
+   */
+  private CompletableFuture<StoredConfiguration> readConfiguration(
+      S3ConfigurationLayout.ConfigurationObjects objects) {
+    S3Object jsonObject = objects.jsonObject();
+    if (objects.binaryObject() == null) {
+      return jsonObject == null
+          ? CompletableFuture.completedFuture(null)
+          : readListedObject(jsonObject);
+    }
+    return readListedObject(objects.binaryObject())
+        .thenCompose(
+            binary ->
+                jsonObject == null || isWriterSchemaKnown(binary)
+                    ? CompletableFuture.completedFuture(binary)
+                    : readListedObject(jsonObject));
+  }
+
+  /**
+   * Read an object into a {@link StoredConfiguration}, reusing the previously read configuration if
+   * the object has not changed since it was last read.
+   *
+   * @param key object key to read
+   * @param knownETag the ETag of the object as returned by a listing or listed in the manifest, or
+   *     null if not known; if it matches the ETag of the previously read configuration, no request
+   *     is made
+   * @param manifestEntry the manifest entry listing the object, or null if the object was not
+   *     listed in a manifest; if present, the object is read at the listed version
+   * @return a future completing with the configuration stored in the object
+   */
+  private CompletableFuture<StoredConfiguration> readIntoConfiguration(
+      String key, String knownETag, ConfigurationManifest.Entry manifestEntry) {
+    StoredConfiguration unchanged = configurationCache.getIfUnchanged(key, knownETag);
+    if (unchanged != null) {
+      return CompletableFuture.completedFuture(unchanged);
+    }
+
+    GetObjectRequest request = requests.configurationRequest(key, manifestEntry);
+    return s3AsyncClient
+        .getObject(request, AsyncResponseTransformer.toBytes())
+        .handle(
+            (response, failure) -> {
+              try {
+                if (failure == null) {
+                  return requests.toConfiguration(request, knownETag, manifestEntry, response);
+                }
+                return requests.onConfigurationFailure(request, toS3Exception(failure));
+              } catch (IOException exception) {
+                throw new CompletionException(exception);
+              }
+            });
+  }
+
+  private CompletableFuture<StoredConfiguration> readListedObject(S3Object s3Object) {
+    return readIntoConfiguration(s3Object.key(), s3Object.eTag(), null);
+  }
+
+  /**
+   * Read the bucket's {@link ConfigurationBundle}, reusing the previously read bundle if it has not
+   * changed.
+   *
+   * @return a future completing with the bundle, or with null if the bucket has none
+   */
+  private CompletableFuture<ConfigurationBundle> readBundle() {
+    GetObjectRequest request = requests.bundleRequest();
+    return s3AsyncClient
+        .getObject(request, AsyncResponseTransformer.toBytes())
+        .handle(
+            (response, failure) -> {
+              if (failure != null) {
+                return requests.onBundleFailure(request, toS3Exception(failure));
+              }
+              try {
+                return requests.toBundle(response);
+              } catch (IOException exception) {
+                throw new CompletionException(exception);
+              }
+            });
+  }
+
+  /**
+   * Read the bucket's {@link ConfigurationManifest}, reusing the previously read manifest if it has
+   * not changed.
+   *
+   * @return a future completing with the manifest, or with null if the bucket has none
+   */
+  private CompletableFuture<ConfigurationManifest> readManifest() {
+    GetObjectRequest request = requests.manifestRequest();
+    return s3AsyncClient
+        .getObject(request, AsyncResponseTransformer.toBytes())
+        .handle(
+            (response, failure) -> {
+              if (failure != null) {
+                return requests.onManifestFailure(request, toS3Exception(failure));
+              }
+              try {
+                return requests.toManifest(response);
+              } catch (IOException exception) {
+                throw new CompletionException(exception);
+              }
+            });
+  }
+
+  /**
+   * List the objects directly under a prefix, passing each page of the listing to a consumer as
+   * soon as it has been received, and requesting the next page once it has been consumed; objects
+   * within nested "folders" are not listed individually, but rolled up into the common prefixes of
+   * the page.
+   *
+   * @return a future completing once every page has been consumed
+   */
+  private CompletableFuture<Void> listObjects(
+      String prefix, Consumer<ListObjectsV2Response> pageConsumer) {
+    return listObjects(requests.listRequest(prefix), pageConsumer);
+  }
+
+  private CompletableFuture<Void> listObjects(
+      ListObjectsV2Request request, Consumer<ListObjectsV2Response> pageConsumer) {
+    return s3AsyncClient
+        .listObjectsV2(request)
+        .handle(
+            (response, failure) -> {
+              if (failure == null) {
+                return response;
+              }
+              Throwable cause = unwrap(failure);
+              if (cause instanceof NoSuchBucketException) {
+                throw requests.noSuchBucket();
+              }
+              throw new CompletionException(cause);
+            })
+        .thenCompose(
+            response -> {
+              pageConsumer.accept(response);
+              return response.nextContinuationToken() != null
+                  ? listObjects(
+                      request.toBuilder()
+                          .continuationToken(response.nextContinuationToken())
+                          .build(),
+                      pageConsumer)
+                  : CompletableFuture.completedFuture(null);
+            });
+  }
+
+  /** List the objects directly under a prefix, reading every page of the listing. */
+  private CompletableFuture<List<S3Object>> listObjects(String prefix) {
+    List<S3Object> s3Objects = new ArrayList<>();
+    return listObjects(prefix, page -> s3Objects.addAll(page.contents()))
+        .thenApply(ignored -> s3Objects);
+  }
+
+  /**
+   * Get the {@link S3Exception} a request failed with, to be classified by {@link
+   * S3ConfigurationRequests}; any other failure is rethrown.
+   */
+  private static S3Exception toS3Exception(Throwable failure) {
+    Throwable cause = unwrap(failure);
+    if (cause instanceof S3Exception exception) {
+      return exception;
+    }
+    throw new CompletionException(cause);
+  }
+
+  private static Throwable unwrap(Throwable failure) {
+    return failure instanceof CompletionException && failure.getCause() != null
+        ? failure.getCause()
+        : failure;
+  }
+}
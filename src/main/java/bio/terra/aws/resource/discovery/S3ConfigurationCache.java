@@ -0,0 +1,247 @@
+package bio.terra.aws.resource.discovery;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Configurations most recently read from each object key of a bucket, along with the ETag of the
+ * object they were read from. Unchanged objects are not downloaded or parsed again: objects are
+ * compared against the ETags returned when listing, and any object that is fetched again is fetched
+ * with a conditional GET (see {@link #getETag(String)}).
+ *
+ * <p>The cache also holds the bucket's {@link ConfigurationManifest}, if it has one, which is
+ * likewise fetched again with a conditional GET, and its {@link ConfigurationBundle}, if it has
+ * one. A bucket found to have no manifest or no bundle is only checked for it again once per
+ * recheck interval (see {@link #tryStartManifestRecheck()}).
+ *
+ * <p>All methods are thread-safe.
+ */
+final class S3ConfigurationCache {
+
+  /** The interval at which a missing manifest or bundle is checked for again, unless configured. */
+  static final Duration DEFAULT_ABSENT_OBJECT_RECHECK_INTERVAL = Duration.ofMinutes(1);
+
+  private record CachedConfiguration(String eTag, StoredConfiguration configuration) {}
+
+  private record CachedManifest(String eTag, ConfigurationManifest manifest) {}
+
+  private record CachedBundle(String eTag, ConfigurationBundle bundle) {}
+
+  private final Map<String, CachedConfiguration> configurations = new ConcurrentHashMap<>();
+
+  private final long absentObjectRecheckIntervalNanos;
+
+  private volatile CachedManifest cachedManifest;
+  private volatile boolean manifestAbsent;
+
+  /** The {@link System#nanoTime()} from which a missing manifest may be checked for again. */
+  private final AtomicLong manifestRecheckTime = new AtomicLong();
+
+  private volatile CachedBundle cachedBundle;
+  private volatile boolean bundleAbsent;
+
+  /** The {@link System#nanoTime()} from which a missing bundle may be checked for again. */
+  private final AtomicLong bundleRecheckTime = new AtomicLong();
+
+  /**
+   * @param absentObjectRecheckInterval the interval at which a manifest or bundle the bucket was
+   *     found not to have is checked for again
+   */
+  S3ConfigurationCache(Duration absentObjectRecheckInterval) {
+    // Capped so that it can be safely added to a System.nanoTime() reading and compared by
+    // subtraction.
+    long maxNanos = Long.MAX_VALUE / 4;
+    absentObjectRecheckIntervalNanos =
+        absentObjectRecheckInterval.compareTo(Duration.ofNanos(maxNanos)) > 0
+            ? maxNanos
+            : absentObjectRecheckInterval.toNanos();
+  }
+
+  /**
+   * Get the configuration read from an object, if the object is unchanged since it was read.
+   *
+   * @param key object key
+   * @param listedETag the ETag of the object as returned by a listing, or null if not known
+   * @return the configuration, or null if none was read from the object or its ETag has changed
+   */
+  StoredConfiguration getIfUnchanged(String key, String listedETag) {
+    CachedConfiguration cached = configurations.get(key);
+    return cached != null && ConfigurationManifest.sameETag(cached.eTag(), listedETag)
+        ? cached.configuration()
+        : null;
+  }
+
+  /**
+   * Get the ETag of the object the cached configuration for a key was read from, to be passed as
+   * the {@code If-None-Match} condition of a GET request, or null if there is none.
+   */
+  String getETag(String key) {
+    CachedConfiguration cached = configurations.get(key);
+    return cached == null ? null : cached.eTag();
+  }
+
+  /**
+   * Get the cached configuration for a key, following a GET request conditional on {@link
+   * #getETag(String)} that found the object unmodified.
+   *
+   * @return the configuration, or null if none is cached
+   */
+  StoredConfiguration getNotModified(String key) {
+    CachedConfiguration cached = configurations.get(key);
+    return cached == null ? null : cached.configuration();
+  }
+
+  /**
+   * Cache a configuration read from an object.
+   *
+   * @param key object key
+   * @param eTag the ETag of the object read, or null if not known, in which case the configuration
+   *     is not cached
+   * @param configuration the configuration read
+   */
+  void put(String key, String eTag, StoredConfiguration configuration) {
+    if (eTag != null) {
+      configurations.put(key, new CachedConfiguration(eTag, configuration));
+    } else {
+      configurations.remove(key);
+    }
+  }
+
+  /** Get the keys of the objects under a prefix that configurations were read from. */
+  List<String> getKeys(String prefix) {
+    return configurations.keySet().stream().filter(key -> key.startsWith(prefix)).toList();
+  }
+
+  /** Forget the configuration for an object that no longer exists. */
+  void remove(String key) {
+    configurations.remove(key);
+  }
+
+  /** Forget configurations for objects under a prefix that were not listed. */
+  void prune(String prefix, List<S3Object> listedObjects) {
+    Set<String> listedObjectKeys =
+        listedObjects.stream().map(S3Object::key).collect(Collectors.toSet());
+    configurations
+        .keySet()
+        .removeIf(key -> key.startsWith(prefix) && !listedObjectKeys.contains(key));
+  }
+
+  /**
+   * Forget configurations for objects under a prefix that are not within any of the "folders"
+   * (common prefixes) listed under it.
+   */
+  void pruneFolders(String prefix, Collection<String> listedFolders) {
+    configurations
+        .keySet()
+        .removeIf(
+            key -> key.startsWith(prefix) && listedFolders.stream().noneMatch(key::startsWith));
+  }
+
+  /**
+   * Get the ETag of the manifest last read, to be passed as the {@code If-None-Match} condition of
+   * a GET request, or null if there is none.
+   */
+  String getManifestETag() {
+    CachedManifest cached = cachedManifest;
+    return cached == null ? null : cached.eTag();
+  }
+
+  /** Get the manifest last read, or null if there is none. */
+  ConfigurationManifest getManifest() {
+    CachedManifest cached = cachedManifest;
+    return cached == null ? null : cached.manifest();
+  }
+
+  /**
+   * Cache a manifest read from the bucket.
+   *
+   * @param eTag the ETag of the manifest object read, or null if not known, in which case the
+   *     manifest is not cached, but the bucket is still known to have one
+   * @param manifest the manifest read
+   */
+  void putManifest(String eTag, ConfigurationManifest manifest) {
+    cachedManifest = eTag == null ? null : new CachedManifest(eTag, manifest);
+    manifestAbsent = false;
+  }
+
+  /** Record that the bucket was found to have no manifest. */
+  void removeManifest() {
+    cachedManifest = null;
+    manifestAbsent = true;
+    manifestRecheckTime.set(System.nanoTime() + absentObjectRecheckIntervalNanos);
+  }
+
+  /** Check whether the bucket was found to have no manifest when it was last checked. */
+  boolean isManifestAbsent() {
+    return manifestAbsent;
+  }
+
+  /**
+   * Check whether a manifest the bucket was found not to have is due to be checked for again, that
+   * is, whether the recheck interval has passed since it was last checked for. If so, the following
+   * recheck is postponed by the interval, so that concurrent discoveries check only once.
+   */
+  boolean tryStartManifestRecheck() {
+    return tryStartRecheck(manifestRecheckTime);
+  }
+
+  /**
+   * Get the ETag of the bundle last read, to be passed as the {@code If-None-Match} condition of a
+   * GET request, or null if there is none.
+   */
+  String getBundleETag() {
+    CachedBundle cached = cachedBundle;
+    return cached == null ? null : cached.eTag();
+  }
+
+  /**
+   * Get the bundle last read, or null if there is none. This is also passed when reading a new
+   * bundle, so that the entries unchanged between the two are shared.
+   */
+  ConfigurationBundle getBundle() {
+    CachedBundle cached = cachedBundle;
+    return cached == null ? null : cached.bundle();
+  }
+
+  /**
+   * Cache a bundle read from the bucket.
+   *
+   * @param eTag the ETag of the bundle object read, or null if not known, in which case the bundle
+   *     will be read again unconditionally
+   * @param bundle the bundle read
+   */
+  void putBundle(String eTag, ConfigurationBundle bundle) {
+    cachedBundle = new CachedBundle(eTag, bundle);
+    bundleAbsent = false;
+  }
+
+  /** Record that the bucket was found to have no bundle. */
+  void removeBundle() {
+    cachedBundle = null;
+    bundleAbsent = true;
+    bundleRecheckTime.set(System.nanoTime() + absentObjectRecheckIntervalNanos);
+  }
+
+  /** Check whether the bucket was found to have no bundle when it was last checked. */
+  boolean isBundleAbsent() {
+    return bundleAbsent;
+  }
+
+  /** As {@link #tryStartManifestRecheck()}, for a bundle the bucket was found not to have. */
+  boolean tryStartBundleRecheck() {
+    return tryStartRecheck(bundleRecheckTime);
+  }
+
+  private boolean tryStartRecheck(AtomicLong recheckTime) {
+    long now = System.nanoTime();
+    long due = recheckTime.get();
+    return now - due >= 0 && recheckTime.compareAndSet(due, now + absentObjectRecheckIntervalNanos);
+  }
+}
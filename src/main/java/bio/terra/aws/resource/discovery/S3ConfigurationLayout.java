@@ -0,0 +1,143 @@
+package bio.terra.aws.resource.discovery;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * The layout of configuration objects in an Environment's S3 bucket (see {@link
+ * S3EnvironmentDiscovery}), shared by the blocking and asynchronous S3 discoveries: object keys and
+ * prefixes, the mapping of listed objects and "folders" to the Environment and Landing Zone
+ * configurations they hold, and the parsing of object content by encoding.
+ */
+final class S3ConfigurationLayout {
+  private static final String ENVIRONMENT_FOLDER_NAME = "environment";
+  private static final String LANDING_ZONE_FOLDER_NAME = "landingzones";
+  private static final String CONFIGURATION_OBJECT_KEY = "config.json";
+  private static final String BINARY_CONFIGURATION_OBJECT_KEY = "config.avro";
+  private static final String MANIFEST_OBJECT_KEY = "manifest.json";
+  private static final String REGION_REGEX_CAPTURE = "([a-z0-9-]*)";
+  private static final Pattern LANDING_ZONE_PREFIX_PATTERN =
+      Pattern.compile(Pattern.quote(getLandingZoneBasePrefix()) + REGION_REGEX_CAPTURE + "/");
+
+  /**
+   * Delimiter of listings, which rolls up the objects in nested "folders" into common prefixes, so
+   * that unrelated objects stored deeper under a prefix are not listed individually.
+   */
+  static final String DELIMITER = "/";
+
+  /**
+   * The listed objects holding a configuration in each encoding.
+   *
+   * @param binaryObject the {@code config.avro} (or {@code config.avro.gz}) object, or null if not
+   *     listed
+   * @param jsonObject the {@code config.json} (or {@code config.json.gz}) object, or null if not
+   *     listed
+   */
+  record ConfigurationObjects(S3Object binaryObject, S3Object jsonObject) {
+    ConfigurationObjects withObject(S3Object s3Object) {
+      return isBinaryConfigurationKey(s3Object.key())
+          ? new ConfigurationObjects(s3Object, jsonObject)
+          : new ConfigurationObjects(binaryObject, s3Object);
+    }
+  }
+
+  private S3ConfigurationLayout() {}
+
+  private static String getVersionPrefix() {
+    return String.format("v%d", AvroEnvironmentDiscovery.SCHEMA_MAJOR_VERSION);
+  }
+
+  /** Get the key of the optional {@link ConfigurationManifest} object. */
+  static String getManifestObjectKey() {
+    return String.join("/", getVersionPrefix(), MANIFEST_OBJECT_KEY);
+  }
+
+  /** Get the key of the optional {@link ConfigurationBundle} object. */
+  static String getBundleObjectKey() {
+    return String.join("/", getVersionPrefix(), ConfigurationBundle.BUNDLE_NAME);
+  }
+
+  static String getEnvironmentPrefix() {
+    return String.join("/", getVersionPrefix(), ENVIRONMENT_FOLDER_NAME, "");
+  }
+
+  static String getEnvironmentConfigurationObjectKey() {
+    return getEnvironmentPrefix() + CONFIGURATION_OBJECT_KEY;
+  }
+
+  static String getLandingZoneBasePrefix() {
+    return String.join("/", getVersionPrefix(), LANDING_ZONE_FOLDER_NAME, "");
+  }
+
+  static boolean isBinaryConfigurationKey(String key) {
+    return ConfigurationCompression.stripSuffix(key).endsWith(BINARY_CONFIGURATION_OBJECT_KEY);
+  }
+
+  /**
+   * Get the region of a Landing Zone "folder" listed as a common prefix under the Landing Zone
+   * prefix, validating that it is a known AWS region.
+   *
+   * @param prefix common prefix, such as {@code v0/landingzones/us-east-1/}
+   * @return the region, or an empty {@link Optional<Region>} if the prefix is not the folder of a
+   *     known AWS region
+   */
+  static Optional<Region> regionFromPrefix(String prefix) {
+    Matcher matcher = LANDING_ZONE_PREFIX_PATTERN.matcher(prefix);
+    if (matcher.matches()) {
+      Region region = Region.of(matcher.group(1));
+      if (Region.regions().contains(region)) {
+        return Optional.of(region);
+      }
+    }
+    return Optional.empty();
+  }
+
+  static String getLandingZonePrefix(Region region) {
+    return getLandingZoneBasePrefix() + region.id() + DELIMITER;
+  }
+
+  /**
+   * Find the configuration objects among those listed directly under an Environment or Landing Zone
+   * prefix.
+   */
+  static ConfigurationObjects findConfigurationObjects(String prefix, List<S3Object> s3Objects) {
+    ConfigurationObjects objects = new ConfigurationObjects(null, null);
+    for (S3Object s3Object : s3Objects) {
+      String key = ConfigurationCompression.stripSuffix(s3Object.key());
+      if (key.equals(prefix + BINARY_CONFIGURATION_OBJECT_KEY)
+          || key.equals(prefix + CONFIGURATION_OBJECT_KEY)) {
+        objects = objects.withObject(s3Object);
+      }
+    }
+    return objects;
+  }
+
+  /**
+   * Wrap the content of a configuration object according to its encoding, decompressing it if it is
+   * compressed (see {@link ConfigurationCompression}); the passed array may be retained, and must
+   * not be modified.
+   *
+   * @param key object key
+   * @param contentEncoding the {@code Content-Encoding} of the object, or null
+   * @param content object content
+   * @param jsonFactory factory used to parse {@code config.json} objects
+   */
+  static StoredConfiguration toConfiguration(
+      String key, String contentEncoding, byte[] content, JsonFactory jsonFactory)
+      throws IOException {
+    byte[] decompressed =
+        ConfigurationCompression.decompress(
+            content,
+            key.endsWith(ConfigurationCompression.GZIP_SUFFIX)
+                || ConfigurationCompression.isGzipContentEncoding(contentEncoding));
+    return isBinaryConfigurationKey(key)
+        ? new SingleObjectConfiguration(decompressed)
+        : new AvroConfiguration(decompressed, jsonFactory);
+  }
+}
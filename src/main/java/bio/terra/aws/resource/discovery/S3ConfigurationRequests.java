@@ -0,0 +1,256 @@
+package bio.terra.aws.resource.discovery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * The requests made by the blocking and asynchronous S3 discoveries of a bucket, and the handling
+ * of their responses, which the discoveries share so that they only differ in how requests are
+ * sent.
+ *
+ * <p>GET requests are conditional on the ETag of the previously read object, if any, and, for
+ * objects listed in a {@link ConfigurationManifest}, on the listed version. Each response is either
+ * turned into the value read from it and cached, or, if the request failed, classified: a 304 (Not
+ * Modified) returns the cached value, a 412 (Precondition Failed) means the object changed since
+ * the manifest was written, and missing objects and buckets are reported as {@link
+ * NoSuchElementException}s (or as absent, for the optional manifest and bundle). Other failures are
+ * rethrown as they are.
+ */
+final class S3ConfigurationRequests {
+  private static final int HTTP_NOT_MODIFIED = 304;
+  private static final int HTTP_PRECONDITION_FAILED = 412;
+
+  private final String bucketName;
+  private final S3ConfigurationCache configurationCache;
+  private final ObjectMapper mapper;
+
+  /**
+   * @param bucketName the name of the bucket requested
+   * @param configurationCache the objects previously read from the bucket
+   * @param mapper the mapper used to parse objects read
+   */
+  S3ConfigurationRequests(
+      String bucketName, S3ConfigurationCache configurationCache, ObjectMapper mapper) {
+    this.bucketName = bucketName;
+    this.configurationCache = configurationCache;
+    this.mapper = mapper;
+  }
+
+  /** Get the exception reporting that the bucket does not exist. */
+  NoSuchElementException noSuchBucket() {
+    return new NoSuchElementException(String.format("Bucket '%s' does not exist.", bucketName));
+  }
+
+  /** Get the exception reporting that an object does not exist. */
+  NoSuchElementException noSuchKey(String key) {
+    return new NoSuchElementException(
+        String.format("Object with key '%s' not found in bucket '%s'.", key, bucketName));
+  }
+
+  /**
+   * Get the objects under an Environment or Landing Zone prefix that its configuration was last
+   * read from, so that they can be read again without listing the prefix.
+   *
+   * <p>The cached objects are only used if no object added under the prefix since could take
+   * precedence over them: that is, if the binary encoding was read, and either it can be decoded or
+   * the JSON encoding was read too. Otherwise, for instance if only a {@code config.json} was read,
+   * a {@code config.avro} added beside it would be preferred, so no objects are returned and the
+   * prefix must be listed.
+   */
+  S3ConfigurationLayout.ConfigurationObjects cachedConfigurationObjects(String prefix) {
+    List<S3Object> cachedObjects =
+        configurationCache.getKeys(prefix).stream()
+            .map(key -> S3Object.builder().key(key).build())
+            .toList();
+    S3ConfigurationLayout.ConfigurationObjects objects =
+        S3ConfigurationLayout.findConfigurationObjects(prefix, cachedObjects);
+    if (objects.binaryObject() == null) {
+      return new S3ConfigurationLayout.ConfigurationObjects(null, null);
+    }
+    StoredConfiguration binary = configurationCache.getNotModified(objects.binaryObject().key());
+    if (objects.jsonObject() == null
+        && (binary == null || !AvroEnvironmentDiscovery.isWriterSchemaKnown(binary))) {
+      return new S3ConfigurationLayout.ConfigurationObjects(null, null);
+    }
+    return objects;
+  }
+
+  /** Get the request for the first page of the delimited listing of the objects under a prefix. */
+  ListObjectsV2Request listRequest(String prefix) {
+    return ListObjectsV2Request.builder()
+        .bucket(bucketName)
+        .prefix(prefix)
+        .delimiter(S3ConfigurationLayout.DELIMITER)
+        .build();
+  }
+
+  /**
+   * Get the request reading a configuration object.
+   *
+   * @param key object key to read
+   * @param manifestEntry the manifest entry listing the object, or null if the object was not
+   *     listed in a manifest; if present, the object is read at the listed version
+   */
+  GetObjectRequest configurationRequest(String key, ConfigurationManifest.Entry manifestEntry) {
+    GetObjectRequest.Builder requestBuilder =
+        GetObjectRequest.builder()
+            .bucket(bucketName)
+            .key(key)
+            .ifNoneMatch(configurationCache.getETag(key));
+    if (manifestEntry != null) {
+      if (manifestEntry.versionId() != null) {
+        requestBuilder.versionId(manifestEntry.versionId());
+      } else {
+        requestBuilder.ifMatch(manifestEntry.eTag());
+      }
+    }
+    return requestBuilder.build();
+  }
+
+  /**
+   * Parse and cache the configuration read by a request from {@link #configurationRequest}.
+   *
+   * @param knownETag the ETag of the object as returned by a listing or listed in the manifest, or
+   *     null if not known; cached if the response holds none
+   * @param manifestEntry the manifest entry the request was made for, or null; the response is
+   *     verified against it
+   */
+  StoredConfiguration toConfiguration(
+      GetObjectRequest request,
+      String knownETag,
+      ConfigurationManifest.Entry manifestEntry,
+      ResponseBytes<GetObjectResponse> response)
+      throws IOException {
+    // The response bytes are not used after this point, so their array can be retained as is.
+    byte[] content = response.asByteArrayUnsafe();
+    if (manifestEntry != null) {
+      manifestEntry.verify(response.response().eTag(), content.length);
+    }
+    StoredConfiguration configuration =
+        S3ConfigurationLayout.toConfiguration(
+            request.key(), response.response().contentEncoding(), content, mapper.getFactory());
+
+    String eTag = response.response().eTag() != null ? response.response().eTag() : knownETag;
+    configurationCache.put(request.key(), eTag, configuration);
+    return configuration;
+  }
+
+  /**
+   * Classify the failure of a request from {@link #configurationRequest}.
+   *
+   * @return the cached configuration, if the object was not modified
+   * @throws NoSuchElementException if the object does not exist
+   * @throws IOException if the object changed since the manifest listing it was written
+   */
+  StoredConfiguration onConfigurationFailure(GetObjectRequest request, S3Exception exception)
+      throws IOException {
+    if (exception instanceof NoSuchKeyException) {
+      configurationCache.remove(request.key());
+      throw noSuchKey(request.key());
+    }
+    StoredConfiguration notModified = configurationCache.getNotModified(request.key());
+    if (isNotModified(request, exception) && notModified != null) {
+      return notModified;
+    }
+    if (exception.statusCode() == HTTP_PRECONDITION_FAILED) {
+      throw new IOException(
+          String.format("Object '%s' has changed since the manifest was written.", request.key()),
+          exception);
+    }
+    throw exception;
+  }
+
+  /** Get the request reading the bucket's {@link ConfigurationManifest}. */
+  GetObjectRequest manifestRequest() {
+    return GetObjectRequest.builder()
+        .bucket(bucketName)
+        .key(S3ConfigurationLayout.getManifestObjectKey())
+        .ifNoneMatch(configurationCache.getManifestETag())
+        .build();
+  }
+
+  /** Parse and cache the manifest read by a request from {@link #manifestRequest}. */
+  ConfigurationManifest toManifest(ResponseBytes<GetObjectResponse> response) throws IOException {
+    ConfigurationManifest manifest =
+        ConfigurationManifest.parse(response.asByteArrayUnsafe(), mapper);
+    configurationCache.putManifest(response.response().eTag(), manifest);
+    return manifest;
+  }
+
+  /**
+   * Classify the failure of a request from {@link #manifestRequest}.
+   *
+   * @return the cached manifest, if it was not modified, or null if the bucket has none
+   * @throws NoSuchElementException if the bucket does not exist
+   */
+  ConfigurationManifest onManifestFailure(GetObjectRequest request, S3Exception exception) {
+    if (exception instanceof NoSuchKeyException) {
+      configurationCache.removeManifest();
+      return null;
+    }
+    if (exception instanceof NoSuchBucketException) {
+      throw noSuchBucket();
+    }
+    ConfigurationManifest notModified = configurationCache.getManifest();
+    if (isNotModified(request, exception) && notModified != null) {
+      return notModified;
+    }
+    throw exception;
+  }
+
+  /** Get the request reading the bucket's {@link ConfigurationBundle}. */
+  GetObjectRequest bundleRequest() {
+    return GetObjectRequest.builder()
+        .bucket(bucketName)
+        .key(S3ConfigurationLayout.getBundleObjectKey())
+        .ifNoneMatch(configurationCache.getBundleETag())
+        .build();
+  }
+
+  /**
+   * Parse and cache the bundle read by a request from {@link #bundleRequest}, reusing the
+   * configurations of the previously read bundle that are unchanged.
+   */
+  ConfigurationBundle toBundle(ResponseBytes<GetObjectResponse> response) throws IOException {
+    ConfigurationBundle bundle =
+        ConfigurationBundle.read(
+            response.asByteArrayUnsafe(), mapper.getFactory(), configurationCache.getBundle());
+    configurationCache.putBundle(response.response().eTag(), bundle);
+    return bundle;
+  }
+
+  /**
+   * Classify the failure of a request from {@link #bundleRequest}.
+   *
+   * @return the cached bundle, if it was not modified, or null if the bucket has none
+   * @throws NoSuchElementException if the bucket does not exist
+   */
+  ConfigurationBundle onBundleFailure(GetObjectRequest request, S3Exception exception) {
+    if (exception instanceof NoSuchKeyException) {
+      configurationCache.removeBundle();
+      return null;
+    }
+    if (exception instanceof NoSuchBucketException) {
+      throw noSuchBucket();
+    }
+    ConfigurationBundle notModified = configurationCache.getBundle();
+    if (isNotModified(request, exception) && notModified != null) {
+      return notModified;
+    }
+    throw exception;
+  }
+
+  private static boolean isNotModified(GetObjectRequest request, S3Exception exception) {
+    return request.ifNoneMatch() != null && exception.statusCode() == HTTP_NOT_MODIFIED;
+  }
+}
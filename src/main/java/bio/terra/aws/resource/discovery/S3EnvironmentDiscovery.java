@@ -2,24 +2,31 @@ package bio.terra.aws.resource.discovery;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
-import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.services.s3.model.S3Object;
 
 /**
@@ -41,17 +48,43 @@ import software.amazon.awssdk.services.s3.model.S3Object;
  *
  * <p>This example supports Landing Zones in two AWS regions: {@code eu-central-1} and {@code
  * us-east-1}; any number of AWS regions could be provided under the {@code landingzone} folder.
+ *
+ * <p>Any {@code config.json} object may be accompanied or replaced by a {@code config.avro} object
+ * under the same prefix, containing the same configuration in Avro single-object encoding (see
+ * {@link SingleObjectConfiguration}), which is read in preference to {@code config.json}. Either
+ * object may be stored gzip-compressed, under a key with a {@code .gz} suffix or with a {@code
+ * Content-Encoding: gzip} header (see {@link ConfigurationCompression}).
+ *
+ * <p>The objects to read may be listed in an optional {@code vM/manifest.json} object (see {@link
+ * ConfigurationManifest}), avoiding the listing of the bucket, or all configurations may be held in
+ * an optional {@code vM/bundle} object (see {@link ConfigurationBundle}), which is discovered with
+ * a single GET request.
  */
 public class S3EnvironmentDiscovery extends AvroEnvironmentDiscovery {
 
-  private static final String ENVIRONMENT_FOLDER_NAME = "environment";
-  private static final String LANDING_ZONE_FOLDER_NAME = "landingzones";
-  private static final String CONFIGURATION_OBJECT_KEY = "config.json";
-  private static final String REGION_REGEX_CAPTURE = "([a-z0-9-]*)";
-
   private final S3Client s3Client;
   private final String bucketName;
-  private final Pattern regexPattern;
+
+  /**
+   * Configurations most recently read from each object key; unchanged objects are not downloaded or
+   * parsed again.
+   */
+  private final S3ConfigurationCache configurationCache;
+
+  /** Builds the requests made to the bucket, and handles their responses. */
+  private final S3ConfigurationRequests requests;
+
+  /**
+   * Completes once the bucket is known to exist, or fails with a {@link NoSuchElementException} if
+   * it does not.
+   */
+  private final CompletableFuture<Void> bucketValidation;
+
+  /** Speculative first discovery started at construction, until taken by the first discovery. */
+  private final AtomicReference<CompletableFuture<Environment>> prefetchedDiscovery;
+
+  /** Hedging applied to GET requests, or null if they are not hedged. */
+  private final RequestHedging requestHedging;
 
   /**
    * Construct a {@link S3EnvironmentDiscovery} class from an S3 Bucket
@@ -62,112 +95,498 @@ public class S3EnvironmentDiscovery extends AvroEnvironmentDiscovery {
    * @param s3Client an {@link S3Client} instance credentialed to read {@param bucketName}
    */
   public S3EnvironmentDiscovery(String bucketName, S3Client s3Client) {
+    this(bucketName, s3Client, DiscoveryExecutors.defaultExecutor());
+  }
+
+  /**
+   * Construct a {@link S3EnvironmentDiscovery} class from an S3 Bucket, reading objects
+   * concurrently on the passed executor rather than the default (virtual threads where available)
+   *
+   * @param bucketName the name of the AWS S3 bucket that contains the configuration corresponding
+   *     to a single Terra AWS Environment, which contains Avro configuration objects matching the
+   *     layout described in the {@link S3EnvironmentDiscovery} class documentation.
+   * @param s3Client an {@link S3Client} instance credentialed to read {@param bucketName}
+   * @param executor executor on which objects are read and parsed concurrently
+   */
+  public S3EnvironmentDiscovery(String bucketName, S3Client s3Client, Executor executor) {
+    super(executor);
     this.s3Client = s3Client;
     this.bucketName = bucketName;
-    regexPattern = Pattern.compile(getLandingZoneConfigurationObjectKeyRegex());
+    configurationCache =
+        new S3ConfigurationCache(S3ConfigurationCache.DEFAULT_ABSENT_OBJECT_RECHECK_INTERVAL);
+    requests = new S3ConfigurationRequests(bucketName, configurationCache, getObjectMapper());
+    prefetchedDiscovery = new AtomicReference<>();
+    requestHedging = null;
+
+    validateBucket();
+    bucketValidation = CompletableFuture.completedFuture(null);
+  }
+
+  private S3EnvironmentDiscovery(Builder builder) {
+    super(builder.executor);
+    if (builder.bucketName == null) {
+      throw new IllegalArgumentException("Bucket name may not be null.");
+    }
+    if (builder.s3Client == null) {
+      throw new IllegalArgumentException("S3 client may not be null.");
+    }
+    if (builder.absentObjectRecheckInterval == null
+        || builder.absentObjectRecheckInterval.isNegative()) {
+      throw new IllegalArgumentException("Absent object recheck interval must be non-negative.");
+    }
+    this.s3Client = builder.s3Client;
+    this.bucketName = builder.bucketName;
+    configurationCache = new S3ConfigurationCache(builder.absentObjectRecheckInterval);
+    requests = new S3ConfigurationRequests(bucketName, configurationCache, getObjectMapper());
+    prefetchedDiscovery = new AtomicReference<>();
+    requestHedging = builder.requestHedging;
+
+    CompletableFuture<Void> validation;
+    try {
+      if (builder.prefetch) {
+        // A discovery of a bucket that does not exist fails as a validation would, so the bucket
+        // need not be checked separately.
+        validation = CompletableFuture.completedFuture(null);
+        prefetchedDiscovery.set(CompletableFuture.supplyAsync(this::prefetch, builder.executor));
+      } else {
+        validation = CompletableFuture.runAsync(this::validateBucketInBackground, builder.executor);
+      }
+    } catch (RejectedExecutionException exception) {
+      // The bucket will be found not to exist by the first discovery, if need be.
+      validation = CompletableFuture.completedFuture(null);
+    }
+    bucketValidation = validation;
+  }
+
+  /** Builder for class {@link S3EnvironmentDiscovery} */
+  public static class Builder {
+    private String bucketName;
+    private S3Client s3Client;
+    private Executor executor;
+    private boolean prefetch;
+    private RequestHedging requestHedging;
+    private Duration absentObjectRecheckInterval;
 
+    private Builder() {
+      executor = DiscoveryExecutors.defaultExecutor();
+      absentObjectRecheckInterval = S3ConfigurationCache.DEFAULT_ABSENT_OBJECT_RECHECK_INTERVAL;
+    }
+
+    /**
+     * Set the name of the AWS S3 bucket that contains the configuration corresponding to a single
+     * Terra AWS Environment, matching the layout described in the {@link S3EnvironmentDiscovery}
+     * class documentation
+     */
+    public Builder bucketName(String bucketName) {
+      this.bucketName = bucketName;
+      return this;
+    }
+
+    /** Set the {@link S3Client} instance, which must be credentialed to read the bucket */
+    public Builder s3Client(S3Client s3Client) {
+      this.s3Client = s3Client;
+      return this;
+    }
+
+    /**
+     * Set the executor on which objects are read and parsed concurrently, and on which the bucket
+     * is validated and the first discovery prefetched; by default, virtual threads where available
+     */
+    public Builder executor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Set whether to start the first discovery speculatively when the instance is built. The first
+     * call to {@link S3EnvironmentDiscovery#discoverEnvironment()} returns its result, waiting for
+     * it if it is still in flight, so it reflects the bucket's content at the time the instance was
+     * built; if it failed, the first call discovers the Environment again. Either way, it leaves
+     * the objects it read cached for later discoveries. Disabled by default.
+     */
+    public Builder prefetch(boolean prefetch) {
+      this.prefetch = prefetch;
+      return this;
+    }
+
+    /**
+     * Set the hedging applied to the GET requests reading configuration objects, which may be
+     * shared with other discoveries; by default, requests are not hedged
+     */
+    public Builder requestHedging(RequestHedging requestHedging) {
+      this.requestHedging = requestHedging;
+      return this;
+    }
+
+    /**
+     * Set the interval at which a bucket found to have no bundle or no manifest is checked for it
+     * again, in the background of a discovery, so that a newly published one is used from the
+     * following discovery on. {@link Duration#ZERO} checks again on every discovery. The default is
+     * one minute.
+     */
+    public Builder absentObjectRecheckInterval(Duration absentObjectRecheckInterval) {
+      this.absentObjectRecheckInterval = absentObjectRecheckInterval;
+      return this;
+    }
+
+    /**
+     * Build the {@link S3EnvironmentDiscovery} instance, without making any request on the calling
+     * thread. If the bucket does not exist, discovery fails with a {@link NoSuchElementException}.
+     */
+    public S3EnvironmentDiscovery build() {
+      return new S3EnvironmentDiscovery(this);
+    }
+  }
+
+  /** Get a {@link Builder} for {@link S3EnvironmentDiscovery} */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Private helper to check that the bucket exists.
+   *
+   * @throws NoSuchElementException if it does not
+   */
+  private void validateBucket() {
     HeadBucketRequest request = HeadBucketRequest.builder().bucket(bucketName).build();
     try {
       s3Client.headBucket(request);
     } catch (NoSuchBucketException exception) {
-      throw new NoSuchElementException(String.format("Bucket '%s' does not exist.", bucketName));
+      throw requests.noSuchBucket();
+    }
+  }
+
+  /**
+   * Private helper to check that the bucket exists in the background; other failures are left for
+   * discovery to report.
+   */
+  private void validateBucketInBackground() {
+    try {
+      validateBucket();
+    } catch (SdkException exception) {
+      // Discovery will fail in the same way if the failure persists.
+    }
+  }
+
+  private Environment prefetch() {
+    try {
+      return discover();
+    } catch (IOException exception) {
+      throw new CompletionException(exception);
     }
   }
 
-  private static String getVersionPrefix() {
-    return String.format("v%d", SCHEMA_MAJOR_VERSION);
+  /** Private helper to make a GET request, hedging it if configured to. */
+  private ResponseBytes<GetObjectResponse> getObjectBytes(GetObjectRequest request)
+      throws IOException {
+    if (requestHedging == null) {
+      return s3Client.getObject(request, ResponseTransformer.toBytes());
+    }
+    return requestHedging.call(
+        () -> s3Client.getObject(request, ResponseTransformer.toBytes()), getExecutor());
   }
 
-  private static String getEnvironmentConfigurationObjectKey() {
-    return String.join("/", getVersionPrefix(), ENVIRONMENT_FOLDER_NAME, CONFIGURATION_OBJECT_KEY);
+  /**
+   * Read an object into a {@link StoredConfiguration}, reusing the previously read configuration if
+   * the object has not changed since it was last read.
+   *
+   * @param key object key to read
+   * @param knownETag the ETag of the object as returned by a listing or listed in the manifest, or
+   *     null if not known; if it matches the ETag of the previously read configuration, no request
+   *     is made
+   * @param manifestEntry the manifest entry listing the object, or null if the object was not
+   *     listed in a manifest; if present, the object is read at the listed version
+   * @return the configuration stored in the object
+   * @throws IOException IOException
+   */
+  private StoredConfiguration readIntoConfiguration(
+      String key, String knownETag, ConfigurationManifest.Entry manifestEntry) throws IOException {
+    StoredConfiguration unchanged = configurationCache.getIfUnchanged(key, knownETag);
+    if (unchanged != null) {
+      return unchanged;
+    }
+
+    GetObjectRequest request = requests.configurationRequest(key, manifestEntry);
+    try {
+      return requests.toConfiguration(request, knownETag, manifestEntry, getObjectBytes(request));
+    } catch (S3Exception exception) {
+      return requests.onConfigurationFailure(request, exception);
+    }
   }
 
-  private static String getLandingZoneBasePrefix() {
-    return String.join("/", getVersionPrefix(), LANDING_ZONE_FOLDER_NAME, "");
+  /**
+   * Read the bucket's {@link ConfigurationManifest}, reusing the previously read manifest if it has
+   * not changed.
+   *
+   * @return the manifest, or null if the bucket has none
+   * @throws IOException IOException
+   */
+  private ConfigurationManifest readManifest() throws IOException {
+    GetObjectRequest request = requests.manifestRequest();
+    try {
+      return requests.toManifest(getObjectBytes(request));
+    } catch (S3Exception exception) {
+      return requests.onManifestFailure(request, exception);
+    }
   }
 
-  private static String getLandingZoneConfigurationObjectKeyRegex() {
-    return String.join(
-        "\\/",
-        getVersionPrefix(),
-        LANDING_ZONE_FOLDER_NAME,
-        REGION_REGEX_CAPTURE,
-        CONFIGURATION_OBJECT_KEY);
+  /**
+   * Read the bucket's {@link ConfigurationBundle}, reusing the previously read bundle if it has not
+   * changed.
+   *
+   * @return the bundle, or null if the bucket has none
+   * @throws IOException IOException
+   */
+  private ConfigurationBundle readBundle() throws IOException {
+    GetObjectRequest request = requests.bundleRequest();
+    try {
+      return requests.toBundle(getObjectBytes(request));
+    } catch (S3Exception exception) {
+      return requests.onBundleFailure(request, exception);
+    }
   }
 
   /**
-   * Check whether an Object key matches the regex for a Landing Zone configuration object,
-   * validating that the AWS region component of the path is a valid AWS region.
+   * Discover the Environment from the bucket's bundle if it has one; otherwise read exactly the
+   * objects listed in the bucket's manifest if it has one, and otherwise list the bucket.
    *
-   * @param key object key to parse
-   * @return a populated {@link Optional<Region>} if the passed key matches the configuration object
-   *     regex key, AND the region component is known valid AWS region, otherwise an empty {@link
-   *     Optional<Region>}
+   * <p>Buckets are checked for a bundle and a manifest before each discovery, unless the bucket had
+   * none when last checked: such buckets are discovered by the next method available, while
+   * checking again for the missing objects concurrently, at most once per recheck interval (see
+   * {@link Builder#absentObjectRecheckInterval(Duration)}), so that a newly published bundle or
+   * manifest is used from the discovery following the recheck on.
    */
-  private Optional<Region> regionFromObjectKey(String key) {
-    Matcher matcher = regexPattern.matcher(key);
-    if (matcher.find()) {
-      Region region = Region.of(matcher.group(matcher.groupCount()));
+  @Override
+  public Environment discoverEnvironment() throws IOException {
+    CompletableFuture<Environment> prefetched = prefetchedDiscovery.getAndSet(null);
+    if (prefetched != null) {
+      try {
+        return join(prefetched);
+      } catch (IOException | RuntimeException exception) {
+        // The speculative discovery failed; discover the Environment again.
+      }
+    }
+    join(bucketValidation);
+    return discover();
+  }
 
-      // Regions are not validated in Region.of() ... only return a Region if the parsed region is a
-      // known-good region.
+  private Environment discover() throws IOException {
+    if (configurationCache.isBundleAbsent()) {
+      if (configurationCache.tryStartBundleRecheck()) {
+        probe(this::readBundle);
+      }
+    } else {
+      ConfigurationBundle bundle = readBundle();
+      if (bundle != null) {
+        return discoverEnvironment(
+            bundle::getEnvironmentConfiguration, bundle::getLandingZoneConfigurations);
+      }
+    }
 
-      if (Region.regions().contains(region)) {
-        return Optional.of(region);
+    if (configurationCache.isManifestAbsent()) {
+      if (configurationCache.tryStartManifestRecheck()) {
+        probe(this::readManifest);
       }
+      return super.discoverEnvironment();
     }
 
-    return Optional.empty();
-  }
+    ConfigurationManifest manifest = readManifest();
+    if (manifest == null) {
+      return super.discoverEnvironment();
+    }
 
-  private AvroConfiguration readIntoConfiguration(String key, ObjectMapper mapper)
-      throws IOException {
+    ConfigurationManifest.Entry environmentEntry = manifest.environment();
+    Map<Region, ConfigurationManifest.Entry> landingZoneEntries = manifest.getLandingZoneEntries();
+    return discoverEnvironment(
+        () ->
+            readIntoConfiguration(
+                environmentEntry.key(), environmentEntry.eTag(), environmentEntry),
+        () ->
+            forEachRegion(
+                landingZoneEntries.keySet(),
+                region -> {
+                  ConfigurationManifest.Entry entry = landingZoneEntries.get(region);
+                  return readIntoConfiguration(entry.key(), entry.eTag(), entry);
+                }));
+  }
 
+  /** Private helper to check for a bundle or manifest in the background, ignoring failures. */
+  private void probe(Callable<?> reader) {
     try {
-      GetObjectRequest request = GetObjectRequest.builder().bucket(bucketName).key(key).build();
+      CompletableFuture.runAsync(
+          () -> {
+            try {
+              reader.call();
+            } catch (Exception exception) {
+              // The object will be checked for again by the next discovery.
+            }
+          },
+          getExecutor());
+    } catch (RejectedExecutionException exception) {
+      // The object will be checked for by a later discovery.
+    }
+  }
+
+  /** Read the configuration held by the listed objects, preferring its binary encoding. */
+  private StoredConfiguration readConfiguration(S3ConfigurationLayout.ConfigurationObjects objects)
+      throws IOException {
+    return selectConfiguration(
+        objects.binaryObject() == null ? null : () -> readListedObject(objects.binaryObject()),
+        objects.jsonObject() == null ? null : () -> readListedObject(objects.jsonObject()));
+  }
 
-      ResponseBytes<GetObjectResponse> response =
-          s3Client.getObject(request, ResponseTransformer.toBytes());
+  private StoredConfiguration readListedObject(S3Object s3Object) throws IOException {
+    return readIntoConfiguration(s3Object.key(), s3Object.eTag(), null);
+  }
 
-      return mapper.readValue(response.asString(StandardCharsets.UTF_8), AvroConfiguration.class);
-    } catch (NoSuchKeyException exception) {
-      throw new NoSuchElementException(
-          String.format("Object with key '%s' not found in bucket '%s'.", key, bucketName));
+  /**
+   * List the objects directly under a prefix, passing each page of the listing to a consumer as
+   * soon as it has been received; objects within nested "folders" are not listed individually, but
+   * rolled up into the common prefixes of the page.
+   */
+  private void listObjects(String prefix, Consumer<ListObjectsV2Response> pageConsumer) {
+    ListObjectsV2Request.Builder requestBuilder = requests.listRequest(prefix).toBuilder();
+    try {
+      ListObjectsV2Response response;
+      do {
+        response = s3Client.listObjectsV2(requestBuilder.build());
+        pageConsumer.accept(response);
+        requestBuilder.continuationToken(response.nextContinuationToken());
+      } while (response.nextContinuationToken() != null);
+    } catch (NoSuchBucketException exception) {
+      throw requests.noSuchBucket();
     }
   }
 
+  /** List the objects directly under a prefix, reading every page of the listing. */
+  private List<S3Object> listObjects(String prefix) {
+    List<S3Object> s3Objects = new ArrayList<>();
+    listObjects(prefix, page -> s3Objects.addAll(page.contents()));
+    return s3Objects;
+  }
+
   @Override
-  protected AvroConfiguration getEnvironmentConfiguration(ObjectMapper mapper) throws IOException {
-    return readIntoConfiguration(getEnvironmentConfigurationObjectKey(), mapper);
+  protected StoredConfiguration getEnvironmentConfiguration(ObjectMapper mapper)
+      throws IOException {
+
+    // List the Environment prefix rather than fetching its configuration directly, so that either
+    // encoding can be found with a single request, and unchanged objects need no further request.
+
+    String prefix = S3ConfigurationLayout.getEnvironmentPrefix();
+    List<S3Object> environmentObjects = listObjects(prefix);
+    configurationCache.prune(prefix, environmentObjects);
+
+    StoredConfiguration configuration =
+        readConfiguration(
+            S3ConfigurationLayout.findConfigurationObjects(prefix, environmentObjects));
+    if (configuration == null) {
+      throw requests.noSuchKey(S3ConfigurationLayout.getEnvironmentConfigurationObjectKey());
+    }
+    return configuration;
   }
 
   @Override
-  protected Map<Region, AvroConfiguration> getLandingZoneConfigurations(ObjectMapper mapper)
+  protected Map<Region, StoredConfiguration> getLandingZoneConfigurations(ObjectMapper mapper)
       throws IOException {
 
-    // List objects under the Landing Zone prefix.
+    // List the region "folders" under the Landing Zone prefix rather than every object beneath
+    // them, so that listing time does not grow with unrelated objects stored there, and start
+    // reading each region's configuration as soon as its folder has been listed, so that reading
+    // and parsing overlap with the rest of the listing. Folders whose binary configuration was read
+    // before are not listed again: the objects last read from them are read with a conditional
+    // GET. Folders where only a JSON configuration was read are listed, as a binary one added
+    // since would take precedence.
 
-    HashMap<Region, AvroConfiguration> retVal = new HashMap<>();
+    String basePrefix = S3ConfigurationLayout.getLandingZoneBasePrefix();
+    List<String> listedFolders = new ArrayList<>();
+    Map<Region, StoredConfiguration> configurations =
+        forEachListedRegion(
+            consumer ->
+                listObjects(
+                    basePrefix,
+                    page -> {
+                      for (CommonPrefix commonPrefix : page.commonPrefixes()) {
+                        listedFolders.add(commonPrefix.prefix());
+                        S3ConfigurationLayout.regionFromPrefix(commonPrefix.prefix())
+                            .ifPresent(consumer);
+                      }
+                    }),
+            region -> readFolderConfiguration(S3ConfigurationLayout.getLandingZonePrefix(region)));
+    configurationCache.pruneFolders(basePrefix, listedFolders);
+    return configurations;
+  }
 
-    ListObjectsV2Request request =
-        ListObjectsV2Request.builder()
-            .bucket(bucketName)
-            .prefix(getLandingZoneBasePrefix())
-            .build();
+  /**
+   * Read the Environment configuration alone: from the bundle or manifest if the bucket has one,
+   * and otherwise from the object it was last read from, without listing.
+   */
+  @Override
+  protected StoredConfiguration getEnvironmentConfigurationOnly(ObjectMapper mapper)
+      throws IOException {
+    join(bucketValidation);
+    ConfigurationBundle bundle = configurationCache.isBundleAbsent() ? null : readBundle();
+    if (bundle != null) {
+      return bundle.getEnvironmentConfiguration();
+    }
+    ConfigurationManifest manifest = configurationCache.isManifestAbsent() ? null : readManifest();
+    if (manifest != null) {
+      ConfigurationManifest.Entry entry = manifest.environment();
+      return readIntoConfiguration(entry.key(), entry.eTag(), entry);
+    }
 
-    ListObjectsV2Response response = s3Client.listObjectsV2(request);
+    StoredConfiguration configuration =
+        readFolderConfiguration(S3ConfigurationLayout.getEnvironmentPrefix());
+    if (configuration == null) {
+      throw requests.noSuchKey(S3ConfigurationLayout.getEnvironmentConfigurationObjectKey());
+    }
+    return configuration;
+  }
 
-    // Iterate over discovered S3 objects, looking for keys that the LandingZone config object
-    // regex, and parsing the configurations into the return value map.
+  /**
+   * Read the configuration of a single Landing Zone: from the bundle or manifest if the bucket has
+   * one, and otherwise from the object it was last read from, without listing.
+   */
+  @Override
+  protected StoredConfiguration getLandingZoneConfiguration(Region region, ObjectMapper mapper)
+      throws IOException {
+    if (!Region.regions().contains(region)) {
+      return null;
+    }
+    join(bucketValidation);
+    ConfigurationBundle bundle = configurationCache.isBundleAbsent() ? null : readBundle();
+    if (bundle != null) {
+      return bundle.getLandingZoneConfiguration(region);
+    }
+    ConfigurationManifest manifest = configurationCache.isManifestAbsent() ? null : readManifest();
+    if (manifest != null) {
+      ConfigurationManifest.Entry entry = manifest.getLandingZoneEntries().get(region);
+      return entry == null ? null : readIntoConfiguration(entry.key(), entry.eTag(), entry);
+    }
+    return readFolderConfiguration(S3ConfigurationLayout.getLandingZonePrefix(region));
+  }
 
-    for (S3Object s3Object : response.contents()) {
-      String objectKey = s3Object.key();
-      Optional<Region> region = regionFromObjectKey(objectKey);
-      if (region.isPresent()) {
-        retVal.put(region.get(), readIntoConfiguration(objectKey, mapper));
+  /**
+   * Private helper to read the configuration in a folder with a single conditional GET of the
+   * object (in each encoding) it was last read from, falling back to listing the folder if none was
+   * read yet, an object added since could take precedence (see {@link
+   * S3ConfigurationRequests#cachedConfigurationObjects}), or the object no longer exists.
+   *
+   * @return the configuration, or null if the folder holds none
+   */
+  private StoredConfiguration readFolderConfiguration(String prefix) throws IOException {
+    S3ConfigurationLayout.ConfigurationObjects objects =
+        requests.cachedConfigurationObjects(prefix);
+    if (objects.binaryObject() != null || objects.jsonObject() != null) {
+      try {
+        return readConfiguration(objects);
+      } catch (NoSuchElementException exception) {
+        // The object was deleted (and forgotten); list the folder for its replacement.
       }
     }
 
-    return retVal;
+    List<S3Object> listedObjects = listObjects(prefix);
+    configurationCache.prune(prefix, listedObjects);
+    return readConfiguration(S3ConfigurationLayout.findConfigurationObjects(prefix, listedObjects));
   }
 }
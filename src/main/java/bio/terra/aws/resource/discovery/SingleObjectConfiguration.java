@@ -0,0 +1,69 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.IOException;
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.message.BadHeaderException;
+import org.apache.avro.message.MissingSchemaException;
+
+/**
+ * A Support Resource configuration record stored using <a
+ * href="https://avro.apache.org/docs/current/specification/#single-object-encoding">Avro
+ * single-object encoding</a>: a two byte marker ({@code 0xC3 0x01}), the little-endian 64-bit
+ * parsing fingerprint of the writer schema, and the record data in Avro binary encoding.
+ *
+ * <p>Since the record does not carry its writer schema, it can only be decoded if the writer schema
+ * is known to the {@link AvroSchemaCache}: either because it is one of the schemas this library was
+ * generated from, or because it was previously read from a {@link AvroConfiguration} record. A
+ * producer updated to a newer schema ahead of its consumers (see the README's schema evolution
+ * rules) should therefore continue to write {@code config.json} alongside {@code config.avro}, so
+ * that consumers can fall back to it.
+ */
+final class SingleObjectConfiguration implements StoredConfiguration {
+  private static final byte MARKER_0 = (byte) 0xC3;
+  private static final byte MARKER_1 = (byte) 0x01;
+  private static final int FINGERPRINT_OFFSET = 2;
+  private static final int HEADER_LENGTH = FINGERPRINT_OFFSET + Long.BYTES;
+
+  private final byte[] encoded;
+  private final long fingerprint;
+
+  /**
+   * Wrap a single-object encoded record; the passed array is retained, and must not be modified.
+   *
+   * @throws BadHeaderException if the passed bytes do not start with a single-object header
+   */
+  SingleObjectConfiguration(byte[] encoded) {
+    if (encoded.length < HEADER_LENGTH || encoded[0] != MARKER_0 || encoded[1] != MARKER_1) {
+      throw new BadHeaderException("Configuration is not in Avro single-object encoding.");
+    }
+    this.encoded = encoded;
+
+    long value = 0;
+    for (int i = HEADER_LENGTH - 1; i >= FINGERPRINT_OFFSET; i--) {
+      value = (value << Byte.SIZE) | (encoded[i] & 0xff);
+    }
+    this.fingerprint = value;
+  }
+
+  /** Get the parsing fingerprint of the schema the record was written with. */
+  long fingerprint() {
+    return fingerprint;
+  }
+
+  @Override
+  public <T> T decode(AvroSchemaCache schemaCache, Schema readerSchema) throws IOException {
+    AvroSchemaCache.FingerprintedSchema writerSchema = schemaCache.getWriterSchema(fingerprint);
+    if (writerSchema == null) {
+      throw new MissingSchemaException(
+          String.format("Configuration written with unknown schema %016x.", fingerprint));
+    }
+    DatumReader<T> reader = schemaCache.getReader(writerSchema, readerSchema);
+    BinaryDecoder decoder =
+        DecoderFactory.get()
+            .binaryDecoder(encoded, HEADER_LENGTH, encoded.length - HEADER_LENGTH, null);
+    return reader.read(null, decoder);
+  }
+}
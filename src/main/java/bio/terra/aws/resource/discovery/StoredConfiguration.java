@@ -0,0 +1,31 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.IOException;
+import org.apache.avro.Schema;
+
+/**
+ * A Support Resource configuration record as read from storage, in one of the supported encodings:
+ *
+ * <ul>
+ *   <li>{@link AvroConfiguration}, stored in {@code config.json} files or objects: JSON wrapping a
+ *       base64-encoded writer schema and a base64-encoded Avro JSON payload
+ *   <li>{@link SingleObjectConfiguration}, stored in {@code config.avro} files or objects: Avro
+ *       single-object encoding, identifying the writer schema by its fingerprint
+ * </ul>
+ *
+ * <p>Instances are immutable, and retain the stored (undecoded) record; records are only decoded
+ * when a discovery finds that they have changed.
+ */
+interface StoredConfiguration {
+
+  /**
+   * Decode the record into the generated model class for the passed reader schema.
+   *
+   * @param schemaCache cache providing parsed writer schemas and resolving readers
+   * @param readerSchema the schema of the generated model class to decode into
+   * @return the decoded model
+   * @param <T> type of generated model class
+   * @throws IOException IOException
+   */
+  <T> T decode(AvroSchemaCache schemaCache, Schema readerSchema) throws IOException;
+}
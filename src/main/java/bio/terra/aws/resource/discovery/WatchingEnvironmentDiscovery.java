@@ -0,0 +1,349 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * An {@link EnvironmentDiscovery} implementation that holds the {@link Environment} stored in a
+ * file system directory (laid out as described in {@link FilesystemEnvironmentDiscovery}) in
+ * memory, and reloads it when the directory changes, as notified by a {@link WatchService}.
+ *
+ * <p>Discoveries are served from an immutable snapshot published through a single volatile field,
+ * without reading the file system, locking or allocation. The snapshot is reloaded by a daemon
+ * thread once changes stop arriving for the debounce period (see {@link
+ * Builder#debouncePeriod(Duration)}), so that a batch of changes, such as the atomic symlink swap
+ * used to update a Kubernetes ConfigMap volume, is applied as a single reload. A change to a single
+ * Landing Zone directory rebuilds only that Landing Zone, and a change to the {@code environment}
+ * directory only the Global Support Resources; any other change (including a replaced {@code vM}
+ * directory or bundle file, or events lost by the {@link WatchService}) rediscovers the whole
+ * Environment, which still parses only the configuration files that changed.
+ *
+ * <p>If a reload fails (for example, because a configuration file is invalid), the last
+ * successfully discovered Environment continues to be served, and the next change reloads the whole
+ * Environment. If no Environment has been discovered yet, the failure is rethrown to callers.
+ *
+ * <p>How quickly changes are noticed depends on the platform's {@link WatchService}: on Linux,
+ * events are delivered immediately, while some platforms poll the file system every few seconds.
+ * Instances must be closed to stop watching.
+ */
+public class WatchingEnvironmentDiscovery implements EnvironmentDiscovery, Closeable {
+
+  private final FilesystemEnvironmentDiscovery filesystemEnvironmentDiscovery;
+  private final long debouncePeriodNanos;
+  private final WatchService watchService;
+
+  /** Directory watched by each key; accessed only by the watching thread once it is started. */
+  private final Map<WatchKey, Path> watchedDirectories;
+
+  /** Whether the next reload must rediscover the whole Environment, after a failed reload. */
+  private boolean fullReloadPending;
+
+  private volatile Snapshot snapshot;
+
+  /**
+   * Immutable snapshot: the Environment last discovered, along with the same Environment without
+   * Landing Zones, or the failure of the first discovery if none succeeded yet.
+   */
+  private record Snapshot(
+      Environment environment, Environment environmentOnly, Exception failure) {}
+
+  /** The changes notified in a batch of events. */
+  private static final class Changes {
+    boolean environment;
+    boolean full;
+    final Set<Region> regions = new HashSet<>();
+  }
+
+  private WatchingEnvironmentDiscovery(Builder builder) throws IOException {
+    if (builder.basePath == null) {
+      throw new IllegalArgumentException("Base path may not be null.");
+    }
+    if (builder.debouncePeriod == null || builder.debouncePeriod.isNegative()) {
+      throw new IllegalArgumentException("Debounce period must be non-negative.");
+    }
+    this.filesystemEnvironmentDiscovery =
+        FilesystemEnvironmentDiscovery.builder()
+            .basePath(builder.basePath)
+            .executor(builder.executor)
+            .contentHashing(builder.contentHashing)
+            .build();
+    this.debouncePeriodNanos = builder.debouncePeriod.toNanos();
+    this.watchService = builder.basePath.getFileSystem().newWatchService();
+    this.watchedDirectories = new HashMap<>();
+
+    // Watch before discovering, so that no change made during the first discovery is missed.
+    registerDirectories();
+    snapshot = discover(null);
+
+    Thread thread = new Thread(this::watch, "environment-discovery-watcher");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Builder for class {@link WatchingEnvironmentDiscovery} */
+  public static class Builder {
+    private Path basePath;
+    private Duration debouncePeriod;
+    private Executor executor;
+    private boolean contentHashing;
+
+    private Builder() {
+      debouncePeriod = Duration.ofMillis(50);
+      executor = DiscoveryExecutors.defaultExecutor();
+    }
+
+    /**
+     * Set the base path of the file system directory to watch, laid out as described in {@link
+     * FilesystemEnvironmentDiscovery}
+     */
+    public Builder basePath(Path basePath) {
+      this.basePath = basePath;
+      return this;
+    }
+
+    /**
+     * Set how long the directory must go without changing before changes are applied; by default 50
+     * milliseconds
+     */
+    public Builder debouncePeriod(Duration debouncePeriod) {
+      this.debouncePeriod = debouncePeriod;
+      return this;
+    }
+
+    /**
+     * Set the executor on which configuration files are read and parsed concurrently; by default
+     * virtual threads where available
+     */
+    public Builder executor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Set whether to hash the content of configuration files (see {@link
+     * FilesystemEnvironmentDiscovery.Builder#contentHashing(boolean)}), so that files whose content
+     * is unchanged by a ConfigMap update are not parsed again; disabled by default
+     */
+    public Builder contentHashing(boolean contentHashing) {
+      this.contentHashing = contentHashing;
+      return this;
+    }
+
+    /**
+     * Build the {@link WatchingEnvironmentDiscovery} instance, discovering the Environment and
+     * starting to watch the directory.
+     *
+     * @throws IOException if the directory cannot be watched
+     */
+    public WatchingEnvironmentDiscovery build() throws IOException {
+      return new WatchingEnvironmentDiscovery(this);
+    }
+  }
+
+  /** Get a {@link Builder} for {@link WatchingEnvironmentDiscovery} */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  @Override
+  public Environment discoverEnvironment() throws IOException {
+    return getSnapshot().environment();
+  }
+
+  @Override
+  public Optional<LandingZone> discoverLandingZone(Region region) throws IOException {
+    return getSnapshot().environment().getLandingZone(region);
+  }
+
+  @Override
+  public Environment discoverEnvironmentOnly() throws IOException {
+    return getSnapshot().environmentOnly();
+  }
+
+  /** Stop watching the directory; discoveries continue to return the last Environment. */
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private Snapshot getSnapshot() throws IOException {
+    Snapshot current = snapshot;
+    if (current.environment() == null) {
+      if (current.failure() instanceof IOException ioException) {
+        throw ioException;
+      }
+      throw (RuntimeException) current.failure();
+    }
+    return current;
+  }
+
+  /**
+   * Watch the directory until the {@link WatchService} is closed, reloading the Environment after
+   * each batch of changes.
+   */
+  private void watch() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        Changes changes = new Changes();
+        do {
+          collectChanges(key, changes);
+          key = watchService.poll(debouncePeriodNanos, TimeUnit.NANOSECONDS);
+        } while (key != null);
+
+        // Watch directories created by these changes before reading them.
+        registerDirectories();
+        snapshot = reload(changes);
+      }
+    } catch (ClosedWatchServiceException | InterruptedException exception) {
+      // Closed: stop watching.
+    }
+  }
+
+  /** Private helper to classify the events of a signalled key into the changes they notify. */
+  private void collectChanges(WatchKey key, Changes changes) {
+    Path directory = watchedDirectories.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (directory == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        changes.full = true;
+        continue;
+      }
+      Path landingZoneDirectory = filesystemEnvironmentDiscovery.getLandingZoneSubdirectoryPath();
+      if (directory.equals(landingZoneDirectory)) {
+        // A Landing Zone directory was created, deleted or replaced.
+        changes.regions.add(Region.of(((Path) event.context()).toString()));
+      } else if (landingZoneDirectory.equals(directory.getParent())) {
+        changes.regions.add(Region.of(directory.getFileName().toString()));
+      } else if (directory.equals(
+          filesystemEnvironmentDiscovery.getEnvironmentSubdirectoryPath())) {
+        changes.environment = true;
+      } else {
+        changes.full = true;
+      }
+    }
+    if (!key.reset()) {
+      // The directory no longer exists; its parent's events notify the change.
+      watchedDirectories.remove(key);
+    }
+  }
+
+  /**
+   * Private helper to watch the base, {@code vM}, {@code environment}, {@code landingzones} and
+   * Landing Zone directories that exist. Directories that are already watched keep their key.
+   */
+  private void registerDirectories() {
+    Path versionDirectory = filesystemEnvironmentDiscovery.getVersionSubdirectoryPath();
+    Path landingZoneDirectory = filesystemEnvironmentDiscovery.getLandingZoneSubdirectoryPath();
+    List<Path> directories =
+        new ArrayList<>(
+            List.of(
+                versionDirectory.getParent(),
+                versionDirectory,
+                filesystemEnvironmentDiscovery.getEnvironmentSubdirectoryPath(),
+                landingZoneDirectory));
+    try (DirectoryStream<Path> regionDirectories =
+        Files.newDirectoryStream(landingZoneDirectory, Files::isDirectory)) {
+      regionDirectories.forEach(directories::add);
+    } catch (IOException exception) {
+      // There are no Landing Zone directories to watch.
+    }
+
+    for (Path directory : directories) {
+      try {
+        watchedDirectories.put(
+            directory.register(
+                watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY),
+            directory);
+      } catch (NoSuchFileException | NotDirectoryException exception) {
+        // Not watched until its parent notifies that it was created.
+      } catch (IOException exception) {
+        // Unwatchable; changes to it are only picked up along with other changes.
+      }
+    }
+  }
+
+  /**
+   * Private helper to rediscover the parts of the Environment that changed, keeping the current
+   * snapshot if none did.
+   */
+  private Snapshot reload(Changes changes) {
+    Snapshot current = snapshot;
+    if (current.environment() == null || changes.full || fullReloadPending) {
+      return discover(current);
+    }
+    try {
+      Environment environmentOnly =
+          changes.environment
+              ? filesystemEnvironmentDiscovery.discoverEnvironmentOnly()
+              : current.environmentOnly();
+      boolean changed = environmentOnly != current.environmentOnly();
+
+      Map<Region, LandingZone> landingZones = new HashMap<>();
+      for (Region region : current.environment().getSupportedRegions()) {
+        landingZones.put(region, current.environment().getLandingZone(region).get());
+      }
+      for (Region region : changes.regions) {
+        LandingZone landingZone =
+            filesystemEnvironmentDiscovery.discoverLandingZone(region).orElse(null);
+        LandingZone previousLandingZone =
+            landingZone == null
+                ? landingZones.remove(region)
+                : landingZones.put(region, landingZone);
+        changed |= landingZone != previousLandingZone;
+      }
+      if (!changed) {
+        return current;
+      }
+
+      Environment.Builder builder = environmentOnly.toBuilder();
+      landingZones.forEach(builder::addLandingZone);
+      return new Snapshot(builder.build(), environmentOnly, null);
+    } catch (IOException | RuntimeException exception) {
+      fullReloadPending = true;
+      return current;
+    }
+  }
+
+  /**
+   * Private helper to discover the whole Environment, returning a snapshot of it, or of the failure
+   * if there is no current Environment to keep serving.
+   */
+  private Snapshot discover(Snapshot current) {
+    try {
+      Environment environment = filesystemEnvironmentDiscovery.discoverEnvironment();
+      fullReloadPending = false;
+      return current != null && current.environment() == environment
+          ? current
+          : new Snapshot(environment, environment.withoutLandingZones(), null);
+    } catch (IOException | RuntimeException exception) {
+      fullReloadPending = true;
+      return current != null && current.environment() != null
+          ? current
+          : new Snapshot(null, null, exception);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package bio.terra.aws.resource.discovery;
+
+import bio.terra.aws.resource.discovery.avro.LandingZoneModel;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AvroConfigurationTest extends EnvironmentDiscoveryTestBase {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private Path getLandingZoneConfigurationPath() {
+    return getValidationTestDataPath()
+        .resolve("v0")
+        .resolve("landingzones")
+        .resolve("us-east-1")
+        .resolve("config.json");
+  }
+
+  private static LandingZoneModel decode(AvroSchemaCache cache, String content) throws IOException {
+    return new AvroConfiguration(content.getBytes(StandardCharsets.UTF_8), JSON_FACTORY)
+        .decode(cache, LandingZoneModel.getClassSchema());
+  }
+
+  @Test
+  public void escapedValuesDecoded() throws IOException {
+    String content = Files.readString(getLandingZoneConfigurationPath());
+    AvroSchemaCache cache = new AvroSchemaCache();
+    LandingZoneModel expected = decode(cache, content);
+
+    // Base64 text never needs escaping, but JSON writers are free to escape any character.
+    String escaped = content.replace("A", "\\u0041");
+    Assertions.assertNotEquals(content, escaped);
+    Assertions.assertEquals(expected, decode(cache, escaped));
+    Assertions.assertEquals(expected, decode(new AvroSchemaCache(), escaped));
+  }
+
+  @Test
+  public void fieldOrderAndUnknownFieldsIgnored() throws IOException {
+    String content = Files.readString(getLandingZoneConfigurationPath());
+    AvroSchemaCache cache = new AvroSchemaCache();
+    LandingZoneModel expected = decode(cache, content);
+
+    JsonNode record = new ObjectMapper().readTree(content);
+    String reordered =
+        String.format(
+            "{\"unknown\": {\"schema\": [1, 2]}, \"payload\": \"%s\", \"schema\": \"%s\"}",
+            record.get("payload").asText(), record.get("schema").asText());
+    Assertions.assertEquals(expected, decode(cache, reordered));
+  }
+
+  @Test
+  public void invalidRecords() {
+    for (String content :
+        new String[] {
+          "[]",
+          "{\"schema\": \"e30=\"}",
+          "{\"payload\": \"e30=\"}",
+          "{\"schema\": 1, \"payload\": \"e30=\"}",
+          "{\"schema\": \"e30=\", \"payload\": \"e30=\"",
+        }) {
+      Assertions.assertThrows(
+          JsonProcessingException.class,
+          () -> new AvroConfiguration(content.getBytes(StandardCharsets.UTF_8), JSON_FACTORY),
+          content);
+    }
+  }
+}
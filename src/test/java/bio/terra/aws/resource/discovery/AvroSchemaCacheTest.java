@@ -0,0 +1,66 @@
+package bio.terra.aws.resource.discovery;
+
+import bio.terra.aws.resource.discovery.avro.EnvironmentModel;
+import bio.terra.aws.resource.discovery.avro.LandingZoneModel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.io.DatumReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class AvroSchemaCacheTest {
+
+  @Test
+  public void writerSchemasSharedByFingerprint() throws IOException {
+    AvroSchemaCache cache = new AvroSchemaCache();
+    Schema schema = EnvironmentModel.getClassSchema();
+
+    AvroSchemaCache.FingerprintedSchema compact = cache.getWriterSchema(schema.toString());
+    Assertions.assertEquals(schema, compact.schema());
+    Assertions.assertSame(compact, cache.getWriterSchema(schema.toString()));
+
+    // Differently formatted documents of the same schema share the parsed schema.
+    String prettyPrinted = new ObjectMapper().readTree(schema.toString()).toPrettyString();
+    Assertions.assertSame(compact, cache.getWriterSchema(prettyPrinted));
+
+    Assertions.assertNotEquals(
+        compact.fingerprint(),
+        cache.getWriterSchema(LandingZoneModel.getClassSchema().toString()).fingerprint());
+  }
+
+  @Test
+  public void readersSharedPerSchemaPair() {
+    AvroSchemaCache cache = new AvroSchemaCache();
+    AvroSchemaCache.FingerprintedSchema writerSchema =
+        cache.getWriterSchema(EnvironmentModel.getClassSchema().toString());
+
+    DatumReader<EnvironmentModel> reader =
+        cache.getReader(writerSchema, EnvironmentModel.getClassSchema());
+    Assertions.assertSame(reader, cache.getReader(writerSchema, EnvironmentModel.getClassSchema()));
+  }
+
+  @Test
+  public void incompatibleSchemas() {
+    AvroSchemaCache cache = new AvroSchemaCache();
+
+    // A writer schema lacking all the reader's (required) fields.
+    Schema incompatible =
+        SchemaBuilder.record(EnvironmentModel.getClassSchema().getName())
+            .namespace(EnvironmentModel.getClassSchema().getNamespace())
+            .fields()
+            .endRecord();
+    AvroSchemaCache.FingerprintedSchema writerSchema =
+        cache.getWriterSchema(incompatible.toString());
+
+    Assertions.assertThrows(
+        AvroTypeException.class,
+        () -> cache.getReader(writerSchema, EnvironmentModel.getClassSchema()));
+    // The cached incompatibility is reported again on later lookups.
+    Assertions.assertThrows(
+        AvroTypeException.class,
+        () -> cache.getReader(writerSchema, EnvironmentModel.getClassSchema()));
+  }
+}
@@ -1,12 +1,100 @@
 package bio.terra.aws.resource.discovery;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.regions.Region;
 
 public class CachedEnvironmentDiscoveryTest extends EnvironmentDiscoveryTestBase {
+
+  /** Counts full and selective discoveries by a backing {@link EnvironmentDiscovery}. */
+  private static class CountingEnvironmentDiscovery implements EnvironmentDiscovery {
+    private final EnvironmentDiscovery delegate;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicInteger selectiveCount = new AtomicInteger();
+
+    CountingEnvironmentDiscovery(EnvironmentDiscovery delegate) {
+      this.delegate = delegate;
+    }
+
+    int getCount() {
+      return count.get();
+    }
+
+    @Override
+    public Environment discoverEnvironment() throws IOException {
+      count.incrementAndGet();
+      return delegate.discoverEnvironment();
+    }
+
+    int getSelectiveCount() {
+      return selectiveCount.get();
+    }
+
+    @Override
+    public Optional<LandingZone> discoverLandingZone(Region region) throws IOException {
+      selectiveCount.incrementAndGet();
+      return delegate.discoverLandingZone(region);
+    }
+
+    @Override
+    public Environment discoverEnvironmentOnly() throws IOException {
+      selectiveCount.incrementAndGet();
+      return delegate.discoverEnvironmentOnly();
+    }
+  }
+
+  /** Queues submitted tasks so that tests can control when background work runs. */
+  private static class QueueingExecutor implements Executor {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public synchronized void execute(Runnable command) {
+      tasks.add(command);
+    }
+
+    synchronized int size() {
+      return tasks.size();
+    }
+
+    void runAll() {
+      Runnable task;
+      while ((task = poll()) != null) {
+        task.run();
+      }
+    }
+
+    private synchronized Runnable poll() {
+      return tasks.poll();
+    }
+  }
+
+  private static void waitForExpiration(CachedEnvironmentDiscovery.CachedEnvironment entry)
+      throws InterruptedException {
+    while (!Instant.now().isAfter(entry.expirationTime())) {
+      Thread.sleep(10);
+    }
+  }
+
   @Test
   public void validation() throws IOException {
     Duration expirationPeriod = Duration.ofMillis(500);
@@ -77,6 +165,31 @@ public class CachedEnvironmentDiscoveryTest extends EnvironmentDiscoveryTestBase
     v0_5BackwardTestLogic(cachedEnvironmentDiscovery);
   }
 
+  @Test
+  public void selectiveDiscovery() throws IOException, InterruptedException {
+    CountingEnvironmentDiscovery backingDiscovery =
+        new CountingEnvironmentDiscovery(
+            new FilesystemEnvironmentDiscovery(getValidationTestDataPath()));
+    CachedEnvironmentDiscovery discovery =
+        new CachedEnvironmentDiscovery(backingDiscovery, Duration.ofMillis(500));
+    selectiveDiscoveryTestLogic(discovery);
+    Assertions.assertEquals(0, backingDiscovery.getCount());
+    int selectiveCount = backingDiscovery.getSelectiveCount();
+
+    // Each part is cached separately until it expires.
+    selectiveDiscoveryTestLogic(discovery);
+    Assertions.assertEquals(selectiveCount, backingDiscovery.getSelectiveCount());
+    Thread.sleep(600);
+    discovery.discoverLandingZone(Region.US_EAST_1);
+    Assertions.assertEquals(selectiveCount + 1, backingDiscovery.getSelectiveCount());
+
+    // While a full discovery is cached, selective discoveries are served from it.
+    discovery.discoverEnvironment();
+    selectiveDiscoveryTestLogic(discovery);
+    Assertions.assertEquals(1, backingDiscovery.getCount());
+    Assertions.assertEquals(selectiveCount + 1, backingDiscovery.getSelectiveCount());
+  }
+
   @Test
   public void expiration() throws IOException, InterruptedException {
     Duration expirationPeriod = Duration.ofMillis(500);
@@ -117,4 +230,453 @@ public class CachedEnvironmentDiscoveryTest extends EnvironmentDiscoveryTestBase
     Assertions.assertTrue(
         secondCachedEnvironment.expirationTime().isAfter(firstCachedEnvironment.expirationTime()));
   }
+
+  @Test
+  public void staleWhileRevalidate() throws IOException, InterruptedException {
+    CountingEnvironmentDiscovery discovery =
+        new CountingEnvironmentDiscovery(
+            new FilesystemEnvironmentDiscovery(getValidationTestDataPath()));
+    QueueingExecutor executor = new QueueingExecutor();
+    CachedEnvironmentDiscovery cachedEnvironmentDiscovery =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(Duration.ofMillis(50))
+            .maxStaleness(Duration.ofHours(1))
+            .refreshExecutor(executor)
+            .build();
+
+    CachedEnvironmentDiscovery.CachedEnvironment firstCachedEnvironment =
+        cachedEnvironmentDiscovery.getOrDiscoverEnvironment();
+    Assertions.assertEquals(1, discovery.getCount());
+    waitForExpiration(firstCachedEnvironment);
+
+    // Expired entries within the maximum staleness are served as-is, and only a single background
+    // refresh is scheduled no matter how many callers observe the stale entry.
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertSame(
+          firstCachedEnvironment.environment(), cachedEnvironmentDiscovery.discoverEnvironment());
+    }
+    Assertions.assertEquals(1, discovery.getCount());
+    Assertions.assertEquals(1, executor.size());
+
+    executor.runAll();
+    Assertions.assertEquals(2, discovery.getCount());
+
+    CachedEnvironmentDiscovery.CachedEnvironment refreshedCachedEnvironment =
+        cachedEnvironmentDiscovery.getOrDiscoverEnvironment();
+    Assertions.assertEquals(
+        firstCachedEnvironment.environment(), refreshedCachedEnvironment.environment());
+    Assertions.assertTrue(
+        refreshedCachedEnvironment
+            .expirationTime()
+            .isAfter(firstCachedEnvironment.expirationTime()));
+  }
+
+  @Test
+  public void selectiveStaleWhileRevalidate() throws IOException, InterruptedException {
+    CountingEnvironmentDiscovery discovery =
+        new CountingEnvironmentDiscovery(
+            new FilesystemEnvironmentDiscovery(getValidationTestDataPath()));
+    QueueingExecutor executor = new QueueingExecutor();
+    CachedEnvironmentDiscovery cachedEnvironmentDiscovery =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(Duration.ofMillis(50))
+            .maxStaleness(Duration.ofHours(1))
+            .refreshExecutor(executor)
+            .build();
+
+    CachedEnvironmentDiscovery.CachedEnvironment firstCachedEnvironment =
+        cachedEnvironmentDiscovery.getOrDiscoverEnvironment();
+    Environment environmentOnly = cachedEnvironmentDiscovery.discoverEnvironmentOnly();
+    Assertions.assertSame(environmentOnly, cachedEnvironmentDiscovery.discoverEnvironmentOnly());
+    waitForExpiration(firstCachedEnvironment);
+
+    // Selective discoveries are served from the stale entry too, scheduling the same refresh.
+    Assertions.assertSame(
+        firstCachedEnvironment.environment().getLandingZone(Region.US_EAST_1).get(),
+        cachedEnvironmentDiscovery.discoverLandingZone(Region.US_EAST_1).get());
+    Assertions.assertSame(environmentOnly, cachedEnvironmentDiscovery.discoverEnvironmentOnly());
+    Assertions.assertEquals(0, discovery.getSelectiveCount());
+    Assertions.assertEquals(1, discovery.getCount());
+    Assertions.assertEquals(1, executor.size());
+
+    executor.runAll();
+    Assertions.assertEquals(2, discovery.getCount());
+    Assertions.assertEquals(0, discovery.getSelectiveCount());
+  }
+
+  @Test
+  public void maxStalenessExceeded() throws IOException, InterruptedException {
+    Duration expirationPeriod = Duration.ofMillis(50);
+    Duration maxStaleness = Duration.ofMillis(50);
+    CountingEnvironmentDiscovery discovery =
+        new CountingEnvironmentDiscovery(
+            new FilesystemEnvironmentDiscovery(getValidationTestDataPath()));
+    QueueingExecutor executor = new QueueingExecutor();
+    CachedEnvironmentDiscovery cachedEnvironmentDiscovery =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(expirationPeriod)
+            .maxStaleness(maxStaleness)
+            .refreshExecutor(executor)
+            .build();
+
+    CachedEnvironmentDiscovery.CachedEnvironment firstCachedEnvironment =
+        cachedEnvironmentDiscovery.getOrDiscoverEnvironment();
+
+    // Once past expiration time plus maximum staleness, callers block on discovery rather than
+    // being served the stale entry.
+    Instant hardExpirationTime = firstCachedEnvironment.expirationTime().plus(maxStaleness);
+    while (!Instant.now().isAfter(hardExpirationTime)) {
+      Thread.sleep(10);
+    }
+
+    CachedEnvironmentDiscovery.CachedEnvironment secondCachedEnvironment =
+        cachedEnvironmentDiscovery.getOrDiscoverEnvironment();
+    Assertions.assertEquals(2, discovery.getCount());
+    Assertions.assertEquals(0, executor.size());
+    Assertions.assertTrue(
+        secondCachedEnvironment.expirationTime().isAfter(firstCachedEnvironment.expirationTime()));
+  }
+
+  @Test
+  public void staleWhileRevalidateRefreshFailure() throws IOException, InterruptedException {
+    Environment environment =
+        new FilesystemEnvironmentDiscovery(getValidationTestDataPath()).discoverEnvironment();
+    AtomicInteger count = new AtomicInteger();
+    EnvironmentDiscovery discovery =
+        () -> {
+          if (count.incrementAndGet() > 1) {
+            throw new IOException("Discovery failed.");
+          }
+          return environment;
+        };
+    QueueingExecutor executor = new QueueingExecutor();
+    CachedEnvironmentDiscovery cachedEnvironmentDiscovery =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(Duration.ofMillis(50))
+            .maxStaleness(Duration.ofHours(1))
+            .refreshExecutor(executor)
+            .build();
+
+    waitForExpiration(cachedEnvironmentDiscovery.getOrDiscoverEnvironment());
+    Assertions.assertSame(environment, cachedEnvironmentDiscovery.discoverEnvironment());
+
+    // A failed background refresh leaves the stale entry in place, and a later caller schedules
+    // another attempt.
+    executor.runAll();
+    Assertions.assertEquals(2, count.get());
+    Assertions.assertSame(environment, cachedEnvironmentDiscovery.discoverEnvironment());
+    Assertions.assertEquals(1, executor.size());
+  }
+
+  @Test
+  public void singleFlightDiscovery() throws Exception {
+    Environment environment =
+        new FilesystemEnvironmentDiscovery(getValidationTestDataPath()).discoverEnvironment();
+    CountDownLatch discoveryStarted = new CountDownLatch(1);
+    CountDownLatch releaseDiscovery = new CountDownLatch(1);
+    AtomicInteger count = new AtomicInteger();
+    EnvironmentDiscovery discovery =
+        () -> {
+          count.incrementAndGet();
+          discoveryStarted.countDown();
+          try {
+            releaseDiscovery.await();
+          } catch (InterruptedException exception) {
+            throw new IOException(exception);
+          }
+          return environment;
+        };
+    CachedEnvironmentDiscovery cachedEnvironmentDiscovery =
+        new CachedEnvironmentDiscovery(discovery, Duration.ofHours(1));
+
+    int threadCount = 8;
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+    try {
+      List<Future<Environment>> futures = new ArrayList<>();
+      for (int i = 0; i < threadCount; i++) {
+        futures.add(executorService.submit(cachedEnvironmentDiscovery::discoverEnvironment));
+      }
+
+      // All callers miss concurrently, but only one performs discovery while the others wait.
+      Assertions.assertTrue(discoveryStarted.await(10, TimeUnit.SECONDS));
+      releaseDiscovery.countDown();
+      for (Future<Environment> future : futures) {
+        Assertions.assertSame(environment, future.get(10, TimeUnit.SECONDS));
+      }
+      Assertions.assertEquals(1, count.get());
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void singleFlightDiscoveryFailure() throws Exception {
+    CountDownLatch discoveryStarted = new CountDownLatch(1);
+    CountDownLatch releaseDiscovery = new CountDownLatch(1);
+    AtomicInteger count = new AtomicInteger();
+    EnvironmentDiscovery discovery =
+        () -> {
+          count.incrementAndGet();
+          discoveryStarted.countDown();
+          try {
+            releaseDiscovery.await();
+          } catch (InterruptedException exception) {
+            throw new IOException(exception);
+          }
+          throw new IOException("Discovery failed.");
+        };
+    CachedEnvironmentDiscovery cachedEnvironmentDiscovery =
+        new CachedEnvironmentDiscovery(discovery, Duration.ofHours(1));
+
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      Future<Environment> first =
+          executorService.submit(cachedEnvironmentDiscovery::discoverEnvironment);
+      Assertions.assertTrue(discoveryStarted.await(10, TimeUnit.SECONDS));
+      Future<Environment> second =
+          executorService.submit(cachedEnvironmentDiscovery::discoverEnvironment);
+      releaseDiscovery.countDown();
+
+      // Waiting callers observe the failure of the discovery they joined (or of their own, if they
+      // arrived after it completed); failures are not cached, so a later call retries.
+      for (Future<Environment> future : List.of(first, second)) {
+        ExecutionException exception =
+            Assertions.assertThrows(
+                ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(IOException.class, exception.getCause());
+      }
+      int attempts = count.get();
+      Assertions.assertThrows(IOException.class, cachedEnvironmentDiscovery::discoverEnvironment);
+      Assertions.assertEquals(attempts + 1, count.get());
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void persistentSnapshot(@TempDir Path tempDir) throws IOException {
+    Path snapshotPath = tempDir.resolve("environment.snapshot");
+    CountingEnvironmentDiscovery discovery =
+        new CountingEnvironmentDiscovery(
+            new FilesystemEnvironmentDiscovery(getValidationTestDataPath()));
+
+    // No snapshot exists yet, so the first instance discovers synchronously, then writes one in
+    // the background.
+    QueueingExecutor executor = new QueueingExecutor();
+    CachedEnvironmentDiscovery first =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(Duration.ofHours(1))
+            .refreshExecutor(executor)
+            .snapshotPath(snapshotPath)
+            .build();
+    Assertions.assertEquals(getExpectedEnvironment(), first.discoverEnvironment());
+    Assertions.assertEquals(1, discovery.getCount());
+    Assertions.assertFalse(Files.exists(snapshotPath));
+    Assertions.assertEquals(1, executor.size());
+    executor.runAll();
+    Assertions.assertTrue(Files.exists(snapshotPath));
+
+    // A second instance serves the persisted Environment without waiting on the backing discovery,
+    // while validating it in the background.
+    CachedEnvironmentDiscovery second =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(Duration.ofHours(1))
+            .refreshExecutor(executor)
+            .snapshotPath(snapshotPath)
+            .build();
+    Assertions.assertEquals(1, executor.size());
+    Assertions.assertEquals(getExpectedEnvironment(), second.discoverEnvironment());
+    Assertions.assertEquals(getExpectedEnvironment(), second.discoverEnvironment());
+    Assertions.assertEquals(1, discovery.getCount());
+    Assertions.assertEquals(1, executor.size());
+
+    executor.runAll();
+    Assertions.assertEquals(2, discovery.getCount());
+    Assertions.assertSame(discovery.delegate.discoverEnvironment(), second.discoverEnvironment());
+    Assertions.assertEquals(0, executor.size());
+  }
+
+  @Test
+  public void unreadableSnapshotIgnored(@TempDir Path tempDir) throws IOException {
+    Path snapshotPath = tempDir.resolve("environment.snapshot");
+    Files.writeString(snapshotPath, "not a snapshot");
+
+    CountingEnvironmentDiscovery discovery =
+        new CountingEnvironmentDiscovery(
+            new FilesystemEnvironmentDiscovery(getValidationTestDataPath()));
+    QueueingExecutor executor = new QueueingExecutor();
+    CachedEnvironmentDiscovery cachedEnvironmentDiscovery =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(Duration.ofHours(1))
+            .refreshExecutor(executor)
+            .snapshotPath(snapshotPath)
+            .build();
+    Assertions.assertEquals(0, executor.size());
+
+    Assertions.assertEquals(
+        getExpectedEnvironment(), cachedEnvironmentDiscovery.discoverEnvironment());
+    Assertions.assertEquals(1, discovery.getCount());
+    executor.runAll();
+
+    // The unreadable snapshot is replaced by the discovered Environment.
+    CachedEnvironmentDiscovery reloaded =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(Duration.ofHours(1))
+            .refreshExecutor(executor)
+            .snapshotPath(snapshotPath)
+            .build();
+    Assertions.assertEquals(getExpectedEnvironment(), reloaded.discoverEnvironment());
+    Assertions.assertEquals(1, discovery.getCount());
+  }
+
+  @Test
+  public void configurationFailuresCached() throws InterruptedException {
+    NoSuchElementException missing = new NoSuchElementException("Missing configuration.");
+    CountingEnvironmentDiscovery discovery =
+        new CountingEnvironmentDiscovery(
+            () -> {
+              throw missing;
+            });
+    CachedEnvironmentDiscovery cachedEnvironmentDiscovery =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(Duration.ofHours(1))
+            .failureExpirationPeriod(Duration.ofMillis(200))
+            .build();
+
+    // The failure is rethrown from memory until the failure expiration period elapses.
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertSame(
+          missing,
+          Assertions.assertThrows(
+              NoSuchElementException.class, cachedEnvironmentDiscovery::discoverEnvironment));
+    }
+    Assertions.assertEquals(1, discovery.getCount());
+
+    Thread.sleep(250);
+    Assertions.assertThrows(
+        NoSuchElementException.class, cachedEnvironmentDiscovery::discoverEnvironment);
+    Assertions.assertEquals(2, discovery.getCount());
+  }
+
+  @Test
+  public void transientFailuresNotCached() {
+    CountingEnvironmentDiscovery discovery =
+        new CountingEnvironmentDiscovery(
+            () -> {
+              throw new IOException("Connection reset.");
+            });
+    CachedEnvironmentDiscovery cachedEnvironmentDiscovery =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(Duration.ofHours(1))
+            .failureExpirationPeriod(Duration.ofHours(1))
+            .build();
+
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertThrows(IOException.class, cachedEnvironmentDiscovery::discoverEnvironment);
+    }
+    Assertions.assertEquals(3, discovery.getCount());
+  }
+
+  @Test
+  public void earlyRefresh() throws IOException {
+    Environment environment = getExpectedEnvironment();
+    CountingEnvironmentDiscovery discovery =
+        new CountingEnvironmentDiscovery(
+            () -> {
+              try {
+                Thread.sleep(5);
+              } catch (InterruptedException exception) {
+                throw new IOException(exception);
+              }
+              return environment;
+            });
+    QueueingExecutor executor = new QueueingExecutor();
+
+    // With a discovery cost of at least 5ms, a factor this large makes the early refresh window
+    // span the whole expiration period, and an early refresh all but certain on the first hit.
+    CachedEnvironmentDiscovery cachedEnvironmentDiscovery =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(Duration.ofHours(1))
+            .earlyRefreshFactor(1e12)
+            .refreshExecutor(executor)
+            .build();
+
+    CachedEnvironmentDiscovery.CachedEnvironment first =
+        cachedEnvironmentDiscovery.getOrDiscoverEnvironment();
+    Assertions.assertEquals(1, discovery.getCount());
+    Assertions.assertSame(first, cachedEnvironmentDiscovery.getOrDiscoverEnvironment());
+    Assertions.assertEquals(1, executor.size());
+
+    executor.runAll();
+    Assertions.assertEquals(2, discovery.getCount());
+    Assertions.assertTrue(
+        cachedEnvironmentDiscovery
+            .getOrDiscoverEnvironment()
+            .expirationTime()
+            .isAfter(first.expirationTime()));
+  }
+
+  @Test
+  public void noEarlyRefreshByDefault() throws IOException {
+    CountingEnvironmentDiscovery discovery =
+        new CountingEnvironmentDiscovery(
+            new FilesystemEnvironmentDiscovery(getValidationTestDataPath()));
+    QueueingExecutor executor = new QueueingExecutor();
+    CachedEnvironmentDiscovery cachedEnvironmentDiscovery =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(discovery)
+            .expirationPeriod(Duration.ofHours(1))
+            .refreshExecutor(executor)
+            .build();
+
+    for (int i = 0; i < 100; i++) {
+      cachedEnvironmentDiscovery.discoverEnvironment();
+    }
+    Assertions.assertEquals(1, discovery.getCount());
+    Assertions.assertEquals(0, executor.size());
+  }
+
+  @Test
+  public void expirationJitter() throws IOException {
+    Environment environment = getExpectedEnvironment();
+    Duration expirationPeriod = Duration.ofHours(1);
+    for (int i = 0; i < 20; i++) {
+      Instant before = Instant.now();
+      CachedEnvironmentDiscovery.CachedEnvironment cachedEnvironment =
+          CachedEnvironmentDiscovery.builder()
+              .backingEnvironmentDiscovery(() -> environment)
+              .expirationPeriod(expirationPeriod)
+              .expirationJitter(0.5)
+              .build()
+              .getOrDiscoverEnvironment();
+      Instant after = Instant.now();
+      Assertions.assertFalse(
+          cachedEnvironment.expirationTime().isBefore(before.plus(expirationPeriod.dividedBy(2))));
+      Assertions.assertFalse(
+          cachedEnvironment
+              .expirationTime()
+              .isAfter(after.plus(expirationPeriod.multipliedBy(3).dividedBy(2))));
+    }
+
+    CachedEnvironmentDiscovery.Builder builder =
+        CachedEnvironmentDiscovery.builder()
+            .backingEnvironmentDiscovery(() -> environment)
+            .expirationPeriod(expirationPeriod);
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> builder.expirationJitter(1).build());
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> builder.expirationJitter(0).earlyRefreshFactor(-1).build());
+  }
 }
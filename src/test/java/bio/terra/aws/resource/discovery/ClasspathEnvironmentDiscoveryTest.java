@@ -0,0 +1,92 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ClasspathEnvironmentDiscoveryTest extends EnvironmentDiscoveryTestBase {
+
+  private static final String VALIDATION_RESOURCE_PATH = "test_discovery_data/validation";
+
+  /** Get a class loader reading resources from a directory only. */
+  private static ClassLoader directoryClassLoader(Path directory) throws IOException {
+    return new URLClassLoader(new URL[] {directory.toUri().toURL()}, null);
+  }
+
+  @Test
+  public void validation() throws IOException {
+    EnvironmentDiscovery discovery = new ClasspathEnvironmentDiscovery(VALIDATION_RESOURCE_PATH);
+    validationTestLogic(discovery);
+    selectiveDiscoveryTestLogic(discovery);
+    Assertions.assertSame(discovery.discoverEnvironment(), discovery.discoverEnvironment());
+
+    // Leading and trailing separators are ignored.
+    validationTestLogic(new ClasspathEnvironmentDiscovery("/" + VALIDATION_RESOURCE_PATH + "/"));
+  }
+
+  @Test
+  public void doesNotExist() {
+    Assertions.assertThrows(
+        NoSuchElementException.class,
+        () -> new ClasspathEnvironmentDiscovery("does_not_exist").discoverEnvironment());
+  }
+
+  @Test
+  public void bundle(@TempDir Path tempDir) throws IOException {
+    Path bundlePath = tempDir.resolve("environment/v0").resolve(ConfigurationBundle.BUNDLE_NAME);
+    Files.createDirectories(bundlePath.getParent());
+    Files.write(bundlePath, toBundle(getValidationTestDataPath(), true));
+    validationTestLogic(
+        new ClasspathEnvironmentDiscovery("environment", directoryClassLoader(tempDir)));
+  }
+
+  @Test
+  public void snapshot(@TempDir Path tempDir) throws IOException {
+    // The snapshot alone is sufficient.
+    ClasspathEnvironmentDiscovery.main(
+        new String[] {getValidationTestDataPath().toString(), tempDir.toString()});
+    EnvironmentDiscovery discovery =
+        new ClasspathEnvironmentDiscovery("", directoryClassLoader(tempDir));
+    validationTestLogic(discovery);
+    selectiveDiscoveryTestLogic(discovery);
+
+    // A snapshot that cannot be read falls back to the configuration resources.
+    Path snapshotPath = tempDir.resolve("v0").resolve(ClasspathEnvironmentDiscovery.SNAPSHOT_NAME);
+    Files.write(snapshotPath, new byte[] {1, 2, 3, 4, 5});
+    NoSuchElementException exception =
+        Assertions.assertThrows(
+            NoSuchElementException.class,
+            () ->
+                new ClasspathEnvironmentDiscovery("", directoryClassLoader(tempDir))
+                    .discoverEnvironment());
+    Assertions.assertEquals(1, exception.getSuppressed().length);
+    copyTree(getValidationTestDataPath(), tempDir);
+    validationTestLogic(new ClasspathEnvironmentDiscovery("", directoryClassLoader(tempDir)));
+  }
+
+  @Test
+  public void fallback() throws IOException {
+    IOException failure = new IOException("Storage unavailable.");
+    EnvironmentDiscovery failing =
+        () -> {
+          throw failure;
+        };
+    EnvironmentDiscovery discovery =
+        failing.withFallback(new ClasspathEnvironmentDiscovery(VALIDATION_RESOURCE_PATH));
+    validationTestLogic(discovery);
+    selectiveDiscoveryTestLogic(discovery);
+
+    // When both fail, the primary failure is thrown.
+    EnvironmentDiscovery bothFailing =
+        failing.withFallback(new ClasspathEnvironmentDiscovery("does_not_exist"));
+    Assertions.assertSame(
+        failure, Assertions.assertThrows(IOException.class, bothFailing::discoverEnvironment));
+    Assertions.assertInstanceOf(NoSuchElementException.class, failure.getSuppressed()[0]);
+  }
+}
@@ -0,0 +1,41 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ConfigurationBuffersTest extends EnvironmentDiscoveryTestBase {
+
+  @Test
+  public void filesRead(@TempDir Path tempDir) throws IOException {
+    // Files smaller and larger than a pooled buffer, and empty, are read whole.
+    Random random = new Random(0);
+    for (int size : new int[] {0, 100, ConfigurationBuffers.BUFFER_SIZE, 300_000}) {
+      byte[] content = new byte[size];
+      random.nextBytes(content);
+      Path path = tempDir.resolve("file" + size);
+      Files.write(path, content);
+
+      ByteBuffer buffer = ConfigurationBuffers.acquire(path);
+      try {
+        Assertions.assertTrue(buffer.isDirect());
+        Assertions.assertArrayEquals(content, ConfigurationBuffers.toArray(buffer));
+        Assertions.assertEquals(size, buffer.remaining());
+        try (InputStream input = ConfigurationBuffers.newInputStream(buffer)) {
+          Assertions.assertArrayEquals(content, input.readAllBytes());
+        }
+        Assertions.assertEquals(size, buffer.remaining());
+      } finally {
+        ConfigurationBuffers.release(buffer);
+      }
+      Assertions.assertArrayEquals(
+          content, ConfigurationBuffers.toArray(ConfigurationBuffers.map(path)));
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package bio.terra.aws.resource.discovery;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.regions.Region;
+
+public class ConfigurationBundleTest extends EnvironmentDiscoveryTestBase {
+
+  private static byte[] write(Map<String, byte[]> files) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ConfigurationBundle.write(files, false, output);
+    return output.toByteArray();
+  }
+
+  @Test
+  public void unchangedEntriesShared() throws IOException {
+    JsonFactory jsonFactory = new JsonFactory();
+    byte[] content = toBundle(getValidationTestDataPath(), true);
+    ConfigurationBundle first = ConfigurationBundle.read(content, jsonFactory, null);
+    ConfigurationBundle second = ConfigurationBundle.read(content, jsonFactory, first);
+
+    Assertions.assertSame(
+        first.getEnvironmentConfiguration(), second.getEnvironmentConfiguration());
+    Map<Region, StoredConfiguration> firstLandingZones = first.getLandingZoneConfigurations();
+    Assertions.assertEquals(Set.of(Region.US_EAST_1, Region.US_WEST_1), firstLandingZones.keySet());
+    Assertions.assertEquals(firstLandingZones, second.getLandingZoneConfigurations());
+
+    // A bundle read without the previous bundle shares nothing with it.
+    Assertions.assertNotSame(
+        first.getEnvironmentConfiguration(),
+        ConfigurationBundle.read(content, jsonFactory, null).getEnvironmentConfiguration());
+  }
+
+  @Test
+  public void bufferedBundles() throws IOException {
+    JsonFactory jsonFactory = new JsonFactory();
+    byte[] content = toBundle(getValidationTestDataPath(), false);
+    ConfigurationBundle heapBundle = ConfigurationBundle.read(content, jsonFactory, null);
+
+    // A bundle read from a direct buffer shares its unchanged entries with the previous bundle.
+    for (boolean compress : new boolean[] {false, true}) {
+      byte[] bundleContent = toBundle(getValidationTestDataPath(), compress);
+      ByteBuffer buffer = ByteBuffer.allocateDirect(bundleContent.length + 1).put((byte) 0);
+      buffer.put(bundleContent).flip().position(1);
+      ConfigurationBundle directBundle = ConfigurationBundle.read(buffer, jsonFactory, heapBundle);
+      Assertions.assertEquals(1, buffer.position());
+      Assertions.assertSame(
+          heapBundle.getEnvironmentConfiguration(), directBundle.getEnvironmentConfiguration());
+      Assertions.assertEquals(
+          heapBundle.getLandingZoneConfigurations(), directBundle.getLandingZoneConfigurations());
+    }
+  }
+
+  @Test
+  public void invalidBundles() throws IOException {
+    JsonFactory jsonFactory = new JsonFactory();
+    byte[] content = toBundle(getValidationTestDataPath(), false);
+
+    IOException exception =
+        Assertions.assertThrows(
+            IOException.class,
+            () -> ConfigurationBundle.read("not a bundle".getBytes(), jsonFactory, null));
+    Assertions.assertEquals("Not a configuration bundle.", exception.getMessage());
+
+    byte[] otherVersion = content.clone();
+    otherVersion[Integer.BYTES] = (byte) (ConfigurationBundle.FORMAT_VERSION + 1);
+    Assertions.assertThrows(
+        IOException.class, () -> ConfigurationBundle.read(otherVersion, jsonFactory, null));
+
+    for (int length : new int[] {2, 10, content.length - 1}) {
+      Assertions.assertThrows(
+          IOException.class,
+          () -> ConfigurationBundle.read(Arrays.copyOf(content, length), jsonFactory, null));
+    }
+
+    // A bundle holding only Landing Zones has no Environment configuration.
+    ConfigurationBundle noEnvironment =
+        ConfigurationBundle.read(
+            write(Map.of("landingzones/us-east-1/config.json", new byte[0])), jsonFactory, null);
+    Assertions.assertThrows(
+        NoSuchElementException.class, noEnvironment::getEnvironmentConfiguration);
+  }
+}
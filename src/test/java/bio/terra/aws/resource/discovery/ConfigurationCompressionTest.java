@@ -0,0 +1,68 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ConfigurationCompressionTest extends EnvironmentDiscoveryTestBase {
+
+  private static final byte[] CONTENT = "{\"schema\": \"\"}".getBytes(StandardCharsets.UTF_8);
+
+  @Test
+  public void uncompressedContentUnchanged() throws IOException {
+    Assertions.assertSame(CONTENT, ConfigurationCompression.decompress(CONTENT, false));
+    Assertions.assertArrayEquals(
+        CONTENT, ConfigurationCompression.readAllBytes(new ByteArrayInputStream(CONTENT), false));
+    ByteBuffer buffer = toDirectBuffer(CONTENT);
+    Assertions.assertArrayEquals(CONTENT, ConfigurationCompression.decompress(buffer, false));
+    Assertions.assertEquals(CONTENT.length, buffer.remaining());
+  }
+
+  @Test
+  public void compressedContentDetected() throws IOException {
+    byte[] compressed = gzip(CONTENT);
+    for (boolean declared : new boolean[] {false, true}) {
+      Assertions.assertArrayEquals(
+          CONTENT, ConfigurationCompression.decompress(compressed, declared));
+      Assertions.assertArrayEquals(
+          CONTENT,
+          ConfigurationCompression.readAllBytes(new ByteArrayInputStream(compressed), declared));
+      ByteBuffer buffer = toDirectBuffer(compressed);
+      Assertions.assertArrayEquals(CONTENT, ConfigurationCompression.decompress(buffer, declared));
+      Assertions.assertEquals(compressed.length, buffer.remaining());
+    }
+  }
+
+  @Test
+  public void declaredCompressionVerified() {
+    Assertions.assertThrows(
+        ZipException.class, () -> ConfigurationCompression.decompress(CONTENT, true));
+    Assertions.assertThrows(
+        ZipException.class,
+        () -> ConfigurationCompression.readAllBytes(new ByteArrayInputStream(CONTENT), true));
+    Assertions.assertThrows(
+        ZipException.class,
+        () -> ConfigurationCompression.decompress(toDirectBuffer(CONTENT), true));
+  }
+
+  /** Copy content into a direct buffer, after a byte of padding that is not part of the content. */
+  private static ByteBuffer toDirectBuffer(byte[] content) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(content.length + 1);
+    buffer.put((byte) 0).put(content).flip();
+    return buffer.position(1);
+  }
+
+  @Test
+  public void contentEncodings() {
+    Assertions.assertTrue(ConfigurationCompression.isGzipContentEncoding("gzip"));
+    Assertions.assertTrue(ConfigurationCompression.isGzipContentEncoding("X-GZIP"));
+    Assertions.assertFalse(ConfigurationCompression.isGzipContentEncoding("identity"));
+    Assertions.assertFalse(ConfigurationCompression.isGzipContentEncoding(null));
+    Assertions.assertEquals("config.json", ConfigurationCompression.stripSuffix("config.json.gz"));
+    Assertions.assertEquals("config.json", ConfigurationCompression.stripSuffix("config.json"));
+  }
+}
@@ -1,14 +1,28 @@
 package bio.terra.aws.resource.discovery;
 
+import bio.terra.aws.resource.discovery.avro.EnvironmentModel;
+import bio.terra.aws.resource.discovery.avro.LandingZoneModel;
+import com.fasterxml.jackson.core.JsonFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.InputMismatchException;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.avro.Schema;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.apache.avro.specific.SpecificData;
 import org.junit.jupiter.api.Assertions;
 import software.amazon.awssdk.arns.Arn;
 import software.amazon.awssdk.regions.Region;
@@ -121,6 +135,77 @@ public class EnvironmentDiscoveryTestBase {
             .build();
   }
 
+  /**
+   * Re-encode a {@code config.json} test data file in Avro single-object encoding, using the
+   * library's current schema, as it would be stored in a sibling {@code config.avro} file.
+   */
+  public static byte[] toSingleObjectEncoding(Path jsonConfigurationPath) throws IOException {
+    AvroConfiguration configuration =
+        new AvroConfiguration(Files.readAllBytes(jsonConfigurationPath), new JsonFactory());
+    Schema schema =
+        jsonConfigurationPath.getParent().getFileName().toString().equals("environment")
+            ? EnvironmentModel.getClassSchema()
+            : LandingZoneModel.getClassSchema();
+    Object model = configuration.decode(new AvroSchemaCache(), schema);
+    ByteBuffer encoded = new BinaryMessageEncoder<>(SpecificData.get(), schema).encode(model);
+    byte[] bytes = new byte[encoded.remaining()];
+    encoded.get(bytes);
+    return bytes;
+  }
+
+  /** Gzip-compress test data, as it would be stored in a {@code .gz} configuration file. */
+  public static byte[] gzip(byte[] content) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (GZIPOutputStream compressed = new GZIPOutputStream(output)) {
+      compressed.write(content);
+    }
+    return output.toByteArray();
+  }
+
+  /** Copy a test data directory, so that a test may change it. */
+  public static void copyTree(Path source, Path destination) throws IOException {
+    try (Stream<Path> paths = Files.walk(source)) {
+      for (Path path : paths.toList()) {
+        Path target = destination.resolve(source.relativize(path).toString());
+        if (Files.isDirectory(path)) {
+          Files.createDirectories(target);
+        } else {
+          Files.copy(path, target, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+      }
+    }
+  }
+
+  /**
+   * Bundle the configuration files of a test data directory, as they would be stored in its {@code
+   * v0/bundle} file (see {@link ConfigurationBundle}).
+   */
+  public static byte[] toBundle(Path basePath, boolean compress) throws IOException {
+    Path versionPath = basePath.resolve("v0");
+    Map<String, byte[]> files = new TreeMap<>();
+    try (Stream<Path> paths = Files.walk(versionPath)) {
+      for (Path path :
+          paths.filter(p -> p.endsWith("config.json") || p.endsWith("config.avro")).toList()) {
+        files.put(
+            versionPath.relativize(path).toString().replace(File.separatorChar, '/'),
+            Files.readAllBytes(path));
+      }
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ConfigurationBundle.write(files, compress, output);
+    return output.toByteArray();
+  }
+
+  /**
+   * Whether a test data file is a {@code config.json} read by discovery; the validation test data
+   * also contains configurations in invalid regions, which are never read and need not be valid.
+   */
+  public static boolean isDiscoverableConfigurationFile(Path path) {
+    return path.endsWith("config.json")
+        && (path.getParent().endsWith("environment")
+            || Region.regions().contains(Region.of(path.getParent().getFileName().toString())));
+  }
+
   public Environment getExpectedEnvironment() {
     return expectedEnvironment;
   }
@@ -168,6 +253,28 @@ public class EnvironmentDiscoveryTestBase {
     }
   }
 
+  /**
+   * Test that the selective discoveries of the validation test data return the parts of the
+   * expected Environment: each of its two Landing Zones, no Landing Zone in other regions
+   * (including eu-south-1, whose directory holds no configuration, and the invalid 'fake-region'),
+   * and the Environment without Landing Zones.
+   */
+  public void selectiveDiscoveryTestLogic(EnvironmentDiscovery environmentDiscovery)
+      throws IOException {
+    for (Region region : List.of(Region.US_EAST_1, Region.US_WEST_1)) {
+      Assertions.assertEquals(
+          expectedEnvironment.getLandingZone(region),
+          environmentDiscovery.discoverLandingZone(region));
+    }
+    for (Region region : List.of(Region.EU_SOUTH_1, Region.AP_SOUTH_1, Region.of("fake-region"))) {
+      Assertions.assertTrue(environmentDiscovery.discoverLandingZone(region).isEmpty());
+    }
+
+    Environment environment = environmentDiscovery.discoverEnvironmentOnly();
+    Assertions.assertEquals(expectedEnvironment.withoutLandingZones(), environment);
+    Assertions.assertTrue(environment.getSupportedRegions().isEmpty());
+  }
+
   public String getDoesNotExistTestDataBucketName() {
     return "does_not_exist";
   }
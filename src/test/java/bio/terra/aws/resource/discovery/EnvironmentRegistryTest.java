@@ -0,0 +1,189 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EnvironmentRegistryTest extends EnvironmentDiscoveryTestBase {
+
+  @Test
+  public void hitsAndMisses() throws IOException {
+    EnvironmentRegistry registry =
+        EnvironmentRegistry.builder().expirationPeriod(Duration.ofHours(1)).build();
+
+    Environment environment = registry.discoverEnvironment(getValidationTestDataPath());
+    Assertions.assertEquals(getExpectedEnvironment(), environment);
+    Assertions.assertSame(environment, registry.discoverEnvironment(getValidationTestDataPath()));
+
+    // Equivalent paths map to the same entry.
+    Assertions.assertSame(
+        environment,
+        registry.discoverEnvironment(getValidationTestDataPath().resolve("v0").resolve("..")));
+
+    EnvironmentRegistry.Statistics statistics = registry.getStatistics();
+    Assertions.assertEquals(2, statistics.hitCount());
+    Assertions.assertEquals(1, statistics.missCount());
+    Assertions.assertEquals(0, statistics.evictionCount());
+    Assertions.assertEquals(1, statistics.size());
+    Assertions.assertEquals(
+        EnvironmentRegistry.estimateRetainedSize(environment), statistics.totalWeight());
+  }
+
+  @Test
+  public void leastRecentlyUsedEviction() throws IOException {
+    EnvironmentRegistry registry =
+        EnvironmentRegistry.builder()
+            .expirationPeriod(Duration.ofHours(1))
+            .weigher(environment -> 1)
+            .maximumWeight(2)
+            .build();
+
+    Path validation = getValidationTestDataPath();
+    Path noLandingZones = getNoLandingZonesTestDataPath();
+    Path appsDisabled = getAppsDisabledTestDataPath();
+
+    registry.discoverEnvironment(validation);
+    registry.discoverEnvironment(noLandingZones);
+    // Touch the first entry, so that the second becomes the least recently used.
+    registry.discoverEnvironment(validation);
+    registry.discoverEnvironment(appsDisabled);
+
+    EnvironmentRegistry.Statistics statistics = registry.getStatistics();
+    Assertions.assertEquals(1, statistics.evictionCount());
+    Assertions.assertEquals(2, statistics.size());
+    Assertions.assertEquals(2, statistics.totalWeight());
+
+    // The evicted entry is recreated on its next use; the others are still present.
+    registry.discoverEnvironment(validation);
+    Assertions.assertEquals(3, registry.getStatistics().missCount());
+    registry.discoverEnvironment(noLandingZones);
+    Assertions.assertEquals(4, registry.getStatistics().missCount());
+  }
+
+  @Test
+  public void failedFirstLoadNotRetained() {
+    EnvironmentRegistry registry =
+        EnvironmentRegistry.builder().expirationPeriod(Duration.ofHours(1)).build();
+
+    Assertions.assertThrows(
+        NoSuchElementException.class,
+        () -> registry.discoverEnvironment(getDoesNotExistTestDataPath()));
+    Assertions.assertThrows(
+        NoSuchElementException.class,
+        () -> registry.discoverEnvironment(getMissingEnvironmentConfigTestDataPath()));
+    Assertions.assertEquals(0, registry.getStatistics().size());
+  }
+
+  @Test
+  public void concurrentFirstLoadsDeduplicated() throws Exception {
+    Environment environment = getExpectedEnvironment();
+    AtomicInteger constructionCount = new AtomicInteger();
+    AtomicInteger discoveryCount = new AtomicInteger();
+    CountDownLatch releaseDiscovery = new CountDownLatch(1);
+
+    EnvironmentRegistry registry =
+        EnvironmentRegistry.builder().expirationPeriod(Duration.ofHours(1)).build();
+
+    int threadCount = 8;
+    ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+    try {
+      List<Future<Environment>> futures = new ArrayList<>();
+      for (int i = 0; i < threadCount; i++) {
+        futures.add(
+            executorService.submit(
+                () ->
+                    registry.discoverEnvironment(
+                        "tenant",
+                        () -> {
+                          constructionCount.incrementAndGet();
+                          return () -> {
+                            discoveryCount.incrementAndGet();
+                            try {
+                              releaseDiscovery.await();
+                            } catch (InterruptedException exception) {
+                              throw new InterruptedIOException();
+                            }
+                            return environment;
+                          };
+                        })));
+      }
+
+      releaseDiscovery.countDown();
+      for (Future<Environment> future : futures) {
+        Assertions.assertSame(environment, future.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    Assertions.assertEquals(1, constructionCount.get());
+    Assertions.assertEquals(1, discoveryCount.get());
+    Assertions.assertEquals(1, registry.getStatistics().missCount());
+    Assertions.assertEquals(threadCount - 1, registry.getStatistics().hitCount());
+  }
+
+  @Test
+  public void configurationFailuresCached() {
+    EnvironmentRegistry registry =
+        EnvironmentRegistry.builder()
+            .expirationPeriod(Duration.ofHours(1))
+            .failureExpirationPeriod(Duration.ofHours(1))
+            .build();
+    AtomicInteger constructionCount = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertThrows(
+          NoSuchElementException.class,
+          () ->
+              registry.discoverEnvironment(
+                  "missing",
+                  () -> {
+                    constructionCount.incrementAndGet();
+                    return new FilesystemEnvironmentDiscovery(getDoesNotExistTestDataPath());
+                  }));
+    }
+    Assertions.assertEquals(1, constructionCount.get());
+    Assertions.assertEquals(1, registry.getStatistics().size());
+    Assertions.assertEquals(
+        EnvironmentRegistry.estimateRetainedSize(Environment.builder().build()),
+        registry.getStatistics().totalWeight());
+  }
+
+  @Test
+  public void cachedFailuresEvicted() {
+    EnvironmentRegistry registry =
+        EnvironmentRegistry.builder()
+            .expirationPeriod(Duration.ofHours(1))
+            .failureExpirationPeriod(Duration.ofHours(1))
+            .weigher(environment -> 1)
+            .maximumWeight(2)
+            .build();
+
+    // Entries retained for cached failures count towards the maximum weight, so requests for many
+    // missing Environments do not grow the registry without bound.
+    for (int i = 0; i < 5; i++) {
+      String key = "missing-" + i;
+      Assertions.assertThrows(
+          NoSuchElementException.class,
+          () ->
+              registry.discoverEnvironment(
+                  key, () -> new FilesystemEnvironmentDiscovery(getDoesNotExistTestDataPath())));
+    }
+    EnvironmentRegistry.Statistics statistics = registry.getStatistics();
+    Assertions.assertEquals(2, statistics.size());
+    Assertions.assertEquals(2, statistics.totalWeight());
+    Assertions.assertEquals(3, statistics.evictionCount());
+  }
+}
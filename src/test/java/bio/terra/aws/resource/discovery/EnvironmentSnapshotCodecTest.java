@@ -0,0 +1,84 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.regions.Region;
+
+public class EnvironmentSnapshotCodecTest extends EnvironmentDiscoveryTestBase {
+
+  private static byte[] encode(Environment environment) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    EnvironmentSnapshotCodec.write(environment, outputStream);
+    return outputStream.toByteArray();
+  }
+
+  private static Environment decode(byte[] bytes) throws IOException {
+    return EnvironmentSnapshotCodec.read(new ByteArrayInputStream(bytes));
+  }
+
+  private Environment getExpectedEnvironmentNoLandingZones() {
+    Environment environment = getExpectedEnvironment();
+    return Environment.builder()
+        .applicationInstanceProfileName(
+            environment.getApplicationInstanceProfileName().orElse(null))
+        .metadata(environment.getMetadata())
+        .workspaceManagerRoleArn(environment.getWorkspaceManagerRoleArn())
+        .userRoleArn(environment.getUserRoleArn())
+        .notebookRoleArn(environment.getNotebookRoleArn())
+        .build();
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    Environment environment = getExpectedEnvironment();
+    Assertions.assertEquals(environment, decode(encode(environment)));
+
+    Environment noLandingZones = getExpectedEnvironmentNoLandingZones();
+    Assertions.assertEquals(noLandingZones, decode(encode(noLandingZones)));
+
+    Environment empty = Environment.builder().build();
+    Assertions.assertEquals(empty, decode(encode(empty)));
+  }
+
+  @Test
+  public void repeatedStringsStoredOnce() throws IOException {
+    // Landing Zones share most metadata with their Environment, so adding a second Landing Zone
+    // should cost much less than encoding the first one did.
+    Environment environment = getExpectedEnvironment();
+    int twoLandingZones = encode(environment).length;
+    int noLandingZones = encode(getExpectedEnvironmentNoLandingZones()).length;
+    int threeLandingZones =
+        encode(
+                environment.toBuilder()
+                    .addLandingZone(
+                        Region.EU_NORTH_1,
+                        environment.getLandingZone(Region.US_EAST_1).orElseThrow())
+                    .build())
+            .length;
+    Assertions.assertTrue(
+        threeLandingZones - twoLandingZones < (twoLandingZones - noLandingZones) / 2);
+  }
+
+  @Test
+  public void invalidSnapshots() throws IOException {
+    byte[] bytes = encode(getExpectedEnvironment());
+
+    // Truncated
+    Assertions.assertThrows(
+        IOException.class, () -> decode(Arrays.copyOf(bytes, bytes.length / 2)));
+
+    // Wrong magic number
+    byte[] wrongMagic = bytes.clone();
+    wrongMagic[0] ^= 0xff;
+    Assertions.assertThrows(IOException.class, () -> decode(wrongMagic));
+
+    // Unsupported format version
+    byte[] wrongVersion = bytes.clone();
+    wrongVersion[4] = (byte) (EnvironmentSnapshotCodec.FORMAT_VERSION + 1);
+    Assertions.assertThrows(IOException.class, () -> decode(wrongVersion));
+  }
+}
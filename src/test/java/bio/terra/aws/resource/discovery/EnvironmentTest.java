@@ -1,5 +1,6 @@
 package bio.terra.aws.resource.discovery;
 
+import java.util.HashMap;
 import java.util.Map;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -57,6 +58,60 @@ public class EnvironmentTest extends EnvironmentDiscoveryTestBase {
     Assertions.assertEquals(environment.hashCode(), builtEnvironment.hashCode());
   }
 
+  @Test
+  public void toBuilder() {
+    Environment environment = getExpectedEnvironment();
+    Environment copy = environment.toBuilder().build();
+    Assertions.assertEquals(environment, copy);
+    Assertions.assertEquals(environment.hashCode(), copy.hashCode());
+
+    // Changes to a builder do not affect the Environment it was created from.
+    Environment modified =
+        environment.toBuilder()
+            .addLandingZone(Region.EU_NORTH_1, environment.getLandingZone(Region.US_EAST_1).get())
+            .build();
+    Assertions.assertNotEquals(environment, modified);
+    Assertions.assertFalse(environment.getSupportedRegions().contains(Region.EU_NORTH_1));
+  }
+
+  @Test
+  public void landingZoneAccessors() {
+    Environment environment = getExpectedEnvironment();
+    for (Region region : Region.regions()) {
+      Assertions.assertEquals(
+          environment.getLandingZone(region).orElse(null), environment.landingZoneOrNull(region));
+      Assertions.assertEquals(
+          environment.getSupportedRegions().contains(region), environment.hasLandingZone(region));
+    }
+    Assertions.assertSame(environment.getSupportedRegions(), environment.getSupportedRegions());
+    Assertions.assertThrows(
+        UnsupportedOperationException.class,
+        () -> environment.getSupportedRegions().remove(Region.US_EAST_1));
+
+    Map<Region, LandingZone> landingZones = new HashMap<>();
+    environment.forEachLandingZone(landingZones::put);
+    Assertions.assertEquals(environment.getSupportedRegions(), landingZones.keySet());
+    landingZones.forEach(
+        (region, landingZone) ->
+            Assertions.assertSame(environment.landingZoneOrNull(region), landingZone));
+
+    // Regions unknown to the AWS SDK, and null, are supported too.
+    Region unknownRegion = Region.of("junk-region-1");
+    Assertions.assertNull(environment.landingZoneOrNull(unknownRegion));
+    Assertions.assertNull(environment.landingZoneOrNull(null));
+    LandingZone landingZone = environment.landingZoneOrNull(Region.US_EAST_1);
+    Environment extended =
+        environment.toBuilder().addLandingZone(unknownRegion, landingZone).build();
+    Assertions.assertSame(landingZone, extended.landingZoneOrNull(unknownRegion));
+    Assertions.assertTrue(extended.getSupportedRegions().contains(unknownRegion));
+    Assertions.assertEquals(extended, extended.toBuilder().build());
+    Assertions.assertFalse(environment.hasLandingZone(unknownRegion));
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> Environment.builder().addLandingZone(Region.US_EAST_1, null).build());
+  }
+
   private static void checkInequality(Environment l, Environment r) {
     // Check equals()/hashCode()
     Assertions.assertNotEquals(l, r);
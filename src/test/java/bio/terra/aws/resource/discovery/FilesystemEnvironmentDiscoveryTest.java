@@ -1,9 +1,26 @@
 package bio.terra.aws.resource.discovery;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.apache.avro.message.MissingSchemaException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.regions.Region;
 
 public class FilesystemEnvironmentDiscoveryTest extends EnvironmentDiscoveryTestBase {
 
@@ -65,4 +82,292 @@ public class FilesystemEnvironmentDiscoveryTest extends EnvironmentDiscoveryTest
         new FilesystemEnvironmentDiscovery(getV0_5BackwardTestDataPath());
     v0_5BackwardTestLogic(discovery);
   }
+
+  @Test
+  public void incrementalDiscovery(@TempDir Path tempDir) throws IOException {
+    copyTree(getValidationTestDataPath(), tempDir);
+    EnvironmentDiscovery discovery = new FilesystemEnvironmentDiscovery(tempDir);
+
+    // Nothing changed on disk, so the previously discovered Environment is returned as-is.
+    Environment firstEnvironment = discovery.discoverEnvironment();
+    Assertions.assertEquals(getExpectedEnvironment(), firstEnvironment);
+    Assertions.assertSame(firstEnvironment, discovery.discoverEnvironment());
+
+    // Rewrite one region's configuration; only that region's Landing Zone is rebuilt.
+    Path westConfig = tempDir.resolve("v0/landingzones/us-west-1/config.json");
+    Files.writeString(westConfig, Files.readString(westConfig) + "\n");
+    Files.setLastModifiedTime(westConfig, FileTime.from(Instant.now().plusSeconds(60)));
+
+    Environment secondEnvironment = discovery.discoverEnvironment();
+    Assertions.assertNotSame(firstEnvironment, secondEnvironment);
+    Assertions.assertEquals(firstEnvironment, secondEnvironment);
+    Assertions.assertSame(
+        firstEnvironment.getLandingZone(Region.US_EAST_1).get(),
+        secondEnvironment.getLandingZone(Region.US_EAST_1).get());
+    Assertions.assertNotSame(
+        firstEnvironment.getLandingZone(Region.US_WEST_1).get(),
+        secondEnvironment.getLandingZone(Region.US_WEST_1).get());
+
+    // Removing a region's configuration removes its Landing Zone.
+    Files.delete(westConfig);
+    Environment thirdEnvironment = discovery.discoverEnvironment();
+    Assertions.assertTrue(thirdEnvironment.getLandingZone(Region.US_WEST_1).isEmpty());
+    Assertions.assertSame(
+        firstEnvironment.getLandingZone(Region.US_EAST_1).get(),
+        thirdEnvironment.getLandingZone(Region.US_EAST_1).get());
+  }
+
+  @Test
+  public void contentHashing(@TempDir Path tempDir) throws IOException {
+    copyTree(getValidationTestDataPath(), tempDir);
+    Path eastConfig = tempDir.resolve("v0/landingzones/us-east-1/config.json");
+    Path westConfig = tempDir.resolve("v0/landingzones/us-west-1/config.json");
+    FileTime modifiedTime = FileTime.from(Instant.now());
+    Files.setLastModifiedTime(westConfig, modifiedTime);
+    EnvironmentDiscovery hashingDiscovery =
+        FilesystemEnvironmentDiscovery.builder().basePath(tempDir).contentHashing(true).build();
+    EnvironmentDiscovery discovery = new FilesystemEnvironmentDiscovery(tempDir);
+    Environment firstHashedEnvironment = hashingDiscovery.discoverEnvironment();
+    Environment firstEnvironment = discovery.discoverEnvironment();
+
+    // The recently modified file is read again, but is unchanged.
+    Assertions.assertSame(firstHashedEnvironment, hashingDiscovery.discoverEnvironment());
+
+    // A rewrite that leaves the modification time and size unchanged is only noticed by hashing.
+    String content = Files.readString(westConfig);
+    Files.writeString(westConfig, content.replaceFirst("\n ", "\n\t"));
+    Files.setLastModifiedTime(westConfig, modifiedTime);
+    Assertions.assertSame(firstEnvironment, discovery.discoverEnvironment());
+    Environment secondHashedEnvironment = hashingDiscovery.discoverEnvironment();
+    Assertions.assertEquals(firstHashedEnvironment, secondHashedEnvironment);
+    Assertions.assertSame(
+        firstHashedEnvironment.getLandingZone(Region.US_EAST_1).get(),
+        secondHashedEnvironment.getLandingZone(Region.US_EAST_1).get());
+    Assertions.assertNotSame(
+        firstHashedEnvironment.getLandingZone(Region.US_WEST_1).get(),
+        secondHashedEnvironment.getLandingZone(Region.US_WEST_1).get());
+
+    // A file whose modification time changed but whose content did not is only parsed again
+    // without hashing.
+    Files.setLastModifiedTime(eastConfig, FileTime.from(Instant.now().minusSeconds(60)));
+    Assertions.assertSame(secondHashedEnvironment, hashingDiscovery.discoverEnvironment());
+    Assertions.assertNotSame(
+        firstEnvironment.getLandingZone(Region.US_EAST_1).get(),
+        discovery.discoverEnvironment().getLandingZone(Region.US_EAST_1).get());
+  }
+
+  /** Write a config.avro beside each config.json under a directory, and corrupt the config.json. */
+  private static void convertToBinary(Path directory) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path :
+          paths.filter(EnvironmentDiscoveryTestBase::isDiscoverableConfigurationFile).toList()) {
+        Files.write(path.resolveSibling("config.avro"), toSingleObjectEncoding(path));
+        Files.writeString(path, "not a configuration");
+      }
+    }
+  }
+
+  @Test
+  public void binaryConfigurationPreferred(@TempDir Path tempDir) throws IOException {
+    copyTree(getValidationTestDataPath(), tempDir);
+    convertToBinary(tempDir);
+    validationTestLogic(new FilesystemEnvironmentDiscovery(tempDir));
+
+    // With no config.json left, the config.avro files alone are sufficient.
+    try (Stream<Path> paths = Files.walk(tempDir)) {
+      for (Path path : paths.filter(p -> p.endsWith("config.json")).toList()) {
+        Files.delete(path);
+      }
+    }
+    validationTestLogic(new FilesystemEnvironmentDiscovery(tempDir));
+  }
+
+  @Test
+  public void binaryConfigurationUnknownSchema(@TempDir Path tempDir) throws IOException {
+    copyTree(getValidationTestDataPath(), tempDir);
+
+    // A config.avro written with a schema this library does not know (for example, by a producer
+    // updated ahead of it) falls back to the config.json beside it.
+    byte[] unknownSchema = toSingleObjectEncoding(tempDir.resolve("v0/environment/config.json"));
+    unknownSchema[2] ^= 0xff;
+    Files.write(tempDir.resolve("v0/environment/config.avro"), unknownSchema);
+    validationTestLogic(new FilesystemEnvironmentDiscovery(tempDir));
+
+    // Without a config.json to fall back to, discovery fails.
+    Files.delete(tempDir.resolve("v0/environment/config.json"));
+    Assertions.assertThrows(
+        MissingSchemaException.class,
+        () -> new FilesystemEnvironmentDiscovery(tempDir).discoverEnvironment());
+  }
+
+  @Test
+  public void compressedConfigurations(@TempDir Path tempDir) throws IOException {
+    copyTree(getValidationTestDataPath(), tempDir);
+
+    // Compressed files are found by their .gz suffix.
+    try (Stream<Path> paths = Files.walk(tempDir)) {
+      for (Path path :
+          paths.filter(EnvironmentDiscoveryTestBase::isDiscoverableConfigurationFile).toList()) {
+        Files.write(path.resolveSibling("config.json.gz"), gzip(Files.readAllBytes(path)));
+        Files.delete(path);
+      }
+    }
+    validationTestLogic(new FilesystemEnvironmentDiscovery(tempDir));
+
+    // Compressed content is also detected without the suffix, in either encoding.
+    Path eastConfig = tempDir.resolve("v0/landingzones/us-east-1/config.json.gz");
+    Files.write(
+        tempDir.resolve("v0/landingzones/us-east-1/config.avro"),
+        gzip(
+            toSingleObjectEncoding(
+                getValidationTestDataPath().resolve("v0/landingzones/us-east-1/config.json"))));
+    Files.move(eastConfig, eastConfig.resolveSibling("config.json"));
+    validationTestLogic(new FilesystemEnvironmentDiscovery(tempDir));
+  }
+
+  @Test
+  public void selectiveDiscovery(@TempDir Path tempDir) throws IOException {
+    copyTree(getValidationTestDataPath(), tempDir);
+    EnvironmentDiscovery discovery = new FilesystemEnvironmentDiscovery(tempDir);
+    selectiveDiscoveryTestLogic(discovery);
+
+    // Unchanged configurations are not parsed again, whether discovered selectively or in full.
+    LandingZone landingZone = discovery.discoverLandingZone(Region.US_EAST_1).get();
+    Assertions.assertSame(landingZone, discovery.discoverLandingZone(Region.US_EAST_1).get());
+    Environment environment = discovery.discoverEnvironment();
+    Assertions.assertSame(landingZone, environment.getLandingZone(Region.US_EAST_1).get());
+    Assertions.assertSame(
+        environment.getLandingZone(Region.US_WEST_1).get(),
+        discovery.discoverLandingZone(Region.US_WEST_1).get());
+
+    // A selective discovery reads only the configuration it needs.
+    Files.writeString(tempDir.resolve("v0/landingzones/us-west-1/config.json"), "not json");
+    Assertions.assertEquals(
+        getExpectedEnvironment().getLandingZone(Region.US_EAST_1),
+        discovery.discoverLandingZone(Region.US_EAST_1));
+    Assertions.assertEquals(
+        getExpectedEnvironment().withoutLandingZones(), discovery.discoverEnvironmentOnly());
+
+    // Bundled configurations are discovered selectively from the bundle.
+    Path bundledPath = tempDir.resolve("bundled");
+    Path bundlePath = bundledPath.resolve("v0").resolve(ConfigurationBundle.BUNDLE_NAME);
+    Files.createDirectories(bundlePath.getParent());
+    Files.write(bundlePath, toBundle(getValidationTestDataPath(), true));
+    selectiveDiscoveryTestLogic(new FilesystemEnvironmentDiscovery(bundledPath));
+  }
+
+  @Test
+  public void bundle(@TempDir Path tempDir) throws IOException {
+    Path sourcePath = tempDir.resolve("source");
+    copyTree(getValidationTestDataPath(), sourcePath);
+    Path basePath = tempDir.resolve("bundled");
+    Path bundlePath = basePath.resolve("v0").resolve(ConfigurationBundle.BUNDLE_NAME);
+    Files.createDirectories(bundlePath.getParent());
+
+    // The bundle alone is sufficient.
+    Files.write(bundlePath, toBundle(sourcePath, true));
+    EnvironmentDiscovery discovery = new FilesystemEnvironmentDiscovery(basePath);
+    Environment firstEnvironment = discovery.discoverEnvironment();
+    Assertions.assertEquals(getExpectedEnvironment(), firstEnvironment);
+
+    // A rewritten bundle holding the same configurations yields the same Environment.
+    Files.write(bundlePath, toBundle(sourcePath, false));
+    Files.setLastModifiedTime(bundlePath, FileTime.from(Instant.now().plusSeconds(60)));
+    Assertions.assertSame(firstEnvironment, discovery.discoverEnvironment());
+
+    // Only the Landing Zone whose configuration changed in the bundle is rebuilt.
+    Path westConfig = sourcePath.resolve("v0/landingzones/us-west-1/config.json");
+    Files.writeString(westConfig, Files.readString(westConfig) + "\n");
+    Files.write(bundlePath, toBundle(sourcePath, true));
+    Files.setLastModifiedTime(bundlePath, FileTime.from(Instant.now().plusSeconds(120)));
+
+    Environment secondEnvironment = discovery.discoverEnvironment();
+    Assertions.assertEquals(firstEnvironment, secondEnvironment);
+    Assertions.assertSame(
+        firstEnvironment.getLandingZone(Region.US_EAST_1).get(),
+        secondEnvironment.getLandingZone(Region.US_EAST_1).get());
+    Assertions.assertNotSame(
+        firstEnvironment.getLandingZone(Region.US_WEST_1).get(),
+        secondEnvironment.getLandingZone(Region.US_WEST_1).get());
+
+    // Once the bundle is removed, the individual configuration files are read.
+    Files.delete(bundlePath);
+    Assertions.assertThrows(NoSuchElementException.class, discovery::discoverEnvironment);
+  }
+
+  @Test
+  public void callerSuppliedExecutor() throws IOException {
+    AtomicInteger executedCount = new AtomicInteger();
+    Executor executor =
+        runnable -> {
+          executedCount.incrementAndGet();
+          runnable.run();
+        };
+    EnvironmentDiscovery discovery =
+        new FilesystemEnvironmentDiscovery(getValidationTestDataPath(), executor);
+    validationTestLogic(discovery);
+    Assertions.assertTrue(executedCount.get() > 0);
+  }
+
+  @Test
+  public void saturatedExecutor() throws Exception {
+    // Tasks the executor never starts are run by the discovering thread.
+    EnvironmentDiscovery discovery =
+        new FilesystemEnvironmentDiscovery(getValidationTestDataPath(), runnable -> {});
+    validationTestLogic(discovery);
+
+    EnvironmentDiscovery rejectingDiscovery =
+        new FilesystemEnvironmentDiscovery(
+            getValidationTestDataPath(),
+            runnable -> {
+              throw new RejectedExecutionException();
+            });
+    validationTestLogic(rejectingDiscovery);
+  }
+
+  @Test
+  public void firstFailureInRegionOrderReported() throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      FilesystemEnvironmentDiscovery discovery =
+          new FilesystemEnvironmentDiscovery(getValidationTestDataPath(), executorService);
+      CountDownLatch laterRegionFailed = new CountDownLatch(1);
+
+      // The failure of us-west-2 happens first, but us-east-1 precedes it in region order.
+      IOException exception =
+          Assertions.assertThrows(
+              IOException.class,
+              () ->
+                  discovery.forEachRegion(
+                      List.of(Region.US_WEST_2, Region.US_EAST_1, Region.EU_CENTRAL_1),
+                      region -> {
+                        if (region.equals(Region.US_WEST_2)) {
+                          laterRegionFailed.countDown();
+                          throw new IOException(region.id());
+                        }
+                        if (region.equals(Region.US_EAST_1)) {
+                          awaitLatch(laterRegionFailed);
+                          throw new IOException(region.id());
+                        }
+                        return region.id();
+                      }));
+      Assertions.assertEquals(Region.US_EAST_1.id(), exception.getMessage());
+
+      Map<Region, String> results =
+          discovery.forEachRegion(
+              List.of(Region.US_WEST_2, Region.US_EAST_1),
+              region -> region.equals(Region.US_WEST_2) ? null : region.id());
+      Assertions.assertEquals(Map.of(Region.US_EAST_1, Region.US_EAST_1.id()), results);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static void awaitLatch(CountDownLatch latch) throws IOException {
+    try {
+      latch.await();
+    } catch (InterruptedException exception) {
+      throw new InterruptedIOException();
+    }
+  }
 }
@@ -0,0 +1,47 @@
+package bio.terra.aws.resource.discovery;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.function.Function;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.DelegatingS3Client;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.S3Request;
+
+/**
+ * Delays the requests made through an {@link S3Client}, to reproduce the long-tailed latency of S3
+ * locally: most requests are delayed by a base latency, and a small fraction by a much longer tail
+ * latency. Delays are drawn from a seeded random sequence, so that runs are repeatable.
+ */
+class LatencyInjectingS3Client extends DelegatingS3Client {
+  private final Duration baseLatency;
+  private final double tailProbability;
+  private final Duration tailLatency;
+  private final Random random;
+
+  LatencyInjectingS3Client(
+      S3Client delegate,
+      Duration baseLatency,
+      double tailProbability,
+      Duration tailLatency,
+      long seed) {
+    super(delegate);
+    this.baseLatency = baseLatency;
+    this.tailProbability = tailProbability;
+    this.tailLatency = tailLatency;
+    this.random = new Random(seed);
+  }
+
+  @Override
+  protected <T extends S3Request, ReturnT> ReturnT invokeOperation(
+      T request, Function<T, ReturnT> operation) {
+    Duration latency = random.nextDouble() < tailProbability ? tailLatency : baseLatency;
+    try {
+      Thread.sleep(latency.toMillis());
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+      throw SdkClientException.create("Interrupted while injecting latency.", exception);
+    }
+    return operation.apply(request);
+  }
+}
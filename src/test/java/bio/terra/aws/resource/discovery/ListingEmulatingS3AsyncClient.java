@@ -0,0 +1,50 @@
+package bio.terra.aws.resource.discovery;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import software.amazon.awssdk.services.s3.DelegatingS3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Request;
+
+/**
+ * Emulates the listing and conditional GET semantics of S3 on top of S3Mock (see {@link
+ * ListingEmulatingS3Client}).
+ */
+class ListingEmulatingS3AsyncClient extends DelegatingS3AsyncClient {
+  private final S3AsyncClient s3Client;
+  private final int pageSize;
+
+  ListingEmulatingS3AsyncClient(S3AsyncClient delegate, int pageSize) {
+    super(delegate);
+    this.s3Client = delegate;
+    this.pageSize = pageSize;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected <T extends S3Request, ReturnT> CompletableFuture<ReturnT> invokeOperation(
+      T request, Function<T, CompletableFuture<ReturnT>> operation) {
+    if (request instanceof GetObjectRequest getRequest && getRequest.ifNoneMatch() != null) {
+      return s3Client
+          .listObjectsV2(ListingEmulatingS3Client.toObjectListingRequest(getRequest))
+          .thenCompose(
+              listing -> {
+                ListingEmulatingS3Client.throwIfNotModified(getRequest, listing);
+                return operation.apply(request);
+              });
+    }
+    if (!(request instanceof ListObjectsV2Request listRequest)) {
+      return operation.apply(request);
+    }
+    return operation
+        .apply((T) ListingEmulatingS3Client.toUndelimitedRequest(listRequest))
+        .thenApply(
+            listing ->
+                (ReturnT)
+                    ListingEmulatingS3Client.toPage(
+                        listRequest, (ListObjectsV2Response) listing, pageSize));
+  }
+}
@@ -0,0 +1,122 @@
+package bio.terra.aws.resource.discovery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Function;
+import software.amazon.awssdk.services.s3.DelegatingS3Client;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.S3Request;
+
+/**
+ * Emulates the listing semantics of S3 on top of S3Mock, which rolls up only the first of the
+ * common prefixes of a delimited listing, and returns no continuation tokens. Listings are
+ * requested from S3Mock without delimiter, and rolled up and split into pages of a fixed number of
+ * keys (objects or common prefixes) as S3 would.
+ *
+ * <p>S3Mock also ignores the {@code If-None-Match} header of conditional GET requests; these are
+ * answered with status 304 (Not Modified), as S3 would, if the ETag of the object matches.
+ */
+class ListingEmulatingS3Client extends DelegatingS3Client {
+  private final S3Client s3Client;
+  private final int pageSize;
+
+  ListingEmulatingS3Client(S3Client delegate, int pageSize) {
+    super(delegate);
+    this.s3Client = delegate;
+    this.pageSize = pageSize;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected <T extends S3Request, ReturnT> ReturnT invokeOperation(
+      T request, Function<T, ReturnT> operation) {
+    if (request instanceof GetObjectRequest getRequest && getRequest.ifNoneMatch() != null) {
+      throwIfNotModified(getRequest, s3Client.listObjectsV2(toObjectListingRequest(getRequest)));
+    }
+    if (!(request instanceof ListObjectsV2Request listRequest)) {
+      return operation.apply(request);
+    }
+    ListObjectsV2Response listing =
+        (ListObjectsV2Response) operation.apply((T) toUndelimitedRequest(listRequest));
+    return (ReturnT) toPage(listRequest, listing, pageSize);
+  }
+
+  /**
+   * Get the request for the listing of the object a conditional GET request reads; the ETag of the
+   * object is taken from the listing, as S3Mock returns none for HEAD requests.
+   */
+  static ListObjectsV2Request toObjectListingRequest(GetObjectRequest request) {
+    return ListObjectsV2Request.builder().bucket(request.bucket()).prefix(request.key()).build();
+  }
+
+  /** Fail a conditional GET request as S3 would if the object it reads has not been modified. */
+  static void throwIfNotModified(GetObjectRequest request, ListObjectsV2Response listing) {
+    boolean notModified =
+        listing.contents().stream()
+            .anyMatch(
+                s3Object ->
+                    s3Object.key().equals(request.key())
+                        && request.ifNoneMatch().equals(s3Object.eTag()));
+    if (notModified) {
+      throw S3Exception.builder().statusCode(304).message("Not Modified").build();
+    }
+  }
+
+  /** Get the request for the complete, undelimited listing a listing request is a page of. */
+  static ListObjectsV2Request toUndelimitedRequest(ListObjectsV2Request request) {
+    return request.toBuilder().delimiter(null).continuationToken(null).maxKeys(null).build();
+  }
+
+  /**
+   * Get the page of an undelimited listing requested by a listing request.
+   *
+   * @param request the listing request, whose continuation token is the index of the page's first
+   *     key
+   * @param listing the complete, undelimited listing
+   * @param pageSize maximum number of keys per page
+   */
+  static ListObjectsV2Response toPage(
+      ListObjectsV2Request request, ListObjectsV2Response listing, int pageSize) {
+    String prefix = request.prefix() == null ? "" : request.prefix();
+    String delimiter = request.delimiter();
+    TreeMap<String, Object> entries = new TreeMap<>();
+    for (S3Object s3Object : listing.contents()) {
+      int delimiterIndex =
+          delimiter == null ? -1 : s3Object.key().indexOf(delimiter, prefix.length());
+      if (delimiterIndex < 0) {
+        entries.put(s3Object.key(), s3Object);
+      } else {
+        String commonPrefix = s3Object.key().substring(0, delimiterIndex + delimiter.length());
+        entries.put(commonPrefix, CommonPrefix.builder().prefix(commonPrefix).build());
+      }
+    }
+    List<Object> orderedEntries = new ArrayList<>(entries.values());
+
+    int start =
+        request.continuationToken() == null ? 0 : Integer.parseInt(request.continuationToken());
+    int end = Math.min(start + pageSize, orderedEntries.size());
+    List<Object> page = orderedEntries.subList(start, end);
+    boolean truncated = end < orderedEntries.size();
+    return listing.toBuilder()
+        .delimiter(delimiter)
+        .contents(
+            page.stream().filter(S3Object.class::isInstance).map(S3Object.class::cast).toList())
+        .commonPrefixes(
+            page.stream()
+                .filter(CommonPrefix.class::isInstance)
+                .map(CommonPrefix.class::cast)
+                .toList())
+        .keyCount(page.size())
+        .isTruncated(truncated)
+        .continuationToken(request.continuationToken())
+        .nextContinuationToken(truncated ? String.valueOf(end) : null)
+        .build();
+  }
+}
@@ -0,0 +1,220 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+public class RequestHedgingTest {
+
+  private static final GetObjectRequest REQUEST =
+      GetObjectRequest.builder().bucket("bucket").key("key").build();
+
+  /** Serves every GET request with the same content, immediately. */
+  private static final S3Client STUB_S3_CLIENT =
+      new S3Client() {
+        @Override
+        public <ReturnT> ReturnT getObject(
+            GetObjectRequest request,
+            ResponseTransformer<GetObjectResponse, ReturnT> responseTransformer) {
+          try {
+            return responseTransformer.transform(
+                GetObjectResponse.builder().contentLength(1L).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(new byte[1])));
+          } catch (Exception exception) {
+            throw SdkClientException.create("Failed to transform response.", exception);
+          }
+        }
+
+        @Override
+        public String serviceName() {
+          return "s3";
+        }
+
+        @Override
+        public void close() {}
+      };
+
+  /** Get the 99th percentile of a set of latencies. */
+  private static long p99(long[] latencyNanos) {
+    long[] sorted = latencyNanos.clone();
+    Arrays.sort(sorted);
+    return sorted[(int) Math.ceil(0.99 * sorted.length) - 1];
+  }
+
+  @Test
+  public void tailLatencyReduced() throws IOException {
+    int requestCount = 300;
+    RequestHedging hedging =
+        RequestHedging.builder()
+            .percentile(0.9)
+            .budget(0.1)
+            .initialDelay(Duration.ofMillis(10))
+            .build();
+
+    long[] unhedgedLatencies = new long[requestCount];
+    long[] hedgedLatencies = new long[requestCount];
+    S3Client unhedgedClient =
+        new LatencyInjectingS3Client(
+            STUB_S3_CLIENT, Duration.ofMillis(2), 0.03, Duration.ofMillis(200), 1);
+    S3Client hedgedClient =
+        new LatencyInjectingS3Client(
+            STUB_S3_CLIENT, Duration.ofMillis(2), 0.03, Duration.ofMillis(200), 1);
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    try {
+      for (int i = 0; i < requestCount; i++) {
+        long startNanos = System.nanoTime();
+        unhedgedClient.getObject(REQUEST, ResponseTransformer.toBytes());
+        unhedgedLatencies[i] = System.nanoTime() - startNanos;
+
+        startNanos = System.nanoTime();
+        ResponseBytes<GetObjectResponse> response =
+            hedging.call(
+                () -> hedgedClient.getObject(REQUEST, ResponseTransformer.toBytes()),
+                executorService);
+        hedgedLatencies[i] = System.nanoTime() - startNanos;
+        Assertions.assertEquals(1, response.asByteArrayUnsafe().length);
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    // Unhedged, a few percent of requests take the tail latency; hedged, most of them are
+    // duplicated once they exceed the hedge delay, within the budget.
+    Assertions.assertTrue(p99(unhedgedLatencies) >= Duration.ofMillis(200).toNanos());
+    Assertions.assertTrue(p99(hedgedLatencies) < Duration.ofMillis(100).toNanos());
+    RequestHedging.Statistics statistics = hedging.getStatistics();
+    Assertions.assertEquals(requestCount, statistics.requestCount());
+    Assertions.assertTrue(statistics.hedgeWinCount() > 0);
+    Assertions.assertTrue(statistics.hedgeCount() <= requestCount * 0.1);
+    Assertions.assertTrue(hedging.getHedgeDelay().compareTo(Duration.ofMillis(100)) < 0);
+  }
+
+  @Test
+  public void budgetRespected() throws IOException {
+    RequestHedging hedging =
+        RequestHedging.builder().budget(0).initialDelay(Duration.ofMillis(1)).build();
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    try {
+      for (int i = 0; i < 5; i++) {
+        Assertions.assertEquals(
+            "value",
+            hedging.call(
+                () -> {
+                  sleep(Duration.ofMillis(20));
+                  return "value";
+                },
+                executorService));
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+    Assertions.assertEquals(new RequestHedging.Statistics(5, 0, 0), hedging.getStatistics());
+  }
+
+  @Test
+  public void failuresNotHedged() {
+    RequestHedging hedging = RequestHedging.builder().budget(1).build();
+    AtomicInteger attemptCount = new AtomicInteger();
+    ExecutorService executorService = Executors.newCachedThreadPool();
+    try {
+      Assertions.assertThrows(
+          NoSuchElementException.class,
+          () ->
+              hedging.call(
+                  () -> {
+                    attemptCount.incrementAndGet();
+                    throw new NoSuchElementException();
+                  },
+                  executorService));
+    } finally {
+      executorService.shutdownNow();
+    }
+    Assertions.assertEquals(1, attemptCount.get());
+    Assertions.assertEquals(0, hedging.getStatistics().hedgeCount());
+  }
+
+  @Test
+  public void hedgeUsedAfterFastFailure() throws IOException {
+    RequestHedging hedging =
+        RequestHedging.builder().budget(1).initialDelay(Duration.ofMillis(1)).build();
+    AtomicInteger attemptCount = new AtomicInteger();
+
+    // The original attempt runs on its own thread, and fails once the hedge has been sent; the
+    // executor never starts the hedge, which is started by the failing attempt instead.
+    Assertions.assertEquals(
+        "hedge",
+        hedging.call(
+            () -> {
+              if (attemptCount.incrementAndGet() > 1) {
+                return "hedge";
+              }
+              sleep(Duration.ofMillis(50));
+              throw new IllegalStateException("Original attempt failed.");
+            },
+            new Executor() {
+              private boolean first = true;
+
+              @Override
+              public synchronized void execute(Runnable runnable) {
+                if (first) {
+                  first = false;
+                  new Thread(runnable).start();
+                }
+              }
+            }));
+    Assertions.assertEquals(2, attemptCount.get());
+    Assertions.assertEquals(new RequestHedging.Statistics(1, 1, 1), hedging.getStatistics());
+  }
+
+  @Test
+  public void saturatedExecutor() throws IOException {
+    RequestHedging hedging =
+        RequestHedging.builder().budget(1).initialDelay(Duration.ofMillis(1)).build();
+
+    // Requests the executor does not start, or rejects, are made by the calling thread.
+    Assertions.assertEquals("idle", hedging.call(() -> "idle", runnable -> {}));
+    Assertions.assertEquals(
+        "rejected",
+        hedging.call(
+            () -> "rejected",
+            runnable -> {
+              throw new RejectedExecutionException();
+            }));
+    Assertions.assertEquals(0, hedging.getStatistics().hedgeCount());
+  }
+
+  @Test
+  public void invalidConfiguration() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> RequestHedging.builder().percentile(1).build());
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> RequestHedging.builder().budget(-1).build());
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> RequestHedging.builder().minimumDelay(Duration.ofMillis(-1)).build());
+  }
+
+  private static void sleep(Duration duration) {
+    try {
+      Thread.sleep(duration.toMillis());
+    } catch (InterruptedException exception) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -2,52 +2,158 @@ package bio.terra.aws.resource.discovery;
 
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.findify.s3mock.S3Mock;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import org.apache.http.client.utils.URIBuilder;
 import org.eclipse.jdt.launching.SocketUtil;
-import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
-import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.DelegatingS3AsyncClient;
+import software.amazon.awssdk.services.s3.DelegatingS3Client;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.S3Request;
 
 public class S3EnvironmentDiscoveryTest extends EnvironmentDiscoveryTestBase {
 
-  private final S3Mock s3Mock;
-  private final S3Client s3Client;
+  /**
+   * Get the class a request is counted as: reads of the manifest are counted as {@link
+   * ConfigurationManifest}, separately from reads of configuration objects.
+   */
+  private static Class<?> countedAs(S3Request request) {
+    if (request instanceof GetObjectRequest getObjectRequest) {
+      if (getObjectRequest.key().equals(S3ConfigurationLayout.getManifestObjectKey())) {
+        return ConfigurationManifest.class;
+      }
+      if (getObjectRequest.key().equals(S3ConfigurationLayout.getBundleObjectKey())) {
+        return ConfigurationBundle.class;
+      }
+    }
+    return request.getClass();
+  }
+
+  /** Counts the requests made through an {@link S3Client}, by request type. */
+  private static class RequestCountingS3Client extends DelegatingS3Client {
+    private final Map<Class<?>, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    RequestCountingS3Client(S3Client delegate) {
+      super(delegate);
+    }
+
+    int getCount(Class<?> requestClass) {
+      AtomicInteger count = counts.get(requestClass);
+      return count == null ? 0 : count.get();
+    }
+
+    @Override
+    protected <T extends S3Request, ReturnT> ReturnT invokeOperation(
+        T request, Function<T, ReturnT> operation) {
+      counts.computeIfAbsent(countedAs(request), key -> new AtomicInteger()).incrementAndGet();
+      return operation.apply(request);
+    }
+  }
+
+  /** Counts the requests made through an {@link S3AsyncClient}, by request type. */
+  private static class RequestCountingS3AsyncClient extends DelegatingS3AsyncClient {
+    private final Map<Class<?>, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    RequestCountingS3AsyncClient(S3AsyncClient delegate) {
+      super(delegate);
+    }
 
-  public S3EnvironmentDiscoveryTest() throws URISyntaxException {
+    int getCount(Class<?> requestClass) {
+      AtomicInteger count = counts.get(requestClass);
+      return count == null ? 0 : count.get();
+    }
+
+    @Override
+    protected <T extends S3Request, ReturnT> CompletableFuture<ReturnT> invokeOperation(
+        T request, Function<T, CompletableFuture<ReturnT>> operation) {
+      counts.computeIfAbsent(countedAs(request), key -> new AtomicInteger()).incrementAndGet();
+      return operation.apply(request);
+    }
+  }
+
+  // S3Mock does not release its per-bucket metadata stores when stopped, so a bucket can only be
+  // served by a single S3Mock instance per JVM; share one instance across all tests in the class.
+  private static S3Mock s3Mock;
+  private static S3Client s3Client;
+  private static S3AsyncClient s3AsyncClient;
+
+  @BeforeAll
+  public static void setUp() throws URISyntaxException {
 
     int s3MockPort = SocketUtil.findFreePort();
     assertNotEquals(-1, s3MockPort);
 
     s3Mock =
-        new S3Mock.Builder().withFileBackend(getBasePath().toString()).withPort(s3MockPort).build();
+        new S3Mock.Builder()
+            .withFileBackend(new EnvironmentDiscoveryTestBase().getBasePath().toString())
+            .withPort(s3MockPort)
+            .build();
+    s3Mock.start();
 
     URI uri = new URIBuilder().setScheme("http").setHost("localhost").setPort(s3MockPort).build();
 
+    // Listings are emulated, as S3Mock does not implement delimited and paginated listings the way
+    // S3 does.
+
     s3Client =
-        S3Client.builder()
-            .region(Region.AWS_GLOBAL)
-            .forcePathStyle(true)
-            .endpointOverride(uri)
-            .credentialsProvider(AnonymousCredentialsProvider.create())
-            .build();
-  }
+        new ListingEmulatingS3Client(
+            S3Client.builder()
+                .region(Region.AWS_GLOBAL)
+                .forcePathStyle(true)
+                .endpointOverride(uri)
+                .credentialsProvider(AnonymousCredentialsProvider.create())
+                .build(),
+            1000);
 
-  @BeforeEach
-  public void setUp() {
-    s3Mock.start();
+    s3AsyncClient =
+        new ListingEmulatingS3AsyncClient(
+            S3AsyncClient.builder()
+                .region(Region.AWS_GLOBAL)
+                .forcePathStyle(true)
+                .endpointOverride(uri)
+                .credentialsProvider(AnonymousCredentialsProvider.create())
+                .build(),
+            1000);
   }
 
-  @AfterEach
-  public void tearDown() {
+  @AfterAll
+  public static void tearDown() {
+    s3Client.close();
+    s3AsyncClient.close();
     s3Mock.stop();
   }
 
@@ -111,4 +217,519 @@ public class S3EnvironmentDiscoveryTest extends EnvironmentDiscoveryTestBase {
         new S3EnvironmentDiscovery(getV0_5BackwardTestDataBucketName(), s3Client);
     v0_5BackwardTestLogic(discovery);
   }
+
+  @Test
+  public void unchangedObjectsNotRefetched() throws IOException {
+    RequestCountingS3Client countingS3Client = new RequestCountingS3Client(s3Client);
+    EnvironmentDiscovery discovery =
+        new S3EnvironmentDiscovery(getValidationTestDataBucketName(), countingS3Client);
+
+    Environment firstEnvironment = discovery.discoverEnvironment();
+    Assertions.assertEquals(getExpectedEnvironment(), firstEnvironment);
+    int firstGetCount = countingS3Client.getCount(GetObjectRequest.class);
+    Assertions.assertEquals(3, firstGetCount);
+
+    // The ETags returned by the listings match the ones already read, so no configuration is
+    // downloaded again.
+    Environment secondEnvironment = discovery.discoverEnvironment();
+    Assertions.assertSame(firstEnvironment, secondEnvironment);
+    Assertions.assertEquals(firstGetCount, countingS3Client.getCount(GetObjectRequest.class));
+
+    // Each discovery lists the Environment prefix, the Landing Zone prefix, and the folders of the
+    // three valid regions found there: only JSON configurations were read from them, and a binary
+    // configuration added beside one would take precedence.
+    Assertions.assertEquals(10, countingS3Client.getCount(ListObjectsV2Request.class));
+
+    // The bucket was found to hold neither bundle nor manifest by the first discovery, and they are
+    // not checked for again until the recheck interval has passed.
+    Assertions.assertEquals(1, countingS3Client.getCount(ConfigurationBundle.class));
+    Assertions.assertEquals(1, countingS3Client.getCount(ConfigurationManifest.class));
+
+    // Landing Zones built from unchanged objects are shared between the discovered Environments.
+    for (Region region : firstEnvironment.getSupportedRegions()) {
+      Assertions.assertSame(
+          firstEnvironment.getLandingZone(region).get(),
+          secondEnvironment.getLandingZone(region).get());
+    }
+  }
+
+  @Test
+  public void binaryConfigurationPreferred() throws IOException {
+    // Upload the validation test data to a new bucket, replacing each config.json with a corrupt
+    // one, and adding a config.avro beside it.
+    String bucketName = "binary-configuration";
+    s3Client.createBucket(CreateBucketRequest.builder().bucket(bucketName).build());
+    Path validationPath = getValidationTestDataPath();
+    try (Stream<Path> paths = Files.walk(validationPath)) {
+      for (Path path : paths.filter(Files::isRegularFile).toList()) {
+        String key = validationPath.relativize(path).toString().replace(File.separatorChar, '/');
+        byte[] content = Files.readAllBytes(path);
+        if (isDiscoverableConfigurationFile(path)) {
+          putObject(
+              bucketName, key.replace("config.json", "config.avro"), toSingleObjectEncoding(path));
+          content = "not a configuration".getBytes(StandardCharsets.UTF_8);
+        }
+        putObject(bucketName, key, content);
+      }
+    }
+
+    validationTestLogic(new S3EnvironmentDiscovery(bucketName, s3Client));
+  }
+
+  @Test
+  public void binaryConfigurationAddedBesideJson() throws Exception {
+    String bucketName = "binary-configuration-added";
+    createValidationBucket(bucketName);
+    S3EnvironmentDiscovery discovery = new S3EnvironmentDiscovery(bucketName, s3Client);
+    S3AsyncEnvironmentDiscovery asyncDiscovery =
+        new S3AsyncEnvironmentDiscovery(bucketName, s3AsyncClient);
+    Environment firstEnvironment = discovery.discoverEnvironment();
+    asyncDiscovery.discoverEnvironmentAsync().get();
+
+    // Add a config.avro beside the us-east-1 config.json that was already read, holding the
+    // us-west-1 configuration so that it can be told apart: it takes precedence from the following
+    // discovery on.
+    Path landingZonesPath = getValidationTestDataPath().resolve("v0").resolve("landingzones");
+    putObject(
+        bucketName,
+        S3ConfigurationLayout.getLandingZonePrefix(Region.US_EAST_1) + "config.avro",
+        toSingleObjectEncoding(landingZonesPath.resolve("us-west-1").resolve("config.json")));
+
+    LandingZone expected = firstEnvironment.getLandingZone(Region.US_WEST_1).get();
+    Assertions.assertEquals(
+        expected, discovery.discoverEnvironment().getLandingZone(Region.US_EAST_1).get());
+    Assertions.assertEquals(
+        expected,
+        asyncDiscovery.discoverEnvironmentAsync().get().getLandingZone(Region.US_EAST_1).get());
+    Assertions.assertEquals(expected, discovery.discoverLandingZone(Region.US_EAST_1).get());
+  }
+
+  @Test
+  public void builderDoesNotBlock() throws IOException {
+    CountDownLatch releaseHeadBucket = new CountDownLatch(1);
+    S3Client blockingS3Client =
+        new DelegatingS3Client(s3Client) {
+          @Override
+          protected <T extends S3Request, ReturnT> ReturnT invokeOperation(
+              T request, Function<T, ReturnT> operation) {
+            if (request instanceof HeadBucketRequest) {
+              try {
+                releaseHeadBucket.await(10, TimeUnit.SECONDS);
+              } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+              }
+            }
+            return operation.apply(request);
+          }
+        };
+
+    // The bucket is validated in the background, rather than while building.
+    S3EnvironmentDiscovery discovery =
+        Assertions.assertTimeoutPreemptively(
+            Duration.ofSeconds(5),
+            () ->
+                S3EnvironmentDiscovery.builder()
+                    .bucketName(getValidationTestDataBucketName())
+                    .s3Client(blockingS3Client)
+                    .build());
+    releaseHeadBucket.countDown();
+    validationTestLogic(discovery);
+
+    // A bucket that does not exist fails discovery, rather than building.
+    EnvironmentDiscovery doesNotExist =
+        S3EnvironmentDiscovery.builder()
+            .bucketName(getDoesNotExistTestDataBucketName())
+            .s3Client(s3Client)
+            .build();
+    Assertions.assertThrows(NoSuchElementException.class, doesNotExist::discoverEnvironment);
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> S3EnvironmentDiscovery.builder().build());
+  }
+
+  @Test
+  public void prefetchedDiscovery() throws IOException {
+    RequestCountingS3Client countingS3Client = new RequestCountingS3Client(s3Client);
+    EnvironmentDiscovery discovery =
+        S3EnvironmentDiscovery.builder()
+            .bucketName(getValidationTestDataBucketName())
+            .s3Client(countingS3Client)
+            .prefetch(true)
+            .build();
+
+    // The first discovery returns the prefetched Environment, whose objects remain cached; the
+    // bucket is not validated separately.
+    Environment environment = discovery.discoverEnvironment();
+    Assertions.assertEquals(getExpectedEnvironment(), environment);
+    Assertions.assertEquals(0, countingS3Client.getCount(HeadBucketRequest.class));
+    int getCount = countingS3Client.getCount(GetObjectRequest.class);
+    Assertions.assertSame(environment, discovery.discoverEnvironment());
+    // No configuration is downloaded again.
+    Assertions.assertEquals(getCount, countingS3Client.getCount(GetObjectRequest.class));
+
+    EnvironmentDiscovery doesNotExist =
+        S3EnvironmentDiscovery.builder()
+            .bucketName(getDoesNotExistTestDataBucketName())
+            .s3Client(s3Client)
+            .prefetch(true)
+            .build();
+    Assertions.assertThrows(NoSuchElementException.class, doesNotExist::discoverEnvironment);
+  }
+
+  @Test
+  public void hedgedDiscovery() throws IOException {
+    // With a quarter of requests delayed, hedging brings some discoveries back to base latency.
+    RequestHedging requestHedging =
+        RequestHedging.builder().budget(1).initialDelay(Duration.ofMillis(50)).build();
+    S3Client slowS3Client =
+        new LatencyInjectingS3Client(
+            s3Client, Duration.ofMillis(1), 0.25, Duration.ofMillis(500), 1);
+    for (int i = 0; i < 5; i++) {
+      validationTestLogic(
+          S3EnvironmentDiscovery.builder()
+              .bucketName(getValidationTestDataBucketName())
+              .s3Client(slowS3Client)
+              .requestHedging(requestHedging)
+              .build());
+    }
+    Assertions.assertTrue(requestHedging.getStatistics().hedgeWinCount() > 0);
+  }
+
+  @Test
+  public void asyncValidation() throws Exception {
+    S3AsyncEnvironmentDiscovery discovery =
+        new S3AsyncEnvironmentDiscovery(getValidationTestDataBucketName(), s3AsyncClient);
+    Assertions.assertEquals(
+        getExpectedEnvironment(), discovery.discoverEnvironmentAsync().get(10, TimeUnit.SECONDS));
+    validationTestLogic(discovery);
+  }
+
+  @Test
+  public void asyncDoesNotExist() {
+    // The bucket is not checked at construction time, but discovery fails.
+    S3AsyncEnvironmentDiscovery discovery =
+        new S3AsyncEnvironmentDiscovery(getDoesNotExistTestDataBucketName(), s3AsyncClient);
+    ExecutionException exception =
+        Assertions.assertThrows(
+            ExecutionException.class,
+            () -> discovery.discoverEnvironmentAsync().get(10, TimeUnit.SECONDS));
+    Assertions.assertInstanceOf(NoSuchElementException.class, exception.getCause());
+    Assertions.assertThrows(NoSuchElementException.class, discovery::discoverEnvironment);
+  }
+
+  @Test
+  public void asyncTestCases() throws IOException {
+    noLandingZonesTestLogic(
+        new S3AsyncEnvironmentDiscovery(getNoLandingZonesTestDataBucketName(), s3AsyncClient));
+    missingEnvironmentConfigTestLogic(
+        new S3AsyncEnvironmentDiscovery(
+            getMissingEnvironmentConfigTestDataBucketName(), s3AsyncClient));
+    notebookLifecycleMismatchTestLogic(
+        new S3AsyncEnvironmentDiscovery(
+            getNotebookLifecycleMismatchTestDataBucketName(), s3AsyncClient));
+    appsDisabledTestLogic(
+        new S3AsyncEnvironmentDiscovery(getAppsDisabledTestDataBucketName(), s3AsyncClient));
+    v0_5BackwardTestLogic(
+        new S3AsyncEnvironmentDiscovery(getV0_5BackwardTestDataBucketName(), s3AsyncClient));
+  }
+
+  @Test
+  public void asyncUnchangedObjectsNotRefetched() throws Exception {
+    RequestCountingS3AsyncClient countingS3AsyncClient =
+        new RequestCountingS3AsyncClient(s3AsyncClient);
+    S3AsyncEnvironmentDiscovery discovery =
+        new S3AsyncEnvironmentDiscovery(getValidationTestDataBucketName(), countingS3AsyncClient);
+
+    Environment firstEnvironment = discovery.discoverEnvironmentAsync().get(10, TimeUnit.SECONDS);
+    Assertions.assertEquals(3, countingS3AsyncClient.getCount(GetObjectRequest.class));
+
+    // As for unchangedObjectsNotRefetched, the second discovery lists the folders again, but
+    // downloads no configuration.
+    Environment secondEnvironment = discovery.discoverEnvironmentAsync().get(10, TimeUnit.SECONDS);
+    Assertions.assertSame(firstEnvironment, secondEnvironment);
+    Assertions.assertEquals(3, countingS3AsyncClient.getCount(GetObjectRequest.class));
+    Assertions.assertEquals(10, countingS3AsyncClient.getCount(ListObjectsV2Request.class));
+    Assertions.assertEquals(1, countingS3AsyncClient.getCount(ConfigurationBundle.class));
+    Assertions.assertEquals(1, countingS3AsyncClient.getCount(ConfigurationManifest.class));
+  }
+
+  /** Upload the validation test data to a new bucket. */
+  private static void createValidationBucket(String bucketName) throws IOException {
+    s3Client.createBucket(CreateBucketRequest.builder().bucket(bucketName).build());
+    Path validationPath = new EnvironmentDiscoveryTestBase().getValidationTestDataPath();
+    try (Stream<Path> paths = Files.walk(validationPath)) {
+      for (Path path : paths.filter(Files::isRegularFile).toList()) {
+        String key = validationPath.relativize(path).toString().replace(File.separatorChar, '/');
+        putObject(bucketName, key, Files.readAllBytes(path));
+      }
+    }
+  }
+
+  @Test
+  public void selectiveDiscovery() throws IOException {
+    RequestCountingS3Client countingS3Client = new RequestCountingS3Client(s3Client);
+    EnvironmentDiscovery discovery =
+        new S3EnvironmentDiscovery(getValidationTestDataBucketName(), countingS3Client);
+    selectiveDiscoveryTestLogic(discovery);
+
+    // Once the bucket is known to hold neither bundle nor manifest, the selected configurations are
+    // each read with a single listing of their folder, and are not downloaded again if unchanged.
+    int listCount = countingS3Client.getCount(ListObjectsV2Request.class);
+    int getCount = countingS3Client.getCount(GetObjectRequest.class);
+    Assertions.assertEquals(
+        getExpectedEnvironment().getLandingZone(Region.US_EAST_1),
+        discovery.discoverLandingZone(Region.US_EAST_1));
+    Assertions.assertEquals(
+        getExpectedEnvironment().withoutLandingZones(), discovery.discoverEnvironmentOnly());
+    Assertions.assertEquals(listCount + 2, countingS3Client.getCount(ListObjectsV2Request.class));
+    Assertions.assertEquals(getCount, countingS3Client.getCount(GetObjectRequest.class));
+    Assertions.assertEquals(1, countingS3Client.getCount(ConfigurationBundle.class));
+    Assertions.assertEquals(1, countingS3Client.getCount(ConfigurationManifest.class));
+  }
+
+  @Test
+  public void asyncSelectiveDiscovery() throws IOException {
+    RequestCountingS3AsyncClient countingS3AsyncClient =
+        new RequestCountingS3AsyncClient(s3AsyncClient);
+    EnvironmentDiscovery discovery =
+        new S3AsyncEnvironmentDiscovery(getValidationTestDataBucketName(), countingS3AsyncClient);
+    selectiveDiscoveryTestLogic(discovery);
+
+    // As for selectiveDiscovery, the selected configurations are each read with a single listing.
+    int listCount = countingS3AsyncClient.getCount(ListObjectsV2Request.class);
+    int getCount = countingS3AsyncClient.getCount(GetObjectRequest.class);
+    Assertions.assertEquals(
+        getExpectedEnvironment().getLandingZone(Region.US_EAST_1),
+        discovery.discoverLandingZone(Region.US_EAST_1));
+    Assertions.assertEquals(
+        getExpectedEnvironment().withoutLandingZones(), discovery.discoverEnvironmentOnly());
+    Assertions.assertEquals(
+        listCount + 2, countingS3AsyncClient.getCount(ListObjectsV2Request.class));
+    Assertions.assertEquals(getCount, countingS3AsyncClient.getCount(GetObjectRequest.class));
+    Assertions.assertEquals(1, countingS3AsyncClient.getCount(ConfigurationBundle.class));
+    Assertions.assertEquals(1, countingS3AsyncClient.getCount(ConfigurationManifest.class));
+  }
+
+  @Test
+  public void pollutedLandingZonePrefix() throws Exception {
+    String bucketName = "polluted";
+    createValidationBucket(bucketName);
+    String basePrefix = S3ConfigurationLayout.getLandingZoneBasePrefix();
+    byte[] junk = {0};
+    for (int i = 0; i < 100; i++) {
+      putObject(bucketName, basePrefix + "us-east-1/logs/" + i, junk);
+      putObject(bucketName, basePrefix + "archive/" + i + "/config.json", junk);
+    }
+    putObject(bucketName, basePrefix + "README", junk);
+
+    // With two keys per page, the Landing Zone listing takes four pages (README, archive/,
+    // eu-north-1, and the folders of four regions), and the us-east-1 folder one (config.json and
+    // logs/): objects nested under region folders, or in folders that are not regions, are rolled
+    // up rather than listed.
+    RequestCountingS3Client countingS3Client =
+        new RequestCountingS3Client(new ListingEmulatingS3Client(s3Client, 2));
+    validationTestLogic(new S3EnvironmentDiscovery(bucketName, countingS3Client));
+    Assertions.assertEquals(8, countingS3Client.getCount(ListObjectsV2Request.class));
+
+    RequestCountingS3AsyncClient countingS3AsyncClient =
+        new RequestCountingS3AsyncClient(new ListingEmulatingS3AsyncClient(s3AsyncClient, 2));
+    validationTestLogic(new S3AsyncEnvironmentDiscovery(bucketName, countingS3AsyncClient));
+    Assertions.assertEquals(8, countingS3AsyncClient.getCount(ListObjectsV2Request.class));
+  }
+
+  /**
+   * Upload the validation test data to a new bucket, along with a manifest listing its objects as
+   * uploaded; the size listed for the us-east-1 Landing Zone configuration is adjusted by the
+   * passed amount.
+   */
+  private static void createManifestBucket(String bucketName, long landingZoneSizeAdjustment)
+      throws IOException {
+    createValidationBucket(bucketName);
+
+    ObjectMapper mapper = new ObjectMapper();
+    ObjectNode manifest = mapper.createObjectNode();
+    ObjectNode landingZones = manifest.putObject("landingZones");
+    List<S3Object> s3Objects =
+        s3Client
+            .listObjectsV2(ListObjectsV2Request.builder().bucket(bucketName).build())
+            .contents();
+    manifest.set(
+        "environment",
+        toManifestEntry(
+            mapper,
+            S3ConfigurationLayout.findConfigurationObjects(
+                    S3ConfigurationLayout.getEnvironmentPrefix(), s3Objects)
+                .jsonObject(),
+            0));
+    for (Region region : Region.regions()) {
+      S3Object s3Object =
+          S3ConfigurationLayout.findConfigurationObjects(
+                  S3ConfigurationLayout.getLandingZonePrefix(region), s3Objects)
+              .jsonObject();
+      if (s3Object != null) {
+        landingZones.set(
+            region.id(),
+            toManifestEntry(
+                mapper, s3Object, region.equals(Region.US_EAST_1) ? landingZoneSizeAdjustment : 0));
+      }
+    }
+    putObject(
+        bucketName,
+        S3ConfigurationLayout.getManifestObjectKey(),
+        mapper.writeValueAsBytes(manifest));
+  }
+
+  private static ObjectNode toManifestEntry(
+      ObjectMapper mapper, S3Object s3Object, long sizeAdjustment) {
+    return mapper
+        .createObjectNode()
+        .put("key", s3Object.key())
+        .put("eTag", s3Object.eTag())
+        .put("size", s3Object.size() + sizeAdjustment);
+  }
+
+  @Test
+  public void manifestReplacesListing() throws Exception {
+    createManifestBucket("manifest", 0);
+
+    RequestCountingS3Client countingS3Client = new RequestCountingS3Client(s3Client);
+    EnvironmentDiscovery discovery = new S3EnvironmentDiscovery("manifest", countingS3Client);
+    validationTestLogic(discovery);
+    Assertions.assertEquals(0, countingS3Client.getCount(ListObjectsV2Request.class));
+    Assertions.assertEquals(1, countingS3Client.getCount(ConfigurationManifest.class));
+    Assertions.assertEquals(3, countingS3Client.getCount(GetObjectRequest.class));
+
+    // Objects listed in the manifest with unchanged ETags are not read again.
+    Environment environment = discovery.discoverEnvironment();
+    Assertions.assertSame(environment, discovery.discoverEnvironment());
+    Assertions.assertEquals(0, countingS3Client.getCount(ListObjectsV2Request.class));
+    Assertions.assertEquals(3, countingS3Client.getCount(GetObjectRequest.class));
+
+    RequestCountingS3AsyncClient countingS3AsyncClient =
+        new RequestCountingS3AsyncClient(s3AsyncClient);
+    S3AsyncEnvironmentDiscovery asyncDiscovery =
+        new S3AsyncEnvironmentDiscovery("manifest", countingS3AsyncClient);
+    Assertions.assertEquals(
+        getExpectedEnvironment(),
+        asyncDiscovery.discoverEnvironmentAsync().get(10, TimeUnit.SECONDS));
+    Assertions.assertEquals(0, countingS3AsyncClient.getCount(ListObjectsV2Request.class));
+    Assertions.assertEquals(3, countingS3AsyncClient.getCount(GetObjectRequest.class));
+  }
+
+  @Test
+  public void manifestMismatchDetected() throws Exception {
+    createManifestBucket("manifest-mismatch", 1);
+
+    IOException exception =
+        Assertions.assertThrows(
+            IOException.class,
+            () -> new S3EnvironmentDiscovery("manifest-mismatch", s3Client).discoverEnvironment());
+    Assertions.assertTrue(exception.getMessage().contains("manifest"));
+
+    ExecutionException asyncException =
+        Assertions.assertThrows(
+            ExecutionException.class,
+            () ->
+                new S3AsyncEnvironmentDiscovery("manifest-mismatch", s3AsyncClient)
+                    .discoverEnvironmentAsync()
+                    .get(10, TimeUnit.SECONDS));
+    Assertions.assertInstanceOf(IOException.class, asyncException.getCause());
+  }
+
+  @Test
+  public void compressedConfigurationObjects() throws Exception {
+    s3Client.createBucket(CreateBucketRequest.builder().bucket("compressed").build());
+    Path validationPath = new EnvironmentDiscoveryTestBase().getValidationTestDataPath();
+    try (Stream<Path> paths = Files.walk(validationPath)) {
+      for (Path path :
+          paths.filter(EnvironmentDiscoveryTestBase::isDiscoverableConfigurationFile).toList()) {
+        String key = validationPath.relativize(path).toString().replace(File.separatorChar, '/');
+        // Compressed objects are found by their .gz suffix, or detected by their content.
+        putObject(
+            "compressed",
+            path.getParent().endsWith("us-west-1") ? key : key + ".gz",
+            gzip(Files.readAllBytes(path)));
+      }
+    }
+
+    validationTestLogic(new S3EnvironmentDiscovery("compressed", s3Client));
+    Assertions.assertEquals(
+        getExpectedEnvironment(),
+        new S3AsyncEnvironmentDiscovery("compressed", s3AsyncClient)
+            .discoverEnvironmentAsync()
+            .get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void bundleReplacesConfigurationObjects() throws Exception {
+    s3Client.createBucket(CreateBucketRequest.builder().bucket("bundle").build());
+    putObject(
+        "bundle",
+        S3ConfigurationLayout.getBundleObjectKey(),
+        toBundle(new EnvironmentDiscoveryTestBase().getValidationTestDataPath(), true));
+
+    RequestCountingS3Client countingS3Client = new RequestCountingS3Client(s3Client);
+    EnvironmentDiscovery discovery = new S3EnvironmentDiscovery("bundle", countingS3Client);
+    Environment environment = discovery.discoverEnvironment();
+    Assertions.assertEquals(getExpectedEnvironment(), environment);
+    Assertions.assertSame(environment, discovery.discoverEnvironment());
+    Assertions.assertEquals(2, countingS3Client.getCount(ConfigurationBundle.class));
+    Assertions.assertEquals(0, countingS3Client.getCount(ConfigurationManifest.class));
+    Assertions.assertEquals(0, countingS3Client.getCount(ListObjectsV2Request.class));
+    Assertions.assertEquals(0, countingS3Client.getCount(GetObjectRequest.class));
+
+    RequestCountingS3AsyncClient countingS3AsyncClient =
+        new RequestCountingS3AsyncClient(s3AsyncClient);
+    S3AsyncEnvironmentDiscovery asyncDiscovery =
+        new S3AsyncEnvironmentDiscovery("bundle", countingS3AsyncClient);
+    Assertions.assertEquals(
+        getExpectedEnvironment(),
+        asyncDiscovery.discoverEnvironmentAsync().get(10, TimeUnit.SECONDS));
+    Assertions.assertEquals(1, countingS3AsyncClient.getCount(ConfigurationBundle.class));
+    Assertions.assertEquals(0, countingS3AsyncClient.getCount(ListObjectsV2Request.class));
+    Assertions.assertEquals(0, countingS3AsyncClient.getCount(GetObjectRequest.class));
+  }
+
+  @Test
+  public void publishedBundleFoundByRecheck() throws Exception {
+    String bucketName = "bundle-published";
+    createValidationBucket(bucketName);
+    RequestCountingS3Client countingS3Client = new RequestCountingS3Client(s3Client);
+    EnvironmentDiscovery discovery =
+        S3EnvironmentDiscovery.builder()
+            .bucketName(bucketName)
+            .s3Client(countingS3Client)
+            .absentObjectRecheckInterval(Duration.ZERO)
+            .build();
+    validationTestLogic(discovery);
+
+    // With no recheck interval, every discovery checks for the missing bundle in the background,
+    // until one finds it, from which point the bucket is no longer listed.
+    putObject(
+        bucketName,
+        S3ConfigurationLayout.getBundleObjectKey(),
+        toBundle(new EnvironmentDiscoveryTestBase().getValidationTestDataPath(), true));
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    int listCount;
+    do {
+      listCount = countingS3Client.getCount(ListObjectsV2Request.class);
+      Assertions.assertEquals(getExpectedEnvironment(), discovery.discoverEnvironment());
+    } while (countingS3Client.getCount(ListObjectsV2Request.class) != listCount
+        && System.nanoTime() - deadline < 0);
+    Assertions.assertEquals(listCount, countingS3Client.getCount(ListObjectsV2Request.class));
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            S3EnvironmentDiscovery.builder()
+                .bucketName(bucketName)
+                .s3Client(s3Client)
+                .absentObjectRecheckInterval(Duration.ofSeconds(-1))
+                .build());
+  }
+
+  private static void putObject(String bucketName, String key, byte[] content) {
+    s3Client.putObject(
+        PutObjectRequest.builder().bucket(bucketName).key(key).build(),
+        RequestBody.fromBytes(content));
+  }
 }
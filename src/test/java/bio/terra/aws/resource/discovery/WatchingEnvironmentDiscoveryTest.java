@@ -0,0 +1,138 @@
+package bio.terra.aws.resource.discovery;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.regions.Region;
+
+public class WatchingEnvironmentDiscoveryTest extends EnvironmentDiscoveryTestBase {
+
+  private static final Duration DEBOUNCE_PERIOD = Duration.ofMillis(20);
+  private static final Duration AWAIT_TIMEOUT = Duration.ofSeconds(30);
+
+  private static WatchingEnvironmentDiscovery watch(Path basePath) throws IOException {
+    return WatchingEnvironmentDiscovery.builder()
+        .basePath(basePath)
+        .debouncePeriod(DEBOUNCE_PERIOD)
+        .build();
+  }
+
+  /**
+   * Wait until an Environment is discovered that satisfies the condition, and return it; missing
+   * configuration is waited for.
+   */
+  private static Environment awaitEnvironment(
+      EnvironmentDiscovery discovery, Predicate<Environment> condition)
+      throws IOException, InterruptedException {
+    long deadlineNanos = System.nanoTime() + AWAIT_TIMEOUT.toNanos();
+    while (true) {
+      try {
+        Environment environment = discovery.discoverEnvironment();
+        if (condition.test(environment)) {
+          return environment;
+        }
+      } catch (NoSuchElementException exception) {
+        // Not discovered yet.
+      }
+      Assertions.assertTrue(
+          System.nanoTime() - deadlineNanos < 0, "Timed out waiting for the Environment.");
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void validation(@TempDir Path tempDir) throws IOException {
+    copyTree(getValidationTestDataPath(), tempDir);
+    try (WatchingEnvironmentDiscovery discovery = watch(tempDir)) {
+      validationTestLogic(discovery);
+      selectiveDiscoveryTestLogic(discovery);
+      Assertions.assertSame(discovery.discoverEnvironment(), discovery.discoverEnvironment());
+    }
+  }
+
+  @Test
+  public void landingZoneChanges(@TempDir Path tempDir) throws Exception {
+    copyTree(getValidationTestDataPath(), tempDir);
+    Path landingZonesPath = tempDir.resolve("v0/landingzones");
+    try (WatchingEnvironmentDiscovery discovery = watch(tempDir)) {
+      Environment firstEnvironment = discovery.discoverEnvironment();
+
+      // Only the Landing Zone whose configuration changed is rebuilt.
+      Path westConfig = landingZonesPath.resolve("us-west-1/config.json");
+      Files.writeString(westConfig, Files.readString(westConfig) + "\n");
+      Environment secondEnvironment =
+          awaitEnvironment(discovery, environment -> environment != firstEnvironment);
+      Assertions.assertEquals(getExpectedEnvironment(), secondEnvironment);
+      Assertions.assertSame(
+          firstEnvironment.getLandingZone(Region.US_EAST_1).get(),
+          secondEnvironment.getLandingZone(Region.US_EAST_1).get());
+      Assertions.assertNotSame(
+          firstEnvironment.getLandingZone(Region.US_WEST_1).get(),
+          secondEnvironment.getLandingZone(Region.US_WEST_1).get());
+
+      // New Landing Zone directories are watched, and removed ones forgotten.
+      Path centralPath = landingZonesPath.resolve("eu-central-1");
+      Files.createDirectories(centralPath);
+      Files.copy(
+          landingZonesPath.resolve("us-east-1/config.json"), centralPath.resolve("config.json"));
+      awaitEnvironment(
+          discovery, environment -> environment.getLandingZone(Region.EU_CENTRAL_1).isPresent());
+      try (Stream<Path> paths = Files.walk(landingZonesPath.resolve("us-west-1"))) {
+        for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+          Files.delete(path);
+        }
+      }
+      Environment thirdEnvironment =
+          awaitEnvironment(
+              discovery, environment -> environment.getLandingZone(Region.US_WEST_1).isEmpty());
+      Assertions.assertSame(
+          firstEnvironment.getLandingZone(Region.US_EAST_1).get(),
+          thirdEnvironment.getLandingZone(Region.US_EAST_1).get());
+      Assertions.assertEquals(
+          getExpectedEnvironment().withoutLandingZones(), discovery.discoverEnvironmentOnly());
+    }
+  }
+
+  @Test
+  public void failedReload(@TempDir Path tempDir) throws Exception {
+    copyTree(getValidationTestDataPath(), tempDir);
+    Path environmentConfig = tempDir.resolve("v0/environment/config.json");
+    String content = Files.readString(environmentConfig);
+    try (WatchingEnvironmentDiscovery discovery = watch(tempDir)) {
+      Environment firstEnvironment = discovery.discoverEnvironment();
+
+      // An invalid configuration leaves the last Environment in place, until it is fixed.
+      Files.writeString(environmentConfig, "not json");
+      Thread.sleep(DEBOUNCE_PERIOD.multipliedBy(10).toMillis());
+      Assertions.assertSame(firstEnvironment, discovery.discoverEnvironment());
+
+      Files.writeString(environmentConfig, content + "\n");
+      Environment secondEnvironment =
+          awaitEnvironment(discovery, environment -> environment != firstEnvironment);
+      Assertions.assertEquals(getExpectedEnvironment(), secondEnvironment);
+    }
+  }
+
+  @Test
+  public void initialFailure(@TempDir Path tempDir) throws Exception {
+    copyTree(getValidationTestDataPath(), tempDir);
+    Path environmentConfig = tempDir.resolve("v0/environment/config.json");
+    Path movedConfig = tempDir.resolve("config.json");
+    Files.move(environmentConfig, movedConfig);
+    try (WatchingEnvironmentDiscovery discovery = watch(tempDir)) {
+      // The failure of the first discovery is rethrown, until the configuration appears.
+      Assertions.assertThrows(NoSuchElementException.class, discovery::discoverEnvironment);
+      Files.move(movedConfig, environmentConfig);
+      Assertions.assertEquals(
+          getExpectedEnvironment(), awaitEnvironment(discovery, environment -> true));
+    }
+  }
+}